@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.benchmarks;
+
+import eu.unitn.disi.db.gref.lattice.BucketTreeSet;
+import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operations of {@link BucketTreeSet} as used by the pruning algorithm, on 
+ * the first two levels of the lattice of a query: bulk insertion, selection of 
+ * the maximum bucket and re-insertion of a reformulation whose score changed. 
+ * Scores are drawn from a small set of values so that buckets clash as they 
+ * do with the integer marginal gains. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BucketTreeSetBenchmark {
+    @Param({"AIDS_Small", "Synth"})
+    public Dataset dataset;
+    
+    @Param({"2", "4", "6"})
+    public int querySize;
+    
+    private List<ReformulatedQuery> reformulations;
+    private BucketTreeSet<ReformulatedQuery> set;
+    private Random random;
+    
+    @Setup
+    public void setUp() throws IOException {
+        ReformulationLattice lattice = Fixtures.expand(
+                Fixtures.process(dataset.getGraphs(), Fixtures.extensibleQuery(dataset, querySize)), 2);
+        random = new Random(0);
+        reformulations = new ArrayList<>(lattice.getIndex().values());
+        for (ReformulatedQuery q : reformulations) {
+            q.setScore(random.nextInt(reformulations.size() / 4 + 1));
+        }
+        set = new BucketTreeSet<>(reformulations);
+    }
+    
+    @Benchmark
+    public BucketTreeSet<ReformulatedQuery> addAll() {
+        return new BucketTreeSet<>(reformulations);
+    }
+    
+    @Benchmark
+    public int maxBucket() {
+        return set.getBucket(set.last()).size();
+    }
+    
+    @Benchmark
+    public boolean reinsert() {
+        ReformulatedQuery q = reformulations.get(random.nextInt(reformulations.size()));
+        set.remove(q);
+        q.setScore(random.nextInt(reformulations.size() / 4 + 1));
+        return set.add(q);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.benchmarks;
+
+import de.parmol.graph.Graph;
+import eu.unitn.disi.db.gref.lattice.CodedGraph;
+import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to compute the canonical DFS code of a graph ({@link CodedGraph}), 
+ * which is paid for every candidate reformulation generated by the 
+ * extension. Graphs are the reformulations one edge larger than the query. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CanonicalizationBenchmark {
+    @Param({"AIDS_Small", "Synth"})
+    public Dataset dataset;
+    
+    @Param({"2", "4", "6"})
+    public int querySize;
+    
+    private List<Graph> graphs;
+    private int next;
+    
+    @Setup
+    public void setUp() throws IOException {
+        graphs = new ArrayList<>();
+        for (ReformulatedQuery q : Fixtures.expand(
+                Fixtures.process(dataset.getGraphs(), Fixtures.extensibleQuery(dataset, querySize)), 1)) {
+            graphs.add(q.getGraph());
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public CodedGraph canonicalize() {
+        Graph graph = graphs.get(next);
+        next = (next + 1) % graphs.size();
+        return new CodedGraph(graph);
+    }
+}
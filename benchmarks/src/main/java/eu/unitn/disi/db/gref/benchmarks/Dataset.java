@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.benchmarks;
+
+import de.parmol.graph.Graph;
+import de.parmol.graph.GraphFactory;
+import de.parmol.graph.MutableGraph;
+import de.parmol.parsers.GraphParser;
+import de.parmol.parsers.LineGraphParser;
+import de.parmol.parsers.SmilesParser;
+import edu.psu.chemxseer.structure.factory.MyFactory;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The datasets bundled in <code>InputData</code> used by the benchmarks. 
+ * Paths are relative to the directory in the system property 
+ * <code>gqref.data</code> (default <code>InputData</code>), so the benchmarks 
+ * are meant to run from the project root. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public enum Dataset {
+    /*
+     * AIDS_Small only ships the index, its 10000 graphs are the first ones 
+     * of the AIDS database (see DBFile_Meta)
+     */
+    AIDS_Small("AIDS/DBFile", 10000, SmilesParser.class), 
+    Synth("Synth/dataset_g_1000", 0, LineGraphParser.class);
+    
+    private static final long SEED = 123623456L;
+    private static final Map<Dataset, Graph[]> LOADED = new HashMap<>();
+    
+    private final String dbFile; 
+    private final int numberOfGraphs;
+    private final Class<? extends GraphParser> parserClass;
+
+    Dataset(String dbFile, int numberOfGraphs, Class<? extends GraphParser> parserClass) {
+        this.dbFile = dbFile;
+        this.numberOfGraphs = numberOfGraphs;
+        this.parserClass = parserClass;
+    }
+    
+    private static File file(String name) {
+        return new File(System.getProperty("gqref.data", "InputData"), name);
+    }
+    
+    /**
+     * Load (once per JVM) the graph database
+     * @return the graphs of the dataset
+     * @throws IOException if the database cannot be read or parsed
+     */
+    public synchronized Graph[] getGraphs() throws IOException {
+        Graph[] gdb = LOADED.get(this);
+        if (gdb == null) {
+            MyFactory.getDFSCoder();//To load the factories
+            try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(file(dbFile)))) {
+                GraphParser parser = parserClass.newInstance();
+                gdb = parser.parse(in, GraphFactory.getFactory(parser.getDesiredGraphFactoryProperties() | GraphFactory.CLASSIFIED_GRAPH));
+            } catch (InstantiationException | IllegalAccessException | ParseException ex) {
+                throw new IOException(String.format("Cannot load the dataset %s", this), ex);
+            }
+            if (numberOfGraphs > 0 && numberOfGraphs < gdb.length) {
+                gdb = Arrays.copyOf(gdb, numberOfGraphs);
+            }
+            LOADED.put(this, gdb);
+        }
+        return gdb;
+    }
+    
+    /**
+     * Return the queries with the given number of edges, extracted as random 
+     * connected subgraphs of the database with a fixed seed (the bundled query 
+     * files use the labels of the LIndex format, not those of the parsers). 
+     * @param size the number of edges of the queries
+     * @param count the maximum number of queries
+     * @return the queries, never empty
+     * @throws IOException if the queries cannot be read or generated
+     */
+    public List<Graph> getQueries(int size, int count) throws IOException {
+        List<Graph> queries = new ArrayList<>();
+        Graph[] gdb = getGraphs();
+        Random rand = new Random(SEED);
+        Graph g; 
+        for (int i = 0; i < 100 * count && queries.size() < count; i++) {
+            g = gdb[rand.nextInt(gdb.length)];
+            if (g.getEdgeCount() > size) {
+                queries.add(bfs(g, size, rand));
+            }
+        }
+        if (queries.isEmpty()) {
+            throw new IOException(String.format("No query of size %d in %s", size, this));
+        }
+        return queries;
+    }
+    
+    /*
+     * Connected subgraph with the first size edges visited from a random node
+     */
+    private static Graph bfs(Graph g, int size, Random rand) {
+        MutableGraph query = GraphFactory.getFactory(GraphFactory.UNDIRECTED_GRAPH | GraphFactory.CLASSIFIED_GRAPH).createGraph();
+        LinkedList<Integer> queue = new LinkedList<>();
+        boolean[] visitedEdges = new boolean[g.getEdgeCount()];
+        int[] mapping = new int[g.getNodeCount()];
+        int node, edge, adjNode, count = 0;
+        
+        Arrays.fill(mapping, -1);
+        node = g.getNode(rand.nextInt(g.getNodeCount()));
+        mapping[g.getNodeIndex(node)] = query.addNode(g.getNodeLabel(node));
+        queue.add(node);
+        while (!queue.isEmpty() && count < size) {
+            node = queue.removeFirst();
+            for (int i = 0; i < g.getDegree(node) && count < size; i++) {
+                edge = g.getNodeEdge(node, i);
+                if (!visitedEdges[g.getEdgeIndex(edge)]) {
+                    visitedEdges[g.getEdgeIndex(edge)] = true;
+                    adjNode = g.getOtherNode(edge, node);
+                    if (mapping[g.getNodeIndex(adjNode)] == -1) {
+                        mapping[g.getNodeIndex(adjNode)] = query.addNode(g.getNodeLabel(adjNode));
+                        queue.add(adjNode);
+                    }
+                    query.addEdge(mapping[g.getNodeIndex(node)], mapping[g.getNodeIndex(adjNode)], g.getEdgeLabel(edge));
+                    count++;
+                }
+            }
+        }
+        return query;
+    }
+}
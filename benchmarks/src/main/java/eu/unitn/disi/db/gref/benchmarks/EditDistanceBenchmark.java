@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.benchmarks;
+
+import de.parmol.graph.Graph;
+import eu.unitn.disi.db.gref.algorithms.ged.EditDistance;
+import eu.unitn.disi.db.gref.algorithms.ged.EditDistance.ApproximationType;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of the edit distance variants between random pairs of graphs of the 
+ * database. The exact and the suboptimal search run on the queries since 
+ * they are exponential in the graph size. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EditDistanceBenchmark {
+    private static final int PAIRS = 256;
+    private static final int BEAM = 10;
+    private static final double THRESHOLD = 5;
+    
+    @Param({"AIDS_Small", "Synth"})
+    public Dataset dataset;
+    
+    @Param({"2", "4", "6"})
+    public int querySize;
+    
+    @Param({"HUNGARIAN", "VOLGENANT_JONKER"})
+    public ApproximationType approximation;
+    
+    private Graph[] first, second, queries;
+    private int next, nextQuery;
+    
+    @Setup
+    public void setUp() throws IOException {
+        Graph[] gdb = dataset.getGraphs();
+        Random random = new Random(0);
+        first = new Graph[PAIRS];
+        second = new Graph[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            first[i] = gdb[random.nextInt(gdb.length)];
+            second[i] = gdb[random.nextInt(gdb.length)];
+        }
+        queries = dataset.getQueries(querySize, Fixtures.QUERIES).toArray(new Graph[0]);
+        next = 0;
+        nextQuery = 0;
+    }
+    
+    private int pair() {
+        int i = next;
+        next = (next + 1) % PAIRS;
+        return i;
+    }
+    
+    private int queryPair() {
+        int i = nextQuery;
+        nextQuery = (nextQuery + 1) % (queries.length * queries.length);
+        return i;
+    }
+
+    @Benchmark
+    public double approximate() {
+        int i = pair();
+        return EditDistance.getApproximateEditDistance(first[i], second[i], approximation);
+    }
+    
+    @Benchmark
+    public double lowerBound() {
+        int i = pair();
+        return EditDistance.getLowerBound(first[i], second[i]);
+    }
+    
+    @Benchmark
+    public double bounded() {
+        int i = pair();
+        return EditDistance.getBoundedEditDistance(first[i], second[i], THRESHOLD, approximation);
+    }
+    
+    @Benchmark
+    public double exact() {
+        int i = queryPair();
+        return EditDistance.getExactEditDistance(queries[i / queries.length], queries[i % queries.length]);
+    }
+    
+    @Benchmark
+    public double suboptimal() {
+        int i = queryPair();
+        return EditDistance.getSuboptEditDistance(queries[i / queries.length], queries[i % queries.length], BEAM);
+    }
+}
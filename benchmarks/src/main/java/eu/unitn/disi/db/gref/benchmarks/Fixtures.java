@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.benchmarks;
+
+import de.parmol.graph.Graph;
+import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
+import eu.unitn.disi.db.gref.algorithms.GQRExact;
+import eu.unitn.disi.db.gref.algorithms.QueryProcessing;
+import eu.unitn.disi.db.gref.lattice.Query;
+import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
+import java.io.IOException;
+import java.util.LinkedList;
+
+/**
+ * Common set up of the benchmarks
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+final class Fixtures {
+    /**
+     * Number of queries of each size used by the benchmarks
+     */
+    static final int QUERIES = 5;
+    
+    private Fixtures() {
+    }
+    
+    /*
+     * Make the protected lattice extension visible to the benchmarks
+     */
+    private static class Expansion extends GQRExact {
+        Expansion(QueryProcessing qProc) {
+            setDb(qProc.getResults());
+            setLattice(qProc.getLattice());
+        }
+        
+        ReformulationLattice expand(int levels) {
+            LinkedList<ReformulatedQuery> queue = new LinkedList<>(), next;
+            queue.add(lattice.getRoot());
+            for (int level = 0; level < levels; level++) {
+                next = new LinkedList<>();
+                for (ReformulatedQuery q : queue) {
+                    if (q.resultsNumber() > 1) {
+                        extend(lattice, q, next);
+                    }
+                }
+                queue = next;
+            }
+            return lattice;
+        }
+    }
+    
+    /**
+     * Build the first levels of the lattice of a processed query
+     * @param qProc the processed query
+     * @param levels the number of levels to add
+     * @return the lattice
+     */
+    static ReformulationLattice expand(QueryProcessing qProc, int levels) {
+        return new Expansion(qProc).expand(levels);
+    }
+    
+    /**
+     * Answer a query and build the first level of the lattice
+     * @param gdb the graph database
+     * @param query the query
+     * @return the query processing with the results and the lattice
+     * @throws IOException if the query cannot be processed
+     */
+    static QueryProcessing process(Graph[] gdb, Graph query) throws IOException {
+        QueryProcessing qProc = new QueryProcessing();
+        qProc.setGdb(gdb);
+        qProc.setQuery(new Query(query));
+        try {
+            qProc.compute();
+        } catch (AlgorithmExecutionException ex) {
+            throw new IOException("Cannot process the query", ex);
+        }
+        return qProc;
+    }
+    
+    /**
+     * Return the first query of the given size in the dataset with at least 
+     * two results, so that the lattice can be extended
+     * @param dataset the dataset
+     * @param size the number of edges of the query
+     * @return a query with at least two answers
+     * @throws IOException if no such query exists
+     */
+    static Graph extensibleQuery(Dataset dataset, int size) throws IOException {
+        Graph[] gdb = dataset.getGraphs();
+        for (Graph query : dataset.getQueries(size, QUERIES)) {
+            if (process(gdb, query).getResults().length > 1) {
+                return query;
+            }
+        }
+        throw new IOException(String.format("No query of size %d with multiple answers in %s", size, dataset));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.benchmarks;
+
+import de.parmol.graph.Graph;
+import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
+import eu.unitn.disi.db.gref.algorithms.GQRPruning;
+import eu.unitn.disi.db.gref.algorithms.QueryProcessing;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end time of the pruning reformulation algorithm on a processed 
+ * query. The lattice is rebuilt before each invocation. The exact algorithm 
+ * is left out since it builds the whole lattice, which does not finish in 
+ * reasonable time on these datasets: its extension is measured by 
+ * {@link ExtendBenchmark}. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ReformulationBenchmark {
+    @Param({"AIDS_Small", "Synth"})
+    public Dataset dataset;
+    
+    @Param({"2", "4", "6"})
+    public int querySize;
+    
+    @Param({"5", "10", "20"})
+    public int k;
+    
+    @Param({"0.1", "0.5", "1.0"})
+    public float lambda;
+    
+    private Graph[] gdb;
+    private Graph query;
+    private QueryProcessing qProc;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        gdb = dataset.getGraphs();
+        query = Fixtures.extensibleQuery(dataset, querySize);
+    }
+    
+    @Setup(Level.Invocation)
+    public void buildLattice() throws IOException {
+        qProc = Fixtures.process(gdb, query);
+    }
+    
+    @Benchmark
+    public GQRPruning pruning() throws AlgorithmExecutionException {
+        GQRPruning algorithm = new GQRPruning();
+        algorithm.setDb(qProc.getResults());
+        algorithm.setLattice(qProc.getLattice());
+        algorithm.setK(k);
+        algorithm.setLambda(lambda);
+        algorithm.compute();
+        return algorithm;
+    }
+}
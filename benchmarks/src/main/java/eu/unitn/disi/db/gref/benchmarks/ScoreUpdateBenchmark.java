@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.benchmarks;
+
+import eu.unitn.disi.db.gref.algorithms.GQRPruning;
+import eu.unitn.disi.db.gref.algorithms.QueryProcessing;
+import eu.unitn.disi.db.gref.algorithms.ResultMultiplicity;
+import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of the score updates of {@link GQRPruning}: the full drill-down after 
+ * a reformulation is selected and the roll-up after a reformulation is 
+ * extended. The lattice is the first level plus the extension of its best 
+ * unselected reformulation, with the <code>k - 1</code> best reformulations 
+ * already selected. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScoreUpdateBenchmark {
+    @Param({"AIDS_Small", "Synth"})
+    public Dataset dataset;
+    
+    @Param({"2", "4", "6"})
+    public int querySize;
+    
+    @Param({"5", "10", "20"})
+    public int k;
+    
+    @Param({"0.1", "0.5", "1.0"})
+    public float lambda;
+    
+    @Param({"LIST", "BITMAP", "CLASSES"})
+    public GQRPruning.Scoring scoring;
+    
+    private Scorer algorithm;
+    
+    /*
+     * Make the protected score updates visible to the benchmark
+     */
+    private static class Scorer extends GQRPruning {
+        ResultMultiplicity multiplicity;
+        ReformulatedQuery extended;
+        
+        Scorer(QueryProcessing qProc, int k, float lambda, GQRPruning.Scoring scoring) {
+            List<ReformulatedQuery> firstLevel;
+            ReformulatedQuery root;
+            
+            setDb(qProc.getResults());
+            setLattice(qProc.getLattice());
+            setK(k);
+            setLambda(lambda);
+            setScoring(scoring);
+            root = lattice.getRoot();
+            multiplicity = ResultMultiplicity.of(root);
+            initScores();
+            s = new LinkedHashSet<>();
+            extend(lattice, root);
+            updateScores(multiplicity);
+            
+            firstLevel = new ArrayList<>(root.getReformulations());
+            Collections.sort(firstLevel, Collections.reverseOrder());
+            for (ReformulatedQuery q : firstLevel) {
+                if (s.size() < k - 1) {
+                    s.add(q);
+                    updateMultiplicity(multiplicity, q);
+                } else if (extended == null && q.resultsNumber() > 1) {
+                    extended = q;
+                }
+            }
+            if (extended == null) {
+                extended = firstLevel.get(firstLevel.size() - 1);
+            }
+            extend(lattice, extended);
+            updateScores(multiplicity);
+        }
+        
+        /*
+         * The scores of the result sets are reset as after a selection
+         */
+        void drillDown() {
+            resetResultScores();
+            updateScores(multiplicity);
+        }
+        
+        void rollUp() {
+            resetResultScores();
+            updateScores(multiplicity, extended);
+        }
+    }
+    
+    @Setup
+    public void setUp() throws IOException {
+        QueryProcessing qProc = Fixtures.process(dataset.getGraphs(), Fixtures.extensibleQuery(dataset, querySize));
+        algorithm = new Scorer(qProc, k, lambda, scoring);
+    }
+
+    @Benchmark
+    public void updateScores() {
+        algorithm.drillDown();
+    }
+    
+    @Benchmark
+    public void updateScoresAfterExtension() {
+        algorithm.rollUp();
+    }
+}
@@ -30,17 +30,22 @@ import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
 import eu.unitn.disi.db.command.util.StopWatch;
 import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
 import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
+import eu.unitn.disi.db.gref.monitoring.Counter;
+import eu.unitn.disi.db.gref.monitoring.Metrics;
+import eu.unitn.disi.db.gref.monitoring.Span;
+import eu.unitn.disi.db.gref.monitoring.Timer;
+import eu.unitn.disi.db.gref.monitoring.TraceEvent;
+import eu.unitn.disi.db.gref.monitoring.Tracing;
+import eu.unitn.disi.db.gref.utils.collections.IntHashSet;
+import eu.unitn.disi.db.gref.utils.collections.IntIntHashMap;
+import eu.unitn.disi.db.gref.utils.collections.IntIterator;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This algorithm computes the reformulations of a figiven query over the given
@@ -66,13 +71,38 @@ public class GQRExact extends LatticeAlgorithm {
             defaultValue = "0.5"
     )
     protected float lambda;
+    
+    @AlgorithmInput(
+            description = "Number of threads computing the marginal gains in the greedy phase",
+            mandatory = false,
+            defaultValue = "1"
+    )
+    protected int threads = 1;
+    
+    @AlgorithmInput(
+            description = "Keep only the closed reformulations, whose results differ from every child",
+            mandatory = false,
+            defaultValue = "false"
+    )
+    protected boolean closed;
 
 
     protected int callToExtend = 0;
     
+    protected int collapsed; 
+    
+    protected double objective; 
+    
     protected Set<ReformulatedQuery> checkQueries; 
     
     protected static final int REFORMULATION_PRINT_COUNT = 1000;
+    
+    protected static final Counter EXPANSIONS = Metrics.counter("gqref_lattice_expansions_total", "Calls to extend a reformulation");
+    protected static final Counter INSERTS = Metrics.counter("gqref_lattice_inserts_total", "Reformulations inserted in the lattice");
+    protected static final Counter DUPLICATES = Metrics.counter("gqref_lattice_duplicates_total", "Generated reformulations already in the lattice");
+    protected static final Counter COLLAPSED = Metrics.counter("gqref_lattice_collapsed_total", "Non-closed reformulations collapsed into a child with the same results");
+    private static final Timer LATTICE_TIMER = Metrics.timer("gqref_lattice_build_seconds", "Time to build the whole lattice");
+    private static final Timer GREEDY_TIMER = Metrics.timer("gqref_greedy_selection_seconds", "Time of the greedy selection of the exact algorithm");
 
 
     protected int queryCount; 
@@ -85,130 +115,186 @@ public class GQRExact extends LatticeAlgorithm {
     public void compute() throws AlgorithmExecutionException {
         int i;
         StopWatch watch = new StopWatch();
-        LinkedList<ReformulatedQuery> queue;
         ReformulatedQuery currentQuery;//, candidateQuery;
         
-        //Step 2: construct the lattice (this is exact, first we need the lattice)
-        callToExtend = 0;
-        queryCount = 0; 
-        queue = new LinkedList<>();
-        queue.add(lattice.getRoot());
-        watch.start();
-
-        //TODO: (b) Add a level indication
-        //TODO: (c) Manage directions as well
-        info("Starting lattice generation");
-        while (!queue.isEmpty()) {
-            //Collections.shuffle(queue);
-            currentQuery = queue.poll();
-            if (currentQuery.resultsNumber() > 1) { //Speed-up optimization 
-                extend(lattice, currentQuery, queue);
-            }
-            currentQuery.clear();//Optimize the space, remove unused structures. 
-        }
-        algorithmTime = watch.getElapsedTimeMillis();
-        info("Time to build the lattice: %dms", watch.getElapsedTimeMillis());
-        //debug("Reformulation lattice\n%s", lattice);
-        info("Total number of reformulations: %d", lattice.size());
+        buildLattice();
 
         //Step 3: greedy algorithm to compute the final set s
         //maximize cov(S) + \lambda * \sum_{q1,q2} div(q1, q2)
-        watch.reset();
+        watch.start();
+        long start = GREEDY_TIMER.start();
         s = new LinkedHashSet<>();
+        MarginalGains gains = new MarginalGains(lattice);
         
-        TreeMap<Double,Set<ReformulatedQuery>> orderedReformulations;
-        Set<ReformulatedQuery> queries; 
-        double score; 
+        GainQueue queue = null; 
+        double gain; 
+        boolean last; 
         List<ReformulatedQuery> checkList = null; 
+        ForkJoinPool pool = null; 
+        ReformulatedQuery[] nodes = null; 
+        GainEvaluation.Best best; 
         i = 0;
         if (checkQueries != null) {
             checkList = new ArrayList<>(checkQueries);
         }
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+            nodes = lattice.getIndex().values().toArray(new ReformulatedQuery[lattice.size()]);
+        } else {
+            queue = new GainQueue(lattice, gains, lambda);
+        }
         
-        while (s.size() < k) {
-            orderedReformulations = new TreeMap<>();
-            for (ReformulatedQuery q : lattice.getIndex().values()) {
-                if (!s.contains(q)) {
-                    score = coverageDiff(s, q) / 2.0 + lambda * diversityDiff(s, q);
-                    q.setScore(score);
-                    queries = orderedReformulations.get(score);
-                    if (queries == null) {
-                        queries = new HashSet<>();
+        try {
+            while (s.size() < k) {
+                if (pool != null) {
+                    best = pool.invoke(new GainEvaluation(nodes, 0, nodes.length, gains, lambda, s));
+                    if (best.candidates == 0) { //Fewer than k reformulations
+                        break;
+                    }
+                    //The first in the lattice, as in the sequential evaluation
+                    currentQuery = best.ties.get(0);
+                    gain = best.gain; 
+                    last = best.candidates == 1;
+                } else {
+                    currentQuery = queue.best();
+                    if (currentQuery == null) { //Fewer than k reformulations
+                        break;
                     }
-                    queries.add(q);
-                    orderedReformulations.put(score, queries);
+                    gain = queue.gain(currentQuery);
+                    last = queue.remaining() == 1;
                 }
-            }
-            queries = orderedReformulations.lastEntry().getValue();
-            if (checkList != null) {
-                ReformulatedQuery qPrime = checkList.get(i);
-                if (queries.contains(qPrime)) {
-                    currentQuery = qPrime;
+                if (checkList != null) {
+                    ReformulatedQuery qPrime = lattice.findReformulation(checkList.get(i));
+                    if (qPrime != null && !s.contains(qPrime) && gains.coverageDiff(qPrime) / 2.0 + lambda * gains.diversityDiff(qPrime) == gain) {
+                        currentQuery = qPrime;
+                    } else {
+                        error("Query %s with marginal gain %f is not the maximum!", checkList.get(i), gains.getMultiplicity().coverageDiff(checkList.get(i)) / 2.0 + lambda * gains.getMultiplicity().diversityDiff(checkList.get(i)));
+                    }
+                    i++;
+                }
+                info("Reformulated Query %s obj marginal gain: %f, size: %d", currentQuery, gains.coverageDiff(currentQuery) / 2.0 + lambda * gains.diversityDiff(currentQuery), currentQuery.resultsNumber());
+                s.add(currentQuery);
+                if (queue != null) {
+                    queue.select(currentQuery);
                 } else {
-                    error("Query %s with marginal gain %f is not the maximum!", checkList.get(i), coverageDiff(s, qPrime) / 2.0 + lambda * diversityDiff(s, qPrime));
-                    currentQuery = queries.iterator().next();
+                    gains.select(currentQuery);
+                }
+                if (last) {
+                    break;//Optimization check
                 }
-                i++;
-            } else {
-                currentQuery = queries.iterator().next();
             }
-            info("Reformulated Query %s obj marginal gain: %f, size: %d", currentQuery, coverageDiff(s, currentQuery) / 2.0 + lambda * diversityDiff(s, currentQuery), currentQuery.resultsNumber());
-            s.add(currentQuery);
-            if (orderedReformulations.size() == 1 && orderedReformulations.lastEntry().getValue().size() == 1) {
-                break;//Optimization check
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
             }
         }
         algorithmTime += watch.getElapsedTimeMillis();
+        GREEDY_TIMER.stop(start);
         info("Time to compute the reformulations using greedy algorithm: %dms", watch.getElapsedTimeMillis());
-        Set<Integer> finalResults = new HashSet<>(); 
-        for (ReformulatedQuery q : s) {
-            finalResults.addAll(q.getResults());
-        }
-        coverage = finalResults.size()/(double)lattice.getRoot().resultsNumber();
-        diversity = diversitySum(s);
+        coverage = gains.getMultiplicity().getCovered()/(double)lattice.getRoot().resultsNumber();
+        diversity = gains.getMultiplicity().diversity();
+        objective = gains.getMultiplicity().getCovered() + lambda * diversity;
         info("Coverage of the result set: %.2f%%", coverage * 100);
         info("Diversity of the result set: %d", diversity);
+        info("Objective value of the result set: %.2f", objective);
         info("Number of call to extend: %d", callToExtend);
         info("Size of the final result set: %d", s.size());
     }
         
 
+    /**
+     * Step 2: construct the whole lattice, breadth first (this is exact, first 
+     * we need the lattice)
+     * @throws AlgorithmExecutionException if the lattice exceeds the limits
+     */
+    protected void buildLattice() throws AlgorithmExecutionException {
+        StopWatch watch = new StopWatch();
+        LinkedList<ReformulatedQuery> queue;
+        ReformulatedQuery currentQuery;
+        
+        callToExtend = 0;
+        queryCount = 0; 
+        collapsed = 0;
+        queue = new LinkedList<>();
+        queue.add(lattice.getRoot());
+        watch.start();
+        long start = LATTICE_TIMER.start();
+
+        //TODO: (b) Add a level indication
+        //TODO: (c) Manage directions as well
+        info("Starting lattice generation");
+        while (!queue.isEmpty()) {
+            //Collections.shuffle(queue);
+            currentQuery = queue.poll();
+            if (currentQuery.resultsNumber() > 1) { //Speed-up optimization 
+                extend(lattice, currentQuery, queue);
+                enforceLimits();
+                //Breadth first the lookups only hit the next level, the 
+                //reformulation can leave the index
+                if (closed && currentQuery != lattice.getRoot()) {
+                    collapse(currentQuery);
+                }
+            }
+            currentQuery.clear();//Optimize the space, remove unused structures. 
+        }
+        algorithmTime = watch.getElapsedTimeMillis();
+        LATTICE_TIMER.stop(start);
+        info("Time to build the lattice: %dms", watch.getElapsedTimeMillis());
+        //debug("Reformulation lattice\n%s", lattice);
+        info("Total number of reformulations: %d", lattice.size());
+        if (closed) {
+            info("Non-closed reformulations collapsed: %d", collapsed);
+        }
+        info("Estimated lattice memory: %d bytes (%d embeddings)", lattice.getEstimatedBytes(), lattice.getEmbeddings());
+    }
+    
     protected void extend(ReformulationLattice lattice, ReformulatedQuery currentQuery, LinkedList<ReformulatedQuery> queue) {
-        Map<Integer, Integer>[] duplicateMappings;
-        Set<Integer> tmpCandidates, tmpMapped;
-        Map<Integer, Integer> tmpNodeMap;
-        Set<Integer>[] duplicateCandidates, duplicateMappedEdges;
+        IntIntHashMap[] duplicateMappings;
+        IntHashSet tmpCandidates, tmpMapped;
+        IntIntHashMap tmpNodeMap;
+        IntHashSet[] duplicateCandidates, duplicateMappedEdges;
         Graph graph;
         int degree;
-        int edge, adjNode;
+        int edge, adjNode, candidate;
         int[] newDFSInverseMapping, actualDFSMapping; 
-        Integer adjMappedNode;
+        int adjMappedNode;
         //Iterators
         int i, j;
-        Integer candidateMappedNode;
+        int candidateMappedNode;
         MutableGraph candidateReformulation;
-        HashMap<Integer, Integer> nodeMap;
+        IntIntHashMap nodeMap;
+        IntIterator it;
 
 
-        HashSet<Integer> candidates, mapped;
+        IntHashSet candidates, mapped;
         ReformulatedQuery candidateQuery;
         ReformulatedQuery previousQuery; 
         boolean add = false; 
+        long embeddings = 0;
+        if (!withinLimits()) { //The lattice cannot grow anymore
+            return;
+        }
+        Span span = Tracing.begin(TraceEvent.LATTICE_EXPANSION);
         
         callToExtend++;
-        for (int gId : currentQuery.getResults()) {
+        EXPANSIONS.inc();
+        expansion: 
+        for (IntIterator results = currentQuery.getResults().intIterator(); results.hasNext();) {
+            int gId = results.nextInt();
             graph = gdb[gId];
             //Each graph may have mulitple instances per query (different paths, same query)
             duplicateMappings = currentQuery.getMappings(gId);
             duplicateCandidates = currentQuery.getCandidates(gId);
             duplicateMappedEdges = currentQuery.getMappedEdges(gId);
+            embeddings += currentQuery.numberOfDuplicates(gId);
             //For each of the different instances
             for (i = 0; i < currentQuery.numberOfDuplicates(gId); i++) {
-                mapped = (HashSet) duplicateMappedEdges[i];
-                nodeMap = (HashMap) duplicateMappings[i];
-                candidates = (HashSet) duplicateCandidates[i];
+                mapped = duplicateMappedEdges[i];
+                nodeMap = duplicateMappings[i];
+                candidates = duplicateCandidates[i];
                 checkRemove(candidates, mapped, graph);
-                for (int candidate : candidates) { //For each candidate node (nodes to explore)
+                for (it = candidates.intIterator(); it.hasNext();) { //For each candidate node (nodes to explore)
+                    candidate = it.nextInt();
                     //And now expand!!! 
                     degree = graph.getDegree(candidate);
                     for (j = 0; j < degree; j++) {
@@ -222,10 +308,10 @@ public class GQRExact extends LatticeAlgorithm {
                             candidateReformulation = (MutableGraph) currentQuery.getGraph().clone();
                             //add the new edge to the reformulation
                             // I need a node with a predefined id
-                            candidateMappedNode = nodeMap.get(candidate);
-                            assert candidateMappedNode != null;
-                            adjMappedNode = nodeMap.get(adjNode);
-                            if (adjMappedNode == null) {
+                            candidateMappedNode = nodeMap.get(candidate, -1);
+                            assert candidateMappedNode >= 0;
+                            adjMappedNode = nodeMap.get(adjNode, -1);
+                            if (adjMappedNode < 0) {
                                 adjMappedNode = candidateReformulation.addNode(graph.getNodeLabel(adjNode));
                             } 
                             candidateReformulation.addEdge(candidateMappedNode, adjMappedNode, graph.getEdgeLabel(edge));
@@ -233,9 +319,10 @@ public class GQRExact extends LatticeAlgorithm {
                             //update maps
                             candidateQuery = new ReformulatedQuery(candidateReformulation);
                             previousQuery = candidateQuery; 
-                            tmpNodeMap = (HashMap<Integer, Integer>) nodeMap.clone();
+                            tmpNodeMap = nodeMap.clone();
                             //Reformulation already present in the lattice
                             if (lattice.containsReformulation(candidateQuery)) {
+                                DUPLICATES.inc();
                                 candidateQuery = lattice.findReformulation(candidateQuery);                                
                                 //Prevent the creation of a DAG, check the father (is this correct?)
                                 if (candidateQuery.hasFather(currentQuery)) {
@@ -248,8 +335,9 @@ public class GQRExact extends LatticeAlgorithm {
                                         newDFSInverseMapping = previousQuery.getInverseMapping();
                                         //Use dfs code mapping to map nodes to nodes (this is ensured by the optimiality of the 
                                         //dfs codes ;)
-                                        for(Entry<Integer,Integer> mapping : tmpNodeMap.entrySet()) {
-                                            mapping.setValue(actualDFSMapping[newDFSInverseMapping[mapping.getValue()]]);
+                                        for (IntIterator keys = tmpNodeMap.keyIterator(); keys.hasNext();) {
+                                            int node = keys.nextInt();
+                                            tmpNodeMap.put(node, actualDFSMapping[newDFSInverseMapping[tmpNodeMap.get(node)]]);
                                         }
                                     }
                                     assert tmpNodeMap.size() == candidateQuery.getNodeCount();
@@ -258,11 +346,16 @@ public class GQRExact extends LatticeAlgorithm {
                                     if (!candidateQuery.containsResult(gId)) {
                                         warn("Reformulated query %s does not contain the result %d", candidateQuery.toString(), gId);
                                     }
+                                    //Its results are final and among the ones of this reformulation
+                                    if (candidateQuery.resultsNumber() == currentQuery.resultsNumber()) {
+                                        currentQuery.setEquivalentSupergraph();
+                                    }
                                 }
                             } else {
                                 tmpNodeMap.put(adjNode, adjMappedNode);
                                 candidateQuery.setLastAddedNode(adjMappedNode);
                                 lattice.addReformulation(candidateQuery);
+                                INSERTS.inc();
                                 if (candidateQuery.isTree()) {
                                     treeCount++;
                                 }
@@ -279,8 +372,8 @@ public class GQRExact extends LatticeAlgorithm {
                             if (add) {
                                 currentQuery.addQuery(candidateQuery);
                                 candidateQuery.addResult(gId);
-                                tmpCandidates = (HashSet<Integer>) candidates.clone();
-                                tmpMapped = (HashSet<Integer>) mapped.clone();
+                                tmpCandidates = candidates.clone();
+                                tmpMapped = mapped.clone();
                                 //Update the maps for adjacent node
                                 
                                 tmpCandidates.add(adjNode);
@@ -292,26 +385,60 @@ public class GQRExact extends LatticeAlgorithm {
                                 candidateQuery.addMappedEdges(tmpMapped);
                                 add = false; 
                             }
+                            if (!withinLimits()) {
+                                break expansion;
+                            }
                         }
                     }
                 }
             }
         }
+        internResults(lattice, currentQuery);
+        span.end(currentQuery.resultsNumber(), embeddings, lattice.size());
     } 
 
+    /**
+     * Remove an extended reformulation from the selectable ones if a child 
+     * has the same results, the child represents its equivalence class
+     * @param query an extended reformulation
+     * @return true if the reformulation has been collapsed
+     */
+    protected boolean collapse(ReformulatedQuery query) {
+        if (query.isClosed()) {
+            return false;
+        }
+        //Still linked to its father and its children, its bytes are retained
+        lattice.hideReformulation(query);
+        collapsed++;
+        COLLAPSED.inc();
+        return true;
+    }
+
+    /**
+     * Share the results of the new reformulations with the equal result sets
+     * of the lattice, the lattice keeps each distinct set
+     * @param lattice the lattice
+     * @param currentQuery the reformulation just extended
+     */
+    protected void internResults(ReformulationLattice lattice, ReformulatedQuery currentQuery) {
+        //The results of the new reformulations come only from this one
+        for (ReformulatedQuery q : currentQuery.getReformulations()) {
+            lattice.internResults(q);
+        }
+    }
+
     @Override
     public int getNumberOfExpansions() {
         return callToExtend;
     }
     
-    private void checkRemove(Set<Integer> candidates, Set<Integer> mappedEdges, Graph g) {
-        Set<Integer> tmpCandidates = new HashSet<>(candidates);
-        for (Integer candidate : tmpCandidates) {
+    private void checkRemove(IntHashSet candidates, IntHashSet mappedEdges, Graph g) {
+        for (int candidate : candidates.toIntArray()) {
             checkRemove(candidates, mappedEdges, g, candidate);
         }
     }
     
-    private void checkRemove(Set<Integer> candidates, Set<Integer> mappedEdges, Graph g, Integer candidate) {
+    private void checkRemove(IntHashSet candidates, IntHashSet mappedEdges, Graph g, int candidate) {
         int degree = g.getDegree(candidate);
         int edge;
         for (int i = 0; i < degree; i++) {
@@ -327,6 +454,29 @@ public class GQRExact extends LatticeAlgorithm {
         this.lambda = lambda;
     }
 
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setClosed(boolean closed) {
+        this.closed = closed;
+    }
+    
+    /**
+     * @return the number of non-closed reformulations collapsed
+     */
+    public int getCollapsed() {
+        return collapsed;
+    }
+
+    /**
+     * @return the objective cov(S) + lambda * div(S) of the selected 
+     * reformulations
+     */
+    public double getObjective() {
+        return objective;
+    }
+
     
     public void setCheckQueries(Set<ReformulatedQuery> checkQueries) {
         this.checkQueries = checkQueries;
@@ -30,14 +30,16 @@ import eu.unitn.disi.db.gref.algorithms.index.FrequencyIndex;
 import eu.unitn.disi.db.gref.lattice.BucketTreeSet;
 import eu.unitn.disi.db.gref.lattice.Query;
 import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import eu.unitn.disi.db.gref.monitoring.Span;
+import eu.unitn.disi.db.gref.monitoring.TraceEvent;
+import eu.unitn.disi.db.gref.monitoring.Tracing;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -57,10 +59,12 @@ public class GQRIndex extends GQRPruning {
         StopWatch watch = new StopWatch();
         FrequencyIndex index;
         callToExtend = 0;
+        collapsed = 0;
         
         watch.start();
         //1: Load index
         info("Loading index located in: %s", indexFile);
+        Span span = Tracing.begin(TraceEvent.INDEX_LOADING);
         try (ObjectInputStream reader = new ObjectInputStream(new FileInputStream(indexFile))) {
             lattice = (FrequencyIndex) reader.readObject();
             index = (FrequencyIndex)lattice;
@@ -75,6 +79,7 @@ public class GQRIndex extends GQRPruning {
         } catch (IOException | ClassNotFoundException ex) {
             throw new AlgorithmExecutionException("The index file %s is not a valid index", ex, indexFile);
         } 
+        span.end(index.size(), new File(indexFile).length(), 0);
         info("Time to load index: %dms", watch.getElapsedTimeMillis());
         
         //2: Answer query on index
@@ -83,7 +88,8 @@ public class GQRIndex extends GQRPruning {
             ReformulatedQuery currentQuery = index.findReformulation(query);
             info("Time to answer the query: %dms", watch.getElapsedTimeMillis());
             
-            Map<Integer,Integer> multiplicity; 
+            ResultMultiplicity multiplicity; 
+            int id;
             queryCount = 0;
             boolean expand = false; 
 
@@ -91,40 +97,40 @@ public class GQRIndex extends GQRPruning {
             //Expand the first level. 
             //List<ReformulatedQuery> orderedReformulations = new ArrayList<>(lattice.size());
             BucketTreeSet<ReformulatedQuery> orderedReformulations;
-            queryScores = new HashMap<>();
-            multiplicity = new HashMap<>();
-            for (Integer res : currentQuery.getResults()) {
-                multiplicity.put(res, 0);
-            }
+            initScores();
+            multiplicity = ResultMultiplicity.of(currentQuery);
             s = new LinkedHashSet<>();
 
             //extend(index, currentQuery);
             updateScores(multiplicity);
-            GQRPruning.Score scores;
             Set<ReformulatedQuery> extended = new HashSet<>();
             ReformulatedQuery father; 
             //Set<ReformulatedQuery> considered = new HashSet<>();
             orderedReformulations = new BucketTreeSet<>(); 
             for (ReformulatedQuery q : lattice.getIndex().values()) {
-                orderedReformulations.add(q);
+                //Extended when the index was built
+                if (q != index.getRoot()) {
+                    checkClosed(q);
+                }
+                enqueue(orderedReformulations, q);
             }        
             //Add lb reasoning? 
-            while (s.size() < k) {
+            while (s.size() < k && !orderedReformulations.isEmpty()) {
                 //Optimization based on the assumption that the first with the highest 
                 //score and same ub and actual marginal will is likely to prevent
                 //node expansion
                 currentQuery = orderedReformulations.last();
                 for (ReformulatedQuery q : orderedReformulations.getBucket(currentQuery)) {
-                    scores = queryScores.get(q);
-                    if (scores.upper <= scores.actual) {
+                    id = q.getNodeId();
+                    if (upperScores[id] <= actualScores[id]) {
                         currentQuery = q; 
                         break;
                     }
                 }  
-                scores = queryScores.get(currentQuery);
+                id = currentQuery.getNodeId();
                 expand = false; 
 
-                if (scores.upper <= scores.actual && !s.contains(currentQuery)) {
+                if (upperScores[id] <= actualScores[id] && !s.contains(currentQuery)) {
                     s.add(currentQuery);
                     updateMultiplicity(multiplicity, currentQuery);
                     //extended = new HashSet<>();
@@ -133,30 +139,31 @@ public class GQRIndex extends GQRPruning {
 
                     //Optimize to update if needed. 
                     for (ReformulatedQuery q : index.getIndex().values()) {
-                        orderedReformulations.add(q);
+                        enqueue(orderedReformulations, q);
                     }
-                    info("Reformulated Query %s obj marginal gain: %f, size: %d", currentQuery, scores.actual, currentQuery.resultsNumber());
+                    info("Reformulated Query %s obj marginal gain: %f, size: %d", currentQuery, actualScores[id], currentQuery.resultsNumber());
                 } else {
                     expand = true; 
                 }
                 if (expand) {
-                    //info("Scores: %f, %f, %f", scores.actual, scores.upper, scores.lower);
                     if (!extended.contains(currentQuery) && currentQuery.resultsNumber() > 1) {
                         extend(index, currentQuery);
+                        enforceLimits();
                         father = currentQuery;
                         while (father != null && father != index.getRoot()) {
                             orderedReformulations.remove(father);
                             father = father.getFather();
                         }
                         extended.add(currentQuery);
+                        checkClosed(currentQuery);
                         updateScores(multiplicity, currentQuery);
                         currentQuery.clear();
                         for (ReformulatedQuery q : currentQuery.getReformulations()) {
-                            orderedReformulations.add(q);
+                            enqueue(orderedReformulations, q);
                         }
                         father = currentQuery;
                         while (father != null && father != index.getRoot()) {
-                            orderedReformulations.add(father);
+                            enqueue(orderedReformulations, father);
                             father = father.getFather();
                         }
                     } else {
@@ -169,17 +176,16 @@ public class GQRIndex extends GQRPruning {
             }
             algorithmTime = watch.getElapsedTimeMillis();
             info("Total number of reformulations generated: %d", index.size());
-            int results = 0; 
-            for (Integer mult : multiplicity.values()) {
-                if (mult > 0) {
-                    results++;
-                }
-            }
-            coverage = results/(double)lattice.getRoot().resultsNumber();
-            diversity = diversitySum(s);
+            coverage = multiplicity.getCovered()/(double)lattice.getRoot().resultsNumber();
+            diversity = multiplicity.diversity();
+            objective = multiplicity.getCovered() + lambda * diversity;
             info("Coverage of the result set: %.2f%%", coverage*100);
             info("Diversity of the result set: %d", diversity);
+            info("Objective value of the result set: %.2f", objective);
             info("Number of call to extend: %d", callToExtend);
+            if (closed) {
+                info("Non-closed reformulations collapsed: %d", collapsed);
+            }
             info("Time to compute the reformulations using greedy algorithm: %dms", algorithmTime);
             info("Size of the final result set: %d", s.size());
         } else {
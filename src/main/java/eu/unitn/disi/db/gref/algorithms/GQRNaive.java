@@ -29,11 +29,14 @@ import eu.unitn.disi.db.command.util.StopWatch;
 import eu.unitn.disi.db.gref.lattice.BucketTreeSet;
 import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
 import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * A naive implementation of Graph Query Reformulation which takes the top-k 
- * most frequent reformulated queries
+ * most frequent reformulated queries (in closed mode the most frequent closed
+ * ones)
  * @author Davide Mottin <mottin@disi.unitn.eu>
  */
 public class GQRNaive extends GQRExact {
@@ -44,14 +47,18 @@ public class GQRNaive extends GQRExact {
         ReformulatedQuery currentQuery;//, candidateQuery;
         queryCount = 0;
         callToExtend = 0;
+        collapsed = 0;
         boolean expand = false; 
         
         watch.start();
         currentQuery = lattice.getRoot();
         BucketTreeSet<ReformulatedQuery> orderedReformulations;
+        //Extended reformulations having a child with the same results (closed mode)
+        Set<ReformulatedQuery> nonClosed = new HashSet<>();
         
         s = new LinkedHashSet<>();        
         extend(lattice, currentQuery);
+        enforceLimits();
         //Set<ReformulatedQuery> considered = new HashSet<>();
         orderedReformulations = new BucketTreeSet<>(); 
         for (ReformulatedQuery q : lattice.getIndex().values()) {
@@ -62,21 +69,36 @@ public class GQRNaive extends GQRExact {
         while (s.size() < k && !orderedReformulations.isEmpty()) {
             currentQuery = orderedReformulations.last();
             
-            if (!s.contains(currentQuery)) {
-                s.add(currentQuery);
+            if (!s.contains(currentQuery) && !nonClosed.contains(currentQuery)) {
                 extend(lattice, currentQuery);
+                enforceLimits();
                 orderedReformulations.remove(currentQuery);
                 for (ReformulatedQuery child : currentQuery.getReformulations()) {
                     child.setScore(child.resultsNumber());
                     orderedReformulations.add(child);
                 }
-                info("Reformulated Query %s, relative frequency: %f", currentQuery, currentQuery.getScore()/lattice.getRoot().resultsNumber());
+                if (closed && currentQuery != lattice.getRoot() && !currentQuery.isClosed()) {
+                    //The child with the same results, hence the same frequency, replaces it
+                    nonClosed.add(currentQuery);
+                    collapsed++;
+                    COLLAPSED.inc();
+                } else {
+                    s.add(currentQuery);
+                    info("Reformulated Query %s, relative frequency: %f", currentQuery, currentQuery.getScore()/lattice.getRoot().resultsNumber());
+                }
+            } else { //Queued again as the child of another reformulation
+                orderedReformulations.remove(currentQuery);
             }
         }
         algorithmTime = watch.getElapsedTimeMillis();
         diversity = diversitySum(s);
+        objective = ReformulationAlgorithm.coverage(s) + lambda * diversity;
         info("Coverage of the result set: %.2f%%", ReformulationAlgorithm.coverage(s)/(double)lattice.getRoot().resultsNumber()*100.0);
+        info("Objective value of the result set: %.2f", objective);
         info("Number of call to extend: %d", callToExtend);
+        if (closed) {
+            info("Non-closed reformulations collapsed: %d", collapsed);
+        }
         info("Time to compute the reformulations using naive algorithm: %dms", algorithmTime);
         info("Size of the final result set: %d", s.size());
     }
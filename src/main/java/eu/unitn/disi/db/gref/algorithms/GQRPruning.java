@@ -24,11 +24,23 @@
 
 package eu.unitn.disi.db.gref.algorithms;
 
+import de.parmol.graph.Graph;
+import eu.unitn.disi.db.command.algorithmic.AlgorithmInput;
 import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
 import eu.unitn.disi.db.command.util.StopWatch;
 import eu.unitn.disi.db.gref.lattice.BucketTreeSet;
 import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
 import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
+import eu.unitn.disi.db.gref.monitoring.Counter;
+import eu.unitn.disi.db.gref.monitoring.Metrics;
+import eu.unitn.disi.db.gref.monitoring.Span;
+import eu.unitn.disi.db.gref.monitoring.Timer;
+import eu.unitn.disi.db.gref.monitoring.TraceEvent;
+import eu.unitn.disi.db.gref.monitoring.Tracing;
+import eu.unitn.disi.db.gref.utils.collections.Bitmaps;
+import eu.unitn.disi.db.gref.utils.collections.IntHashSet;
+import eu.unitn.disi.db.gref.utils.collections.IntIterator;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -43,118 +55,162 @@ import java.util.Set;
  * @author Davide Mottin <mottin@disi.unitn.eu>
  */
 public class GQRPruning extends GQRExact {  
-    protected Map<ReformulatedQuery, Score> queryScores; 
-    private int sumMultiplicity; 
+    private static final Timer PRUNING_TIMER = Metrics.timer("gqref_pruning_seconds", "Time of the best-first branch-and-bound selection");
+    private static final Counter SCORE_UPDATES = Metrics.counter("gqref_score_updates_total", "Updates of the scores in the lattice");
+    private static final Counter SCORES_COMPUTED = Metrics.counter("gqref_scores_computed_total", "Computations of lower, upper and actual scores");
+    private static final Counter SIGNATURE_BOUNDS = Metrics.counter("gqref_signature_bounds_total", "Upper bounds tightened by the edge signatures of the embeddings");
+    /*
+     * Lower bound, upper bound and actual marginal gain of each reformulation 
+     * indexed by its node id in the lattice
+     */
+    protected double[] lowerScores; 
+    protected double[] upperScores; 
+    protected double[] actualScores; 
+    /*
+     * Bitmap of the results with multiplicity m in multiplicityBitmaps[m] 
+     * (m > 0, null if empty), used by the bitmap scoring
+     */
+    private long[][] multiplicityBitmaps;
+    /*
+     * Equivalence classes of the results refined by the result sets of the 
+     * lattice, used by the class scoring
+     */
+    private ResultClasses resultClasses; 
+    private int refinedSets; 
+    /*
+     * Lower, upper and actual score of each shared result set (3 per set), 
+     * valid if its stamp is the current one: the scores depend only on the 
+     * results and the multiplicities
+     */
+    private double[] resultSetScores;
+    private int[] resultSetStamps;
+    private int resultSetStamp;
+    /*
+     * Reformulations whose upper bound has been tightened by the signature 
+     * bound since the last selection
+     */
+    private Set<ReformulatedQuery> bounded;
+    /*
+     * Extended reformulations having a child with the same results (closed 
+     * mode), they stay in the lattice to keep its links but are never queued
+     */
+    private Set<ReformulatedQuery> nonClosed;
     
+    @AlgorithmInput(
+            description = "Computation of the scores, walking the results of each reformulation or intersecting bitmaps", 
+            mandatory = false,
+            defaultValue = "LIST"
+    )
+    protected Scoring scoring = Scoring.LIST;
     
-    protected class Score {
-        double lower; 
-        double upper;
-        double actual; 
-        
-        public Score() {}
-
-        public Score(double lower, double upper, double actual) {
-            this.lower = lower;
-            this.upper = upper;
-            this.actual = actual;
-        }
-
-        @Override
-        public String toString() {
-            return "(" + lower + "," + upper + "," + actual + ')';
-        }
+    public enum Scoring {
+        /**
+         * Look up the multiplicity of each result of the reformulation, the 
+         * time is proportional to the number of results
+         */
+        LIST,
+        /**
+         * Count the results of the reformulation in each multiplicity bitmap, 
+         * the time is proportional to the words of the bitmaps times the 
+         * distinct multiplicities (at most k)
+         */
+        BITMAP,
+        /**
+         * Group the results in the same reformulations into weighted classes
+         * and look up the multiplicity of each class of the reformulation, 
+         * the time is proportional to the number of classes
+         */
+        CLASSES
     }
+    
 
     @Override
     public void compute() throws AlgorithmExecutionException {
         StopWatch watch = new StopWatch();
         ReformulatedQuery currentQuery;//, candidateQuery;
-        Map<Integer,Integer> multiplicity; 
+        ResultMultiplicity multiplicity; 
+        int id;
         queryCount = 0;
         callToExtend = 0;
+        collapsed = 0;
         boolean expand = false; 
         double maxAct;
         ReformulatedQuery maxQuery; 
         
         
         watch.start();
+        long start = PRUNING_TIMER.start();
         currentQuery = lattice.getRoot();
         //Expand the first level. 
         BucketTreeSet<ReformulatedQuery> orderedReformulations;
-        queryScores = new HashMap<>();
-        multiplicity = new HashMap<>();
-        for (Integer res : currentQuery.getResults()) {
-            multiplicity.put(res, 0);
-        }
+        initScores();
+        multiplicity = ResultMultiplicity.of(currentQuery);
         s = new LinkedHashSet<>();
         
         extend(lattice, currentQuery);
+        enforceLimits();
         updateScores(multiplicity);
-        Score scores;
         Set<ReformulatedQuery> extended = new HashSet<>();
         ReformulatedQuery father; 
-        orderedReformulations = new BucketTreeSet<>(); 
-        for (ReformulatedQuery q : lattice.getIndex().values()) {
-            orderedReformulations.add(q);
-        }        
-        //Add lb reasoning? 
+        bounded = new HashSet<>();
+        orderedReformulations = queueAll();
         while (s.size() < k && !orderedReformulations.isEmpty()) {
             //Optimization based on the assumption that the first with the highest 
             //score and same ub and actual marginal is likely to prevent
             //node expansion
             currentQuery = orderedReformulations.last();
-            maxAct = queryScores.get(currentQuery).actual;
+            maxAct = actualScores[currentQuery.getNodeId()];
             maxQuery = currentQuery;
             for (ReformulatedQuery q : orderedReformulations.getBucket(currentQuery)) {
-                scores = queryScores.get(q);
-                if (scores.actual > maxAct) {
-                    maxAct = scores.actual; 
+                id = q.getNodeId();
+                if (actualScores[id] > maxAct) {
+                    maxAct = actualScores[id]; 
                     maxQuery = q; 
                 }
-                if (scores.upper <= scores.actual) {
+                if (upperScores[id] <= actualScores[id]) {
                     currentQuery = q; 
                     maxQuery = q; 
                     break;
                 }
             }  
             currentQuery = maxQuery; 
-            scores = queryScores.get(currentQuery);
+            id = currentQuery.getNodeId();
             expand = false; 
 
-            if (scores.upper <= scores.actual && !s.contains(currentQuery)) {
+            if (upperScores[id] <= actualScores[id] && !s.contains(currentQuery)) {
                 s.add(currentQuery);
                 updateMultiplicity(multiplicity, currentQuery);
                 updateScores(multiplicity);
-                orderedReformulations = new BucketTreeSet<>();            
-
                 //Optimize to update if needed. 
-                for (ReformulatedQuery q : lattice.getIndex().values()) {
-                    orderedReformulations.add(q);
-                }
-                info("Reformulated Query %s obj marginal gain: %f, size: %d", currentQuery, scores.actual, currentQuery.resultsNumber());
+                orderedReformulations = queueAll();
+                info("Reformulated Query %s obj marginal gain: %f, size: %d", currentQuery, actualScores[id], currentQuery.resultsNumber());
             } else {
                 expand = true; 
             }
             if (expand) {
-                //info("Scores: %f, %f, %f", scores.actual, scores.upper, scores.lower);
-                if (!extended.contains(currentQuery) && currentQuery.resultsNumber() > 1) {
+                if (!extended.contains(currentQuery) && currentQuery.resultsNumber() > 1 
+                        && bounded.add(currentQuery) && tightenBound(multiplicity, orderedReformulations, currentQuery)) {
+                    //The subtree might not beat the other reformulations anymore
+                    enqueue(orderedReformulations, currentQuery);
+                } else if (!extended.contains(currentQuery) && currentQuery.resultsNumber() > 1) {
                     extend(lattice, currentQuery);
+                    enforceLimits();
                     father = currentQuery;
                     while (father != null && father != lattice.getRoot()) {
                         orderedReformulations.remove(father);
                         father = father.getFather();
                     }
                     extended.add(currentQuery);
+                    checkClosed(currentQuery);
                     updateScores(multiplicity, currentQuery);
                     //orderedReformulations.add(currentQuery);
                     currentQuery.clear();
                     for (ReformulatedQuery q : currentQuery.getReformulations()) {
-                        orderedReformulations.add(q);
+                        enqueue(orderedReformulations, q);
                     }
                     father = currentQuery;
                     while (father != null && father != lattice.getRoot()) {
-                        orderedReformulations.add(father);
+                        enqueue(orderedReformulations, father);
                         father = father.getFather();
                     }
 //                    System.out.println(printLattice());
@@ -164,78 +220,329 @@ public class GQRPruning extends GQRExact {
                 //considered.add(currentQuery);
             }
         }
+        PRUNING_TIMER.stop(start);
         algorithmTime = watch.getElapsedTimeMillis();
         info("Total number of reformulations generated: %d", lattice.size());
-        int results = 0; 
-        for (Integer mult : multiplicity.values()) {
-            if (mult > 0) {
-                results++;
-            }
-        }
-        coverage = results/(double)lattice.getRoot().resultsNumber();
-        diversity = diversitySum(s);
+        info("Estimated lattice memory: %d bytes (%d embeddings)", lattice.getEstimatedBytes(), lattice.getEmbeddings());
+        coverage = multiplicity.getCovered()/(double)lattice.getRoot().resultsNumber();
+        diversity = multiplicity.diversity();
+        objective = multiplicity.getCovered() + lambda * diversity;
         info("Coverage of the result set: %.2f%%", coverage*100);
         info("Diversity of the result set: %d", diversity);
+        info("Objective value of the result set: %.2f", objective);
         info("Number of call to extend: %d", callToExtend);
+        if (closed) {
+            info("Non-closed reformulations collapsed: %d", collapsed);
+        }
         info("Time to compute the reformulations using greedy algorithm: %dms", algorithmTime);
         info("Size of the final result set: %d", s.size());
     }
     
+    /*
+     * Queue all the reformulations of the lattice for the selection
+     */
+    private BucketTreeSet<ReformulatedQuery> queueAll() {
+        BucketTreeSet<ReformulatedQuery> orderedReformulations = new BucketTreeSet<>();
+        bounded.clear();
+        for (ReformulatedQuery q : lattice.getIndex().values()) {
+            enqueue(orderedReformulations, q);
+        }
+        return orderedReformulations;
+    }
+    
+    /*
+     * Queue a reformulation for the selection
+     */
+    protected void enqueue(BucketTreeSet<ReformulatedQuery> orderedReformulations, ReformulatedQuery q) {
+        if (!nonClosed.contains(q)) {
+            orderedReformulations.add(q);
+        }
+    }
+    
+    /*
+     * In closed mode, exclude an extended reformulation from the selection 
+     * if a child has the same results
+     */
+    protected void checkClosed(ReformulatedQuery q) {
+        if (closed && !q.isClosed()) {
+            //The child with the same results replaces it
+            nonClosed.add(q);
+            collapsed++;
+            COLLAPSED.inc();
+        }
+    }
+    
+    /*
+     * Label of the embedded node, of the new edge and of the node reached: 
+     * all the results of a reformulation generated by extend contain the 
+     * signature of the edge it adds
+     */
+    private static final class EdgeSignature {
+        private final int nodeLabel, edgeLabel, adjLabel;
+
+        EdgeSignature(int nodeLabel, int edgeLabel, int adjLabel) {
+            this.nodeLabel = nodeLabel;
+            this.edgeLabel = edgeLabel;
+            this.adjLabel = adjLabel;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * nodeLabel + edgeLabel) + adjLabel;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof EdgeSignature)) {
+                return false;
+            }
+            EdgeSignature other = (EdgeSignature) obj;
+            return nodeLabel == other.nodeLabel && edgeLabel == other.edgeLabel && adjLabel == other.adjLabel;
+        }
+    }
+    
+    /**
+     * Tighten the upper bound of a reformulation not extended yet without 
+     * generating its reformulations: the results of each reformulation (and 
+     * of its subtree) are a subset of the graphs where the signature of its 
+     * new edge is found in an embedding, the upper bound of a set of results 
+     * bounds the one of its subsets. 
+     * @param multiplicity The multiplicity of each result
+     * @param orderedReformulations The queue of the reformulations
+     * @param qPrime The reformulation, with its embeddings
+     * @return true if the upper bound of qPrime has decreased (qPrime has been
+     * removed from the queue to change its score)
+     */
+    private boolean tightenBound(ResultMultiplicity multiplicity, BucketTreeSet<ReformulatedQuery> orderedReformulations, ReformulatedQuery qPrime) {
+        Map<EdgeSignature, IntHashSet> signatures = new HashMap<>();
+        IntHashSet[] candidates, mappedEdges;
+        IntHashSet results;
+        EdgeSignature signature;
+        Graph graph;
+        double bound = 0;
+        int gId, i, j, candidate, degree, edge;
+        int id = qPrime.getNodeId();
+        
+        for (IntIterator it = qPrime.getResults().intIterator(); it.hasNext();) {
+            gId = it.nextInt();
+            graph = gdb[gId];
+            candidates = qPrime.getCandidates(gId);
+            mappedEdges = qPrime.getMappedEdges(gId);
+            for (i = 0; i < qPrime.numberOfDuplicates(gId); i++) {
+                for (IntIterator cit = candidates[i].intIterator(); cit.hasNext();) {
+                    candidate = cit.nextInt();
+                    degree = graph.getDegree(candidate);
+                    for (j = 0; j < degree; j++) {
+                        edge = graph.getNodeEdge(candidate, j);
+                        if (!mappedEdges[i].contains(edge)) {
+                            signature = new EdgeSignature(graph.getNodeLabel(candidate), graph.getEdgeLabel(edge), graph.getNodeLabel(graph.getOtherNode(edge, candidate)));
+                            results = signatures.get(signature);
+                            if (results == null) {
+                                results = new IntHashSet();
+                                signatures.put(signature, results);
+                            }
+                            results.add(gId);
+                        }
+                    }
+                }
+            }
+        }
+        for (IntHashSet res : signatures.values()) {
+            bound = Math.max(bound, upperBound(multiplicity, res));
+        }
+        if (bound < upperScores[id]) {
+            SIGNATURE_BOUNDS.inc();
+            orderedReformulations.remove(qPrime);
+            upperScores[id] = bound;
+            setScore(qPrime);
+            return true;
+        }
+        return false;
+    }
+    
+    /*
+     * Marginal gain of the results that increase the objective, i.e. with 
+     * multiplicity below |S|/2: it bounds the gain of any subset of results
+     */
+    private double upperBound(ResultMultiplicity multiplicity, IntHashSet results) {
+        float halfSSize = s.size()/2.0f;
+        int ubSize = 0, ubUnionSize = 0, ubMultiplicity = 0, mult;
+        for (IntIterator it = results.intIterator(); it.hasNext();) {
+            mult = multiplicity.get(it.nextInt());
+            if (mult < halfSSize) {
+                ubSize++;
+                if (mult > 0)
+                    ubUnionSize++;
+                ubMultiplicity += mult;
+            }
+        }
+        return (ubSize - ubUnionSize)/2.0 + lambda * (multiplicity.getSum() + s.size() * ubSize - 2 * ubMultiplicity);
+    }
     
     /**
      * 
      * @param multiplicity
      * @param currentQuery 
      */
-    protected void updateMultiplicity(Map<Integer, Integer> multiplicity, ReformulatedQuery currentQuery) {
-        Set<Integer> results = currentQuery.getResults(); 
-        for (Integer res : results) {
-            assert multiplicity.containsKey(res);
-            multiplicity.put(res, multiplicity.get(res) + 1);
-            sumMultiplicity++;
+    protected void updateMultiplicity(ResultMultiplicity multiplicity, ReformulatedQuery currentQuery) {
+        int res;
+        multiplicity.add(currentQuery);
+        resetResultScores();
+        if (scoring == Scoring.CLASSES) {
+            resultClasses.add(classesOf(currentQuery));
+        } else if (scoring == Scoring.BITMAP) {
+            for (IntIterator it = currentQuery.getResults().intIterator(); it.hasNext();) {
+                res = it.nextInt();
+                moveToBitmap(res, multiplicity.get(res), multiplicity.getUniverse());
+            }
         }
     }
     
+    private void moveToBitmap(int res, int mult, int universe) {
+        if (multiplicityBitmaps == null) {
+            multiplicityBitmaps = new long[k + 1][];
+        } else if (mult >= multiplicityBitmaps.length) {
+            multiplicityBitmaps = Arrays.copyOf(multiplicityBitmaps, mult + 1);
+        }
+        if (mult > 1) {
+            Bitmaps.clear(multiplicityBitmaps[mult - 1], res);
+        }
+        if (multiplicityBitmaps[mult] == null) {
+            multiplicityBitmaps[mult] = Bitmaps.create(universe);
+        }
+        Bitmaps.set(multiplicityBitmaps[mult], res);
+    }
+    
+    /*
+     * Split the result classes by the result sets interned since the last 
+     * call
+     */
+    private void refineClasses() {
+        if (resultClasses != null) {
+            for (; refinedSets < lattice.getResultSets(); refinedSets++) {
+                resultClasses.refine(lattice.getResultSet(refinedSets));
+            }
+        }
+    }
+    
+    private int[] classesOf(ReformulatedQuery q) {
+        refineClasses();
+        if (q.getResultSet() >= 0) {
+            return resultClasses.classesOf(q.getResultSet(), q.getResults());
+        }
+        resultClasses.refine(q.getResults());
+        return resultClasses.classesOf(q.getResults());
+    }
+    
+    /**
+     * Forget the scores of the result sets, they are valid only for the 
+     * current multiplicities
+     */
+    protected void resetResultScores() {
+        resultSetStamp++;
+    }
+    
+    protected void initScores() {
+        int size = Math.max(lattice.getNodeIds(), 16);
+        lowerScores = new double[size];
+        upperScores = new double[size];
+        actualScores = new double[size];
+        multiplicityBitmaps = null;
+        nonClosed = new HashSet<>();
+        resultClasses = scoring == Scoring.CLASSES? new ResultClasses(lattice.getRoot()) : null;
+        refinedSets = 0;
+        size = Math.max(lattice.getResultSets(), 16);
+        resultSetScores = new double[3 * size];
+        resultSetStamps = new int[size];
+        resultSetStamp = 1;
+    }
+    
+    /*
+     * Grow the score arrays to cover the node ids assigned by the last 
+     * extension
+     */
+    private void ensureScores() {
+        int ids = lattice.getNodeIds(), size = actualScores.length;
+        if (ids > size) {
+            while (size < ids) {
+                size <<= 1;
+            }
+            lowerScores = Arrays.copyOf(lowerScores, size);
+            upperScores = Arrays.copyOf(upperScores, size);
+            actualScores = Arrays.copyOf(actualScores, size);
+        }
+    }
+    
+    /*
+     * Grow the result set scores to cover the given result set id
+     */
+    private void ensureResultSets(int set) {
+        int size = resultSetStamps.length;
+        if (set >= size) {
+            while (size <= set) {
+                size <<= 1;
+            }
+            resultSetScores = Arrays.copyOf(resultSetScores, 3 * size);
+            resultSetStamps = Arrays.copyOf(resultSetStamps, size);
+        }
+    }
+    
+    private void setScore(ReformulatedQuery q) {
+        int id = q.getNodeId(); 
+        q.setScore(upperScores[id] > actualScores[id]? upperScores[id] : actualScores[id]);
+    }
+    
     /**
      * Update upper, lower and actual score for the whole lattice/tree. 
      * The multiplicity have been updated because we have added and extra query
      * to the result set <i>s</i> so the scores change accordingly
      * @param multiplicity The multiplicity of each result
      */
-    protected void updateScores(Map<Integer, Integer> multiplicity) {
+    protected void updateScores(ResultMultiplicity multiplicity) {
+        SCORE_UPDATES.inc();
+        ensureScores();
+        Span span = Tracing.begin(TraceEvent.SCORE_UPDATE);
         //IT's another story ... maybe.
         //We can optimize taking into account only the queries that are affected
-        drillDown(multiplicity, lattice.getRoot());
+        int scored = drillDown(multiplicity, lattice.getRoot());
+        span.end(scored, lattice.size(), s.size());
     }
     
     
-    private Score drillDown(Map<Integer, Integer> multiplicity, ReformulatedQuery qPrime) {
-        Score s;
+    /*
+     * Update the scores of the subtree of qPrime, returns the number of 
+     * reformulations scored
+     */
+    private int drillDown(ResultMultiplicity multiplicity, ReformulatedQuery qPrime) {
+        int id, scored = 0;
         double lbmin = Double.MAX_VALUE, ubmax = 0; 
         for (ReformulatedQuery q : qPrime.getReformulations()) {
             if (q.isLeaf()) {
-                s = scores(multiplicity, q);
-                q.setScore(s.upper > s.actual? s.upper : s.actual);
-                queryScores.put(q, s);
+                scores(multiplicity, q);
+                setScore(q);
+                scored++;
             } else {
-                s = drillDown(multiplicity, q);
+                scored += drillDown(multiplicity, q);
             }
-            if (lbmin > s.lower) {
-                lbmin = s.lower;
+            id = q.getNodeId();
+            if (lbmin > lowerScores[id]) {
+                lbmin = lowerScores[id];
             } 
-            if (ubmax < s.upper) {
-                ubmax = s.upper;
+            if (ubmax < upperScores[id]) {
+                ubmax = upperScores[id];
             }
         }
-        s = scores(multiplicity, qPrime);
-        //s.upper = ubmax > s.actual ? ubmax : s.actual;
-        s.upper = ubmax; 
-        s.lower = lbmin;
+        if (!nonClosed.contains(qPrime)) { //Never selected, no actual score
+            scores(multiplicity, qPrime);
+            scored++;
+        }
+        id = qPrime.getNodeId();
+        upperScores[id] = ubmax; 
+        lowerScores[id] = lbmin;
         if (qPrime != lattice.getRoot()) {
-            queryScores.put(qPrime, s);
-            qPrime.setScore(s.upper > s.actual? s.upper : s.actual);
+            setScore(qPrime);
         }
-        return s; 
+        return scored;
     }
     
     /**
@@ -244,44 +551,44 @@ public class GQRPruning extends GQRExact {
      * @param multiplicity The multiplicity of each result
      * @param currentQuery The query that have just been extended. 
      */
-    protected void updateScores(Map<Integer, Integer> multiplicity, ReformulatedQuery currentQuery) {
+    protected void updateScores(ResultMultiplicity multiplicity, ReformulatedQuery currentQuery) {
         Collection<ReformulatedQuery> reformulations = currentQuery.getReformulations();
         ReformulatedQuery father;
         double maxub = 0, minlb;
-        Score fatherScores, scores;
-        minlb = queryScores.get(currentQuery).upper; 
-        
+        int id = currentQuery.getNodeId(), fatherId;
+        SCORE_UPDATES.inc();
+        Span span = Tracing.begin(TraceEvent.SCORE_UPDATE);
+        ensureScores();
+        minlb = upperScores[id]; 
         
         for (ReformulatedQuery q : reformulations) {
-            scores = scores(multiplicity, q);
-            queryScores.put(q, scores);
-            if (scores.lower < minlb) {
-                minlb = scores.lower;
+            scores(multiplicity, q);
+            if (lowerScores[q.getNodeId()] < minlb) {
+                minlb = lowerScores[q.getNodeId()];
             }
-            if (scores.upper > maxub) {
-                maxub = scores.upper;
+            if (upperScores[q.getNodeId()] > maxub) {
+                maxub = upperScores[q.getNodeId()];
             }
-            q.setScore(scores.upper > scores.actual? scores.upper : scores.actual);
+            setScore(q);
         }
-        scores = queryScores.get(currentQuery);
-        //scores.upper = maxub > scores.actual? maxub : scores.actual; 
-        scores.upper = maxub; 
-        scores.lower = minlb; //TO CHECK
-        currentQuery.setScore(scores.upper > scores.actual? scores.upper : scores.actual);
+        upperScores[id] = maxub; 
+        lowerScores[id] = minlb; //TO CHECK
+        setScore(currentQuery);
         //roll-up (propagate up lower and upper bounds)
         father = currentQuery.getFather();
         while (father != null && father != lattice.getRoot()) {
-            fatherScores = queryScores.get(father);
-            if (father.getReformulations().size() == 1 || fatherScores.upper < scores.upper) {
-                fatherScores.upper = scores.upper;
+            fatherId = father.getNodeId();
+            if (father.getReformulations().size() == 1 || upperScores[fatherId] < upperScores[id]) {
+                upperScores[fatherId] = upperScores[id];
             } 
-            if (father.getReformulations().size() == 1 || fatherScores.lower > scores.lower) {
-                fatherScores.lower = scores.lower;
+            if (father.getReformulations().size() == 1 || lowerScores[fatherId] > lowerScores[id]) {
+                lowerScores[fatherId] = lowerScores[id];
             }
-            scores = fatherScores;
-            father.setScore(scores.upper > scores.actual? scores.upper : scores.actual);
+            id = fatherId;
+            setScore(father);
             father = father.getFather();
         }
+        span.end(reformulations.size(), lattice.size(), s.size());
     }
     
     
@@ -289,44 +596,112 @@ public class GQRPruning extends GQRExact {
      * The upper bound is the value of the marginals if we take the elements that
      * inrease the objective function
     */
-    private Score scores(Map<Integer, Integer> multiplicity, ReformulatedQuery qPrime) {
+    private void scores(ResultMultiplicity multiplicity, ReformulatedQuery qPrime) {
         int lbUnionSize = 0, ubUnionSize = 0, unionSize = 0;
         int ubSize = 0, lbSize = 0; 
         int lbMultiplicity = 0, ubMultiplicity = 0, actualMultiplicity = 0;
         int mult;
         float halfSSize = s.size()/2.0f;
         int rqPrime = qPrime.resultsNumber();
+        int count, weight;
+        long[] bits;
         double ub, lb, ac; 
-        
-        for (Integer res : qPrime.getResults()) {
-            mult = multiplicity.get(res);
-            if (mult < halfSSize) {
-                ubSize++;
-                if (mult > 0)
-                    ubUnionSize++;
-                ubMultiplicity += mult;
-            } else if (mult > halfSSize) {
-                lbSize++;
-                if (mult > 0)
-                    lbUnionSize++;
-                lbMultiplicity += mult;
+        int set = qPrime.getResultSet();
+        if (set >= 0 && set < resultSetStamps.length && resultSetStamps[set] == resultSetStamp) {
+            //Same results of a reformulation already scored
+            lowerScores[qPrime.getNodeId()] = resultSetScores[3 * set];
+            upperScores[qPrime.getNodeId()] = resultSetScores[3 * set + 1];
+            actualScores[qPrime.getNodeId()] = resultSetScores[3 * set + 2];
+            return;
+        }
+        SCORES_COMPUTED.inc();
+        if (scoring == Scoring.BITMAP) {
+            //Results with multiplicity 0 are the ones in no bitmap
+            count = rqPrime;
+            if (multiplicityBitmaps != null) {
+                bits = qPrime.getResultBitmap();
+                for (mult = 1; mult < multiplicityBitmaps.length; mult++) {
+                    if (multiplicityBitmaps[mult] == null) {
+                        continue;
+                    }
+                    count = Bitmaps.andCardinality(bits, multiplicityBitmaps[mult]);
+                    if (mult < halfSSize) {
+                        ubSize += count;
+                        ubUnionSize += count;
+                        ubMultiplicity += mult * count;
+                    } else if (mult > halfSSize) {
+                        lbSize += count;
+                        lbUnionSize += count;
+                        lbMultiplicity += mult * count;
+                    }
+                    unionSize += count;
+                    actualMultiplicity += mult * count;
+                }
+                count = rqPrime - unionSize;
             }
-            if (mult > 0) {
-                unionSize++;
+            if (0 < halfSSize) {
+                ubSize += count;
+            }
+        } else if (scoring == Scoring.CLASSES) {
+            for (int c : classesOf(qPrime)) {
+                mult = resultClasses.multiplicity(c);
+                weight = resultClasses.weight(c);
+                if (mult < halfSSize) {
+                    ubSize += weight;
+                    if (mult > 0)
+                        ubUnionSize += weight;
+                    ubMultiplicity += mult * weight;
+                } else if (mult > halfSSize) {
+                    lbSize += weight;
+                    if (mult > 0)
+                        lbUnionSize += weight;
+                    lbMultiplicity += mult * weight;
+                }
+                if (mult > 0) {
+                    unionSize += weight;
+                }
+                actualMultiplicity += mult * weight;
+            }
+        } else {
+            for (IntIterator it = qPrime.getResults().intIterator(); it.hasNext();) {
+                mult = multiplicity.get(it.nextInt());
+                if (mult < halfSSize) {
+                    ubSize++;
+                    if (mult > 0)
+                        ubUnionSize++;
+                    ubMultiplicity += mult;
+                } else if (mult > halfSSize) {
+                    lbSize++;
+                    if (mult > 0)
+                        lbUnionSize++;
+                    lbMultiplicity += mult;
+                }
+                if (mult > 0) {
+                    unionSize++;
+                }
+                actualMultiplicity += mult;
             }
-            actualMultiplicity += mult;
         }
-        ac = (rqPrime - unionSize)/2.0 + lambda * (sumMultiplicity + s.size() * rqPrime - 2 * actualMultiplicity);
-        ub = ubUnionSize == 0? ac : (ubSize - ubUnionSize)/2.0 + lambda * (sumMultiplicity + s.size() * ubSize - 2 * ubMultiplicity);
-        lb = lbUnionSize == 0? ac : (lbSize - lbUnionSize)/2.0 + lambda * (sumMultiplicity + s.size() * lbSize - 2 * lbMultiplicity);
+        ac = (rqPrime - unionSize)/2.0 + lambda * (multiplicity.getSum() + s.size() * rqPrime - 2 * actualMultiplicity);
+        ub = ubUnionSize == 0? ac : (ubSize - ubUnionSize)/2.0 + lambda * (multiplicity.getSum() + s.size() * ubSize - 2 * ubMultiplicity);
+        lb = lbUnionSize == 0? ac : (lbSize - lbUnionSize)/2.0 + lambda * (multiplicity.getSum() + s.size() * lbSize - 2 * lbMultiplicity);
         
-        return new Score(
-                lb,//LB 
-                ub,//UB
-                ac//OBJ FUNCT
-        ); 
+        lowerScores[qPrime.getNodeId()] = lb;
+        upperScores[qPrime.getNodeId()] = ub;
+        actualScores[qPrime.getNodeId()] = ac;
+        if (set >= 0) {
+            ensureResultSets(set);
+            resultSetStamps[set] = resultSetStamp;
+            resultSetScores[3 * set] = lb;
+            resultSetScores[3 * set + 1] = ub;
+            resultSetScores[3 * set + 2] = ac;
+        }
     }    
     
+    public void setScoring(Scoring scoring) {
+        this.scoring = scoring;
+    }
+    
     protected void extend(ReformulationLattice lattice, ReformulatedQuery currentQuery) {
         if (currentQuery.resultsNumber() > 1) {
             super.extend(lattice, currentQuery, null);
@@ -373,7 +748,7 @@ public class GQRPruning extends GQRExact {
                 edgeCount++;
                 sb.append(String.format("Level[%d]\n", level));
             }
-            sb.append(currentQuery.isLeaf() ? "" : "*").append(s.contains(currentQuery)?"S":"").append(queryScores.get(currentQuery)).append(":" + currentQuery.resultsNumber() + ":").append(currentQuery.toString()).append("\n");
+            sb.append(currentQuery.isLeaf() ? "" : "*").append(s.contains(currentQuery)?"S":"").append(String.format("(%s,%s,%s)", lowerScores[currentQuery.getNodeId()], upperScores[currentQuery.getNodeId()], actualScores[currentQuery.getNodeId()])).append(":" + currentQuery.resultsNumber() + ":").append(currentQuery.toString()).append("\n");
             for (ReformulatedQuery q : currentQuery.getReformulations()) {
                 if (!visited.contains(q)) {
                     queue.add(q);
@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.algorithms;
+
+import eu.unitn.disi.db.command.algorithmic.AlgorithmInput;
+import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
+import eu.unitn.disi.db.command.util.StopWatch;
+import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import eu.unitn.disi.db.gref.monitoring.Metrics;
+import eu.unitn.disi.db.gref.monitoring.Timer;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+/**
+ * Stochastic greedy on the exact lattice: instead of evaluating the marginal 
+ * gains of all the n reformulations, each step evaluates a random sample of 
+ * <code>(n/k) log(1/epsilon)</code> of them and takes the best. The expected 
+ * objective is at least <code>(1 - 1/e - epsilon)</code> of the optimum, the 
+ * marginal gains computed are O(n log(1/epsilon)) instead of O(nk). 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class GQRStochastic extends GQRExact {
+
+    @AlgorithmInput(
+            description = "Approximation of the sampling, each step evaluates (n/k)log(1/epsilon) reformulations",
+            mandatory = false,
+            defaultValue = "0.1"
+    )
+    protected float epsilon = 0.1f;
+
+    @AlgorithmInput(
+            description = "Seed of the sampling",
+            mandatory = false,
+            defaultValue = "0"
+    )
+    protected long seed;
+
+    private static final Timer STOCHASTIC_TIMER = Metrics.timer("gqref_stochastic_selection_seconds", "Time of the stochastic greedy selection");
+
+    @Override
+    public void compute() throws AlgorithmExecutionException {
+        StopWatch watch = new StopWatch();
+        ReformulatedQuery currentQuery;
+        ReformulatedQuery[] nodes;
+        Random random;
+        double score, bestScore;
+        int remaining, sampleSize, sample, best, i, j;
+
+        if (epsilon <= 0 || epsilon >= 1) {
+            throw new AlgorithmExecutionException("Epsilon %f must be in (0,1)", epsilon);
+        }
+        buildLattice();
+
+        watch.start();
+        long start = STOCHASTIC_TIMER.start();
+        s = new LinkedHashSet<>();
+        MarginalGains gains = new MarginalGains(lattice);
+        random = new Random(seed);
+        //The reformulations not selected yet are nodes[0, remaining)
+        nodes = lattice.getIndex().values().toArray(new ReformulatedQuery[lattice.size()]);
+        remaining = nodes.length;
+        sampleSize = (int) Math.max(1, Math.ceil((double) nodes.length / k * Math.log(1 / epsilon)));
+        info("Sampling %d reformulations per step out of %d", Math.min(sampleSize, remaining), remaining);
+        while (s.size() < k && remaining > 0) {
+            //Partial Fisher-Yates: the sample is moved in nodes[0, sample)
+            sample = Math.min(sampleSize, remaining);
+            best = 0;
+            bestScore = Double.NEGATIVE_INFINITY;
+            for (i = 0; i < sample; i++) {
+                j = i + random.nextInt(remaining - i);
+                currentQuery = nodes[j];
+                nodes[j] = nodes[i];
+                nodes[i] = currentQuery;
+                score = gains.coverageDiff(currentQuery) / 2.0 + lambda * gains.diversityDiff(currentQuery);
+                currentQuery.setScore(score);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            currentQuery = nodes[best];
+            info("Reformulated Query %s obj marginal gain: %f, size: %d", currentQuery, bestScore, currentQuery.resultsNumber());
+            s.add(currentQuery);
+            gains.select(currentQuery);
+            remaining--;
+            nodes[best] = nodes[remaining];
+            nodes[remaining] = currentQuery;
+        }
+        algorithmTime += watch.getElapsedTimeMillis();
+        STOCHASTIC_TIMER.stop(start);
+        info("Time to compute the reformulations using stochastic greedy: %dms", watch.getElapsedTimeMillis());
+        coverage = gains.getMultiplicity().getCovered()/(double)lattice.getRoot().resultsNumber();
+        diversity = gains.getMultiplicity().diversity();
+        objective = gains.getMultiplicity().getCovered() + lambda * diversity;
+        info("Coverage of the result set: %.2f%%", coverage * 100);
+        info("Diversity of the result set: %d", diversity);
+        info("Objective value of the result set: %.2f", objective);
+        info("Number of call to extend: %d", callToExtend);
+        info("Size of the final result set: %d", s.size());
+    }
+
+    public void setEpsilon(float epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
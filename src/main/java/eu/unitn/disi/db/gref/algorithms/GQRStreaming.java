@@ -0,0 +1,240 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.algorithms;
+
+import eu.unitn.disi.db.command.algorithmic.AlgorithmInput;
+import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
+import eu.unitn.disi.db.command.util.StopWatch;
+import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
+import eu.unitn.disi.db.gref.monitoring.Metrics;
+import eu.unitn.disi.db.gref.monitoring.Timer;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Sieve-streaming selection of the reformulations while the lattice is built:
+ * each reformulation is offered to a set of sieves once it is taken from 
+ * the queue and extended (its results are final, they come from its father
+ * only). In closed mode the reformulations having a child with the same 
+ * results are not offered. 
+ * Sieve i guesses the optimum <code>v = (1 + epsilon)^i</code> and adds a 
+ * reformulation q to its set S if |S| &lt; k and
+ * <code>
+ * f(S + q) - f(S) &gt;= (v/2 - f(S)) / (k - |S|)
+ * </code>
+ * The guesses range between the largest value m of a single reformulation and
+ * an upper bound of the optimum, the sieves below m are dropped. The set of 
+ * the sieve with the largest value is the answer: if the objective is 
+ * monotone submodular its value is at least (1/2 - epsilon) of the optimum.
+ * 
+ * A reformulation adds one edge to its father, hence the reformulations 
+ * generated while extending a level are looked up only among the next level.
+ * Once taken from the queue a reformulation leaves the index of the lattice 
+ * and, once extended, it drops its links (father included), embeddings and 
+ * (if no sieve takes it) results: the memory is the frontier of the lattice,
+ * the fathers of the queued reformulations and the sieves, and the lattice 
+ * limits apply to the frontier. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class GQRStreaming extends GQRExact {
+
+    @AlgorithmInput(
+            description = "Approximation of the sieves, the guesses of the optimum are powers of (1 + epsilon)",
+            mandatory = false,
+            defaultValue = "0.1"
+    )
+    protected float epsilon = 0.1f;
+
+    private static final Timer STREAMING_TIMER = Metrics.timer("gqref_streaming_selection_seconds", "Time of the streaming selection, lattice generation included");
+
+    private TreeMap<Integer, Sieve> sieves;
+    private double maxSingleton;
+    private long peakBytes;
+
+    /*
+     * A candidate solution for a guess of the optimum
+     */
+    private static class Sieve {
+        final double threshold; 
+        final Set<ReformulatedQuery> s; 
+        final ResultMultiplicity multiplicity; 
+        double value; 
+
+        Sieve(double threshold, ResultMultiplicity multiplicity) {
+            this.threshold = threshold;
+            this.multiplicity = multiplicity;
+            s = new LinkedHashSet<>();
+        }
+    }
+
+    @Override
+    public void compute() throws AlgorithmExecutionException {
+        StopWatch watch = new StopWatch();
+        LinkedList<ReformulatedQuery> queue;
+        ReformulatedQuery root = lattice.getRoot(), currentQuery;
+        Sieve best = null;
+        boolean kept;
+
+        if (epsilon <= 0) {
+            throw new AlgorithmExecutionException("Epsilon %f must be positive", epsilon);
+        }
+        callToExtend = 0;
+        queryCount = 0; 
+        collapsed = 0;
+        sieves = new TreeMap<>();
+        maxSingleton = 0;
+        peakBytes = lattice.getEstimatedBytes();
+        queue = new LinkedList<>();
+        queue.add(root);
+        watch.start();
+        long start = STREAMING_TIMER.start();
+
+        info("Starting lattice generation and streaming selection");
+        while (!queue.isEmpty()) {
+            currentQuery = queue.poll();
+            lattice.removeReformulation(currentQuery);
+            if (currentQuery.resultsNumber() > 1) {
+                extend(lattice, currentQuery, queue);
+                enforceLimits();
+            }
+            //Extended first, so that the non-closed ones are not offered
+            if (currentQuery == root) {
+                kept = true; 
+            } else if (closed && collapse(currentQuery)) {
+                kept = false;
+            } else {
+                kept = offer(currentQuery);
+            }
+            peakBytes = Math.max(peakBytes, lattice.getEstimatedBytes());
+            currentQuery.clear();
+            currentQuery.getReformulations().clear();
+            //Otherwise the chain of fathers keeps the whole lattice alive
+            currentQuery.clearFather();
+            if (!kept) {
+                currentQuery.clearResults();
+            }
+        }
+        for (Sieve sieve : sieves.values()) {
+            if (best == null || sieve.value > best.value) {
+                best = sieve; 
+            }
+        }
+        s = best != null? best.s : new LinkedHashSet<ReformulatedQuery>();
+        algorithmTime = watch.getElapsedTimeMillis();
+        STREAMING_TIMER.stop(start);
+        info("Time to build the lattice and select the reformulations: %dms", watch.getElapsedTimeMillis());
+        info("Total number of reformulations: %d, sieves: %d", queryCount, sieves.size());
+        if (closed) {
+            info("Non-closed reformulations collapsed: %d", collapsed);
+        }
+        info("Estimated peak lattice memory: %d bytes", peakBytes);
+        if (best != null) {
+            coverage = best.multiplicity.getCovered()/(double)root.resultsNumber();
+            diversity = best.multiplicity.diversity();
+            objective = best.multiplicity.getCovered() + lambda * diversity;
+        } else {
+            coverage = 0;
+            diversity = 0;
+            objective = 0;
+        }
+        info("Coverage of the result set: %.2f%%", coverage * 100);
+        info("Diversity of the result set: %d", diversity);
+        info("Objective value of the result set: %.2f", objective);
+        info("Number of call to extend: %d", callToExtend);
+        info("Size of the final result set: %d", s.size());
+    }
+
+    /**
+     * The results are not interned: the lattice would keep every distinct
+     * result set, also the ones of the reformulations dropped by the sieves
+     */
+    @Override
+    protected void internResults(ReformulationLattice lattice, ReformulatedQuery currentQuery) {
+    }
+
+    /**
+     * Offer a reformulation to the sieves
+     * @param q the reformulation, with all its results
+     * @return true if at least a sieve takes the reformulation
+     */
+    private boolean offer(ReformulatedQuery q) {
+        double singleton = q.resultsNumber() / 2.0, gain, logBase;
+        boolean kept = false;
+        int i, lo, hi;
+        if (singleton > maxSingleton) {
+            //The optimum is in [m, k m (1 + 2 lambda (k - 1))], each selected
+            //reformulation covers at most 2m results and differs from the
+            //others for at most 4m results
+            maxSingleton = singleton;
+            logBase = Math.log(1 + epsilon);
+            lo = (int) Math.ceil(Math.log(maxSingleton) / logBase);
+            hi = (int) Math.floor(Math.log(k * maxSingleton * (1 + 2 * lambda * (k - 1))) / logBase);
+            sieves.headMap(lo).clear();
+            for (i = lo; i <= hi; i++) {
+                if (!sieves.containsKey(i)) {
+                    sieves.put(i, new Sieve(Math.pow(1 + epsilon, i), ResultMultiplicity.of(lattice.getRoot())));
+                }
+            }
+        }
+        for (Sieve sieve : sieves.values()) {
+            if (sieve.s.size() < k) {
+                gain = sieve.multiplicity.coverageDiff(q) / 2.0 + lambda * sieve.multiplicity.diversityDiff(q);
+                if (gain >= (sieve.threshold / 2 - sieve.value) / (k - sieve.s.size())) {
+                    sieve.s.add(q);
+                    sieve.multiplicity.add(q);
+                    sieve.value += gain;
+                    kept = true;
+                }
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return the number of reformulations generated, they are not retained 
+     * by the lattice
+     */
+    @Override
+    public int getNumberOfReformulations() {
+        return queryCount;
+    }
+
+    /**
+     * @return the estimated bytes retained by the frontier of the lattice at 
+     * its largest
+     */
+    @Override
+    public long getEstimatedBytes() {
+        return peakBytes;
+    }
+
+    public void setEpsilon(float epsilon) {
+        this.epsilon = epsilon;
+    }
+}
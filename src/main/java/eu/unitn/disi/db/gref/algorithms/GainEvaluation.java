@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.algorithms;
+
+import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join evaluation of the marginal gains of an array of reformulations 
+ * (one greedy step). The reduction keeps all the reformulations with the 
+ * maximum gain in array order, so that the caller can break ties exactly as 
+ * the sequential evaluation does. The gains and the selected set must not 
+ * change during the evaluation. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+class GainEvaluation extends RecursiveTask<GainEvaluation.Best> {
+    private static final int THRESHOLD = 512;
+    private final ReformulatedQuery[] nodes; 
+    private final int from; 
+    private final int to; 
+    private final MarginalGains gains; 
+    private final float lambda; 
+    private final Set<ReformulatedQuery> s; 
+    
+    /**
+     * Reformulations with the maximum gain among the candidates
+     */
+    static class Best {
+        double gain = Double.NEGATIVE_INFINITY; 
+        List<ReformulatedQuery> ties = new ArrayList<>(); 
+        int candidates; 
+    }
+
+    GainEvaluation(ReformulatedQuery[] nodes, int from, int to, MarginalGains gains, float lambda, Set<ReformulatedQuery> s) {
+        this.nodes = nodes;
+        this.from = from;
+        this.to = to;
+        this.gains = gains;
+        this.lambda = lambda;
+        this.s = s;
+    }
+
+    @Override
+    protected Best compute() {
+        if (to - from <= THRESHOLD) {
+            Best best = new Best();
+            ReformulatedQuery q; 
+            double gain; 
+            for (int i = from; i < to; i++) {
+                q = nodes[i];
+                if (!s.contains(q)) {
+                    gain = gains.coverageDiff(q) / 2.0 + lambda * gains.diversityDiff(q);
+                    best.candidates++;
+                    if (gain > best.gain) {
+                        best.gain = gain; 
+                        best.ties.clear();
+                    }
+                    if (gain == best.gain) {
+                        best.ties.add(q);
+                    }
+                }
+            }
+            return best;
+        }
+        int middle = (from + to) >>> 1;
+        GainEvaluation left = new GainEvaluation(nodes, from, middle, gains, lambda, s);
+        GainEvaluation right = new GainEvaluation(nodes, middle, to, gains, lambda, s);
+        left.fork();
+        Best rightBest = right.compute();
+        Best leftBest = left.join();
+        leftBest.candidates += rightBest.candidates;
+        if (rightBest.gain > leftBest.gain) {
+            rightBest.candidates = leftBest.candidates;
+            return rightBest;
+        }
+        if (rightBest.gain == leftBest.gain) {
+            leftBest.ties.addAll(rightBest.ties);
+        }
+        return leftBest;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.algorithms;
+
+import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Priority queue of the reformulations of a lattice by marginal gain for the
+ * greedy selection. The gain of q is 
+ * <code>
+ * uncovered(q)/2 + lambda * (|S| |q| + sum of m(r) - 2 shared(q))
+ * </code>
+ * and for the reformulations with the same number of results it differs only
+ * in the key <code>uncovered(q)/2 - 2 lambda shared(q)</code>, which changes 
+ * (and only decreases) when a reformulation sharing some result is selected.
+ * The reformulations are then kept in one heap per number of results with 
+ * keys that are upper bounds: a top is re-keyed through the counts of 
+ * {@link MarginalGains} and queued again until its key is exact (lazy 
+ * greedy). The best reformulation is the best among the tops of the heaps. 
+ * Ties are broken by the iteration order of the lattice. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+class GainQueue {
+    private final MarginalGains gains; 
+    private final float lambda; 
+    private final List<PriorityQueue<Entry>> heaps; 
+    /*
+     * Indexed by node id
+     */
+    private final boolean[] selected; 
+    private int remaining; 
+    
+    private static class Entry implements Comparable<Entry> {
+        final double key; 
+        final int position; 
+        final ReformulatedQuery q; 
+
+        Entry(double key, int position, ReformulatedQuery q) {
+            this.key = key;
+            this.position = position;
+            this.q = q;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            if (key != o.key) {
+                return key > o.key? -1 : 1;
+            }
+            return position < o.position? -1 : (position > o.position? 1 : 0);
+        }
+    }
+    
+    GainQueue(ReformulationLattice lattice, MarginalGains gains, float lambda) {
+        List<List<Entry>> groups = new ArrayList<>(); 
+        int size, position = 0; 
+        this.gains = gains;
+        this.lambda = lambda;
+        selected = new boolean[lattice.getNodeIds()];
+        for (ReformulatedQuery q : lattice.getIndex().values()) {
+            size = q.resultsNumber();
+            while (groups.size() <= size) {
+                groups.add(null);
+            }
+            if (groups.get(size) == null) {
+                groups.set(size, new ArrayList<Entry>());
+            }
+            groups.get(size).add(new Entry(key(q), position++, q));
+            remaining++;
+        }
+        heaps = new ArrayList<>();
+        for (List<Entry> group : groups) {
+            if (group != null) {
+                heaps.add(new PriorityQueue<>(group));
+            }
+        }
+    }
+    
+    private double key(ReformulatedQuery q) {
+        return gains.coverageDiff(q) / 2.0 - 2.0 * lambda * gains.sharedResults(q);
+    }
+    
+    /**
+     * @param q a reformulation of the lattice
+     * @return the marginal gain of the reformulation 
+     */
+    double gain(ReformulatedQuery q) {
+        return gains.coverageDiff(q) / 2.0 + lambda * gains.diversityDiff(q);
+    }
+    
+    /*
+     * Re-key the top of a heap until its key is exact, the others are upper
+     * bounds. Returns null if the heap is empty
+     */
+    private Entry top(PriorityQueue<Entry> heap) {
+        Entry top; 
+        double key; 
+        while ((top = heap.peek()) != null) {
+            if (selected[top.q.getNodeId()]) {
+                heap.poll();
+            } else {
+                key = key(top.q);
+                if (key == top.key) {
+                    return top; 
+                }
+                heap.poll();
+                heap.add(new Entry(key, top.position, top.q));
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * @return the reformulation not selected with the maximum gain (the 
+     * first in the lattice among the ties), null if all are selected
+     */
+    ReformulatedQuery best() {
+        Entry best = null, top; 
+        double bestGain = Double.NEGATIVE_INFINITY, gain; 
+        for (PriorityQueue<Entry> heap : heaps) {
+            top = top(heap);
+            if (top != null) {
+                gain = gain(top.q);
+                if (gain > bestGain || (gain == bestGain && top.position < best.position)) {
+                    best = top; 
+                    bestGain = gain; 
+                }
+            }
+        }
+        return best != null? best.q : null;
+    }
+    
+    /**
+     * Add a reformulation to S, the keys of the ones sharing some result 
+     * with it become upper bounds
+     * @param q a reformulation of the lattice not selected yet
+     */
+    void select(ReformulatedQuery q) {
+        selected[q.getNodeId()] = true; 
+        remaining--;
+        gains.select(q);
+    }
+    
+    /**
+     * @return the number of reformulations not selected
+     */
+    int remaining() {
+        return remaining;
+    }
+}
@@ -27,11 +27,27 @@ import de.parmol.graph.Graph;
 import eu.unitn.disi.db.command.algorithmic.AlgorithmInput;
 import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
 import eu.unitn.disi.db.command.util.StopWatch;
+import eu.unitn.disi.db.gref.algorithms.ged.DistanceMatrix;
 import eu.unitn.disi.db.gref.algorithms.ged.EditDistance;
+import eu.unitn.disi.db.gref.algorithms.metric.BKTree;
+import eu.unitn.disi.db.gref.algorithms.metric.EditDistanceMetric;
+import eu.unitn.disi.db.gref.algorithms.metric.MetricIndex;
+import eu.unitn.disi.db.gref.algorithms.metric.Neighbor;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simple k-means algorithm for graph databases
@@ -54,28 +70,110 @@ public class GraphClustering extends LatticeAlgorithm {
     )
     private int n;
 
+    @AlgorithmInput(
+            description = "Number of threads used to compute the pairwise distances (-1 = all the available cores)",
+            mandatory = false,
+            defaultValue = "-1"
+    )
+    private int numberOfThreads;
+
+    @AlgorithmInput(
+            description = "Compute only the distances to the prototypes instead of the full distance matrix",
+            mandatory = false,
+            defaultValue = "false"
+    )
+    private boolean prototypeOnly;
+
+    @AlgorithmInput(
+            description = "Graphs within this edit distance from a previous graph are clustered together with it (-1 = disabled)",
+            mandatory = false,
+            defaultValue = "-1"
+    )
+    private double duplicateRadius;
+    
+    private DistanceMatrix.Storage storage = DistanceMatrix.Storage.HEAP;
+    private MetricIndex duplicateIndex;
+    private File mapFile; 
+    
     private Collection<Integer>[] clusters;
     private Collection<Graph> medoids; 
+    
+    /*
+     * Rows are handed out to the threads in blocks of this size, the first 
+     * rows of the triangle are the longest so small blocks keep the threads 
+     * balanced
+     */
+    private static final int ROW_BLOCK = 16;
+    /*
+     * Columns of a single prototype row handed out to each thread 
+     */
+    private static final int COLUMN_BLOCK = 256;
 
     
     @Override
     public void compute() throws AlgorithmExecutionException {
         //DECLARATIONS
         StopWatch watch = new StopWatch();
+        Graph[] all = gdb;
+        int[] owners = null;
+        int[] medoidIds;
+        StringBuilder sb;
         
         watch.start();
-
-        if (n == -1)//i.e., parameter not set
-        {
-            //set it to a default value equal to 10% of the size of the database
-            n = (int) Math.round(((double) gdb.length) / 10);
+        if (duplicateRadius >= 0) {
+            owners = collapseDuplicates();
+        }
+        try {
+            if (n == -1)//i.e., parameter not set
+            {
+                //set it to a default value equal to 10% of the size of the database
+                n = (int) Math.round(((double) gdb.length) / 10);
+            }
+            medoidIds = prototypeOnly ? clusterOnPrototypes(watch) : clusterOnMatrix(watch);
+        } finally {
+            gdb = all;
+        }
+        if (owners != null) {
+            medoidIds = expandDuplicates(owners, medoidIds);
         }
 
+        //printing clustering
+        info("Clustering:");
+        medoids = new ArrayList<Graph>();
+        for (int i = 0; i < clusters.length; i++) {
+            sb = new StringBuilder();
+            int m = medoidIds[i];
+            sb.append(String.format("Cluster %d:\t", i));
+            sb.append(String.format("[Medoid: %d]\t", m));
+            if (m != -1) {
+                medoids.add(gdb[m]);
+            }
+            for (int x : clusters[i]) {
+                sb.append(x + "\t");
+            }
+            info(sb.toString());
+        }
+    }
+    
+    private int[] clusterOnMatrix(StopWatch watch) throws AlgorithmExecutionException {
         //compute all pairwise distances
         watch.reset();
         info("Computing pairwise distances...");
-        double[][] distances = getPairwiseDistances(gdb);
+        DistanceMatrix distances = getPairwiseDistances(gdb);
         info("Pairwise distances computed (time: %dms", watch.getElapsedTimeMillis());
+        try {
+            return cluster(distances, watch);
+        } finally {
+            try {
+                distances.close();
+            } catch (IOException ex) {
+                warn("Cannot close the distance matrix file: %s", ex.getMessage());
+            }
+        }
+    }
+    
+    private int[] cluster(DistanceMatrix distances, StopWatch watch) {
+        int[] medoidIds;
 
         //compute prototypes
         watch.reset();
@@ -83,95 +181,319 @@ public class GraphClustering extends LatticeAlgorithm {
         int[] prototypes = getPrototypes(distances);
         info("Prototypes computed (time: %dms", watch.getElapsedTimeMillis());
 
-        /*
-         //compute embeddings
-         watch.reset();
-         info("Computing embeddings...");
-         double[][] embeddings = getEmbeddings(distances,prototypes);
-         info("Embeddings computed (time: %dms", watch.getElapsedTimeMillis());
-         */
+        float[][] embeddings = getEmbeddings(distances, prototypes);
+        
         //run kmeans
         watch.reset();
         info("K-means started...");
-        //Collection<Integer>[] clusters = kmeans(embeddings);
-        clusters = kmeans(distances, prototypes);
-        StringBuilder sb = new StringBuilder();
-
+        clusters = kmeans(embeddings);
         info("K-means finished (time: %dms", watch.getElapsedTimeMillis());
 
-        //printing clustering
-        info("Clustering:");
-
-        medoids = new ArrayList<Graph>();
+        medoidIds = new int[clusters.length];
         for (int i = 0; i < clusters.length; i++) {
-            sb = new StringBuilder();
-            int m = getMedoid(clusters[i], distances);
-            sb.append(String.format("Cluster %d:\t", i));
-            sb.append(String.format("[Medoid: %d]\t", m));
-            medoids.add(gdb[m]);
-            for (int x : clusters[i]) {
-                sb.append(x + "\t");
-            }
-            info(sb.toString());
+            medoidIds[i] = getMedoid(clusters[i], distances);
         }
-
+        return medoidIds;
     }
 
+    /**
+     * Cluster the database using only the distances from the prototypes, i.e., 
+     * O(n p) edit distance computations instead of O(n^2). Prototypes are chosen 
+     * farthest-first, computing only the row of each new prototype, and the 
+     * medoid of each cluster is the graph closest to its centroid in the 
+     * prototype embedding. 
+     */
+    private int[] clusterOnPrototypes(StopWatch watch) throws AlgorithmExecutionException {
+        float[][] embeddings;
+        int[] prototypes, medoidIds;
+        
+        watch.reset();
+        info("Computing %d prototypes and their distances...", n);
+        embeddings = new float[gdb.length][n];
+        prototypes = getPrototypes(embeddings);
+        info("Prototypes computed (time: %dms", watch.getElapsedTimeMillis());
+        if (prototypes.length < n) {
+            for (int i = 0; i < embeddings.length; i++) {
+                embeddings[i] = Arrays.copyOf(embeddings[i], prototypes.length);
+            }
+        }
+        
+        watch.reset();
+        info("K-means started...");
+        clusters = kmeans(embeddings);
+        info("K-means finished (time: %dms", watch.getElapsedTimeMillis());
 
-    private double[][] getPairwiseDistances(Graph[] gdb) {
-        int tick = 0;
-        StopWatch watch = new StopWatch();
-        watch.start();
-        double[][] distances = new double[gdb.length][gdb.length];
-        for (int i = 0; i < gdb.length - 1; i++) {
-            Graph g1 = gdb[i];
-            for (int j = i + 1; j < gdb.length; j++) {
-                Graph g2 = gdb[j];
-                //dist = EditDistance.getExactEditDistance(g1, g2);
-                //info("Graph edit distance: %f", dist);
-
-                double dist = EditDistance.getApproximateEditDistance(g1, g2, EditDistance.ApproximationType.HUNGARIAN);
-                //info("Approximate Graph edit distance: %f", dist);
-
-                if (tick % 10000 == 0) {
-                    info("Approximate Graph edit distance: %f, Time: %dms", dist, watch.getElapsedTimeMillis());
-                    watch.reset();
+        medoidIds = new int[clusters.length];
+        for (int i = 0; i < clusters.length; i++) {
+            medoidIds[i] = getMedoid(clusters[i], embeddings);
+        }
+        return medoidIds;
+    }
+    
+    /**
+     * Replace the database with one graph for each group of near duplicates, 
+     * found with range queries on a BK-tree of the graphs kept so far or on 
+     * the metric index of the database, if set
+     * @return for each graph of the database the position of its 
+     * representative in the reduced database
+     */
+    private int[] collapseDuplicates() {
+        MetricIndex index = duplicateIndex;
+        BKTree tree = null;
+        int[] owners = new int[gdb.length];
+        boolean[] kept = new boolean[gdb.length];
+        List<Graph> distinct = new ArrayList<Graph>();
+        int owner;
+        
+        if (index == null) {
+            tree = new BKTree(gdb, new EditDistanceMetric());
+            index = tree;
+        }
+        for (int i = 0; i < gdb.length; i++) {
+            owner = -1;
+            //The closest graph kept before this one
+            for (Neighbor close : index.range(gdb[i], duplicateRadius)) {
+                if (kept[close.getId()]) {
+                    owner = close.getId();
+                    break;
+                }
+            }
+            if (owner == -1) {
+                owners[i] = distinct.size();
+                distinct.add(gdb[i]);
+                kept[i] = true;
+                if (tree != null) {
+                    tree.add(i);
+                }
+            } else {
+                owners[i] = owners[owner];
+            }
+        }
+        info("Collapsed %d near duplicates (radius %.2f) with %d distance computations", 
+                gdb.length - distinct.size(), duplicateRadius, index.getDistanceComputations());
+        gdb = distinct.toArray(new Graph[distinct.size()]);
+        return owners;
+    }
+    
+    /*
+     * Map the clusters of the reduced database back to the whole database
+     */
+    private int[] expandDuplicates(int[] owners, int[] medoidIds) {
+        int distinct = 0;
+        for (int owner : owners) {
+            distinct = Math.max(distinct, owner + 1);
+        }
+        int[] clusterOf = new int[distinct];
+        int[] firstOf = new int[distinct];
+        Arrays.fill(firstOf, -1);
+        for (int i = 0; i < owners.length; i++) {
+            if (firstOf[owners[i]] == -1) {
+                firstOf[owners[i]] = i;
+            }
+        }
+        for (int c = 0; c < clusters.length; c++) {
+            for (int x : clusters[c]) {
+                clusterOf[x] = c;
+            }
+            clusters[c] = new ArrayList<Integer>();
+            medoidIds[c] = medoidIds[c] == -1 ? -1 : firstOf[medoidIds[c]];
+        }
+        for (int i = 0; i < owners.length; i++) {
+            clusters[clusterOf[owners[i]]].add(i);
+        }
+        return medoidIds;
+    }
+    
+    /**
+     * Select the prototypes farthest-first computing only the distances 
+     * from the selected prototypes, which are stored in the embedding
+     * @param embeddings n x p matrix filled with the distances of each graph 
+     * from each prototype
+     * @return the selected prototypes (at most p, fewer if the remaining graphs
+     * are all at distance 0)
+     */
+    private int[] getPrototypes(float[][] embeddings) throws AlgorithmExecutionException {
+        int p, np = 0;
+        int[] prototypes = new int[embeddings.length > 0 ? embeddings[0].length : 0];
+        boolean[] selected = new boolean[gdb.length];
+        float[] mindist = new float[gdb.length];
+        float[] row = new float[gdb.length];
+        float maxd;
+        ExecutorService pool;
+        
+        if (prototypes.length == 0) {
+            return prototypes;
+        }
+        Arrays.fill(mindist, Float.POSITIVE_INFINITY);
+        //Without the full matrix the median is not known: start from the graph of median size
+        p = getMedianSizeGraph();
+        pool = Executors.newFixedThreadPool(getThreads());
+        try {
+            while (p != -1) {
+                selected[p] = true;
+                prototypes[np] = p;
+                computeRow(p, row, pool);
+                
+                maxd = 0;
+                p = -1;
+                for (int i = 0; i < row.length; i++) {
+                    embeddings[i][np] = row[i];
+                    if (row[i] < mindist[i]) {
+                        mindist[i] = row[i];
+                    }
+                    if (!selected[i] && mindist[i] > maxd) {
+                        maxd = mindist[i];
+                        p = i;
+                    }
+                }
+                np++;
+                if (np == prototypes.length) {
+                    break;
                 }
-                tick++;
-
-                distances[i][j] = dist;
-                distances[j][i] = dist;
             }
+        } finally {
+            pool.shutdownNow();
         }
+        return np == prototypes.length ? prototypes : Arrays.copyOf(prototypes, np);
+    }
+    
+    private int getMedianSizeGraph() {
+        Integer[] order = new Integer[gdb.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int s1 = gdb[o1].getNodeCount() + gdb[o1].getEdgeCount();
+                int s2 = gdb[o2].getNodeCount() + gdb[o2].getEdgeCount();
+                return s1 < s2 ? -1 : (s1 == s2 ? o1.compareTo(o2) : 1);
+            }
+        });
+        return order[order.length / 2];
+    }
+    
+    /**
+     * Compute in parallel the distances of all the graphs from the source
+     */
+    private void computeRow(final int source, final float[] row, ExecutorService pool) throws AlgorithmExecutionException {
+        List<Future<Integer>> blocks = new ArrayList<Future<Integer>>();
+        try {
+            for (int i = 0; i < gdb.length; i += COLUMN_BLOCK) {
+                final int start = i;
+                final int end = Math.min(i + COLUMN_BLOCK, gdb.length);
+                blocks.add(pool.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        for (int j = start; j < end; j++) {
+                            row[j] = j == source ? 0 : (float) EditDistance.getApproximateEditDistance(gdb[source], gdb[j], EditDistance.ApproximationType.HUNGARIAN);
+                        }
+                        return end - start;
+                    }
+                }));
+            }
+            for (Future<Integer> block : blocks) {
+                block.get();
+            }
+        } catch (InterruptedException ex) {
+            throw new AlgorithmExecutionException("Prototype distance computation interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new AlgorithmExecutionException("Error computing the distances from prototype %d", ex.getCause(), source);
+        }
+    }
+    
+    private int getThreads() {
+        return numberOfThreads > 0 ? numberOfThreads : Runtime.getRuntime().availableProcessors();
+    }
 
+    private DistanceMatrix getPairwiseDistances(final Graph[] gdb) throws AlgorithmExecutionException {
+        final AtomicInteger tick = new AtomicInteger();
+        final StopWatch watch = new StopWatch();
+        final DistanceMatrix distances;
+        List<Future<Integer>> blocks = new ArrayList<Future<Integer>>();
+        int threads = getThreads();
+        ExecutorService pool; 
+        
+        try {
+            switch (storage) {
+                case MAPPED: 
+                    if (mapFile == null) {
+                        throw new AlgorithmExecutionException("A memory-mapped distance matrix requires a file");
+                    }
+                    distances = DistanceMatrix.mapped(gdb.length, mapFile);
+                    break;
+                case OFF_HEAP:
+                    distances = DistanceMatrix.offHeap(gdb.length);
+                    break;
+                default: 
+                    distances = DistanceMatrix.onHeap(gdb.length);
+            }
+        } catch (IOException ex) {
+            throw new AlgorithmExecutionException("Cannot map the distance matrix to %s", ex, mapFile);
+        }
+        info("Computing %d distances with %d threads (%s storage)", distances.entries(), threads, distances.getStorage());
+        
+        watch.start();
+        pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < gdb.length - 1; i += ROW_BLOCK) {
+                final int start = i;
+                final int end = Math.min(i + ROW_BLOCK, gdb.length - 1);
+                blocks.add(pool.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        for (int row = start; row < end; row++) {
+                            Graph g1 = gdb[row];
+                            for (int j = row + 1; j < gdb.length; j++) {
+                                double dist = EditDistance.getApproximateEditDistance(g1, gdb[j], EditDistance.ApproximationType.HUNGARIAN);
+                                if (tick.getAndIncrement() % 10000 == 0) {
+                                    info("Approximate Graph edit distance: %f, Time: %dms", dist, watch.getElapsedTimeMillis());
+                                }
+                                distances.set(row, j, (float) dist);
+                            }
+                        }
+                        return end - start;
+                    }
+                }));
+            }
+            for (Future<Integer> block : blocks) {
+                block.get();
+            }
+        } catch (InterruptedException ex) {
+            throw new AlgorithmExecutionException("Pairwise distance computation interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new AlgorithmExecutionException("Error computing the pairwise distances", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
         return distances;
     }
 
-    private double[][] getEmbeddings(double[][] distances, int[] prototypes) {
-        double[][] embeddings = new double[distances.length][prototypes.length];
+    private float[][] getEmbeddings(DistanceMatrix distances, int[] prototypes) {
+        float[][] embeddings = new float[distances.size()][prototypes.length];
 
-        for (int i = 0; i < distances.length; i++) {
+        for (int i = 0; i < distances.size(); i++) {
             for (int j = 0; j < prototypes.length; j++) {
-                embeddings[i][j] = distances[i][prototypes[j]];
+                embeddings[i][j] = distances.get(i, prototypes[j]);
             }
         }
 
         return embeddings;
     }
 
-    private Collection<Integer>[] kmeans(double[][] distances, int[] prototypes) {
+    private Collection<Integer>[] kmeans(float[][] embeddings) {
         Collection<Integer>[] clusters = new Collection[k];
         for (int i = 0; i < clusters.length; i++) {
             clusters[i] = new ArrayList<Integer>();
         }
 
-        double[][] centroids = getInitialCentroids(distances, prototypes);
-        int[] a = computeClusterAssignments(centroids, distances, prototypes);
+        double[][] centroids = getInitialCentroids(embeddings);
+        int[] a = computeClusterAssignments(centroids, embeddings);
 
         boolean convergence = false;
         while (!convergence) {
-            double[][] new_centroids = computeCentroids(a, distances, prototypes);
-            int[] new_a = computeClusterAssignments(new_centroids, distances, prototypes);
+            double[][] new_centroids = computeCentroids(a, embeddings);
+            int[] new_a = computeClusterAssignments(new_centroids, embeddings);
 
             if (!hasChanged(a, new_a)) {
                 convergence = true;
@@ -190,16 +512,16 @@ public class GraphClustering extends LatticeAlgorithm {
         return clusters;
     }
 
-    private int[] getPrototypes(double[][] distances) {
+    private int[] getPrototypes(DistanceMatrix distances) {
         Set<Integer> prot = new HashSet<Integer>(); //prototypes
 
         //select the first prototype, i.e., the median graph
         double min_score = Double.POSITIVE_INFINITY;
         int median = -1;
-        for (int i = 0; i < distances.length; i++) {
+        for (int i = 0; i < distances.size(); i++) {
             double score_i = 0.0;
-            for (int j = 0; j < distances[i].length && score_i <= min_score; j++) {
-                score_i += distances[i][j];
+            for (int j = 0; j < distances.size() && score_i <= min_score; j++) {
+                score_i += distances.get(i, j);
             }
             if (score_i < min_score) {
                 min_score = score_i;
@@ -209,9 +531,9 @@ public class GraphClustering extends LatticeAlgorithm {
         prot.add(median);
 
         //for each graph in the database, it stores the minimum distance from the current set of prototypes
-        double[] mindist = new double[distances.length];
+        double[] mindist = new double[distances.size()];
         for (int i = 0; i < mindist.length; i++) {
-            mindist[i] = distances[i][median];
+            mindist[i] = distances.get(i, median);
         }
 
         //select the remaining n-1 prototypes based on how much they differ from the already selected ones
@@ -229,7 +551,7 @@ public class GraphClustering extends LatticeAlgorithm {
 
             //update min distances
             for (int i = 0; i < mindist.length; i++) {
-                double d = distances[i][p];
+                double d = distances.get(i, p);
                 if (d < mindist[i]) {
                     mindist[i] = d;
                 }
@@ -246,8 +568,8 @@ public class GraphClustering extends LatticeAlgorithm {
         return vprot;
     }
 
-    private double[][] getInitialCentroids(double[][] distances, int[] prototypes) {
-        int[] shuffle = new int[distances.length];
+    private double[][] getInitialCentroids(float[][] embeddings) {
+        int[] shuffle = new int[embeddings.length];
         for (int i = 0; i < shuffle.length; i++) {
             shuffle[i] = i;
         }
@@ -266,26 +588,26 @@ public class GraphClustering extends LatticeAlgorithm {
             shuffle[j] = tmp;
         }
 
-        double[][] centroids = new double[k][prototypes.length];
+        double[][] centroids = new double[k][];
         for (int i = 0; i < centroids.length; i++) {
             int a = shuffle[i];
+            centroids[i] = new double[embeddings[a].length];
             for (int j = 0; j < centroids[i].length; j++) {
-                int b = prototypes[j];
-                centroids[i][j] = distances[a][b];
+                centroids[i][j] = embeddings[a][j];
             }
         }
 
         return centroids;
     }
 
-    private int[] computeClusterAssignments(double[][] centroids, double[][] distances, int[] prototypes) {
-        int[] a = new int[distances.length]; //cluster assignments for each graph in the database
+    private int[] computeClusterAssignments(double[][] centroids, float[][] embeddings) {
+        int[] a = new int[embeddings.length]; //cluster assignments for each graph in the database
 
         for (int i = 0; i < a.length; i++) {
             double min_d = Double.POSITIVE_INFINITY;
             a[i] = -1;
             for (int j = 0; j < centroids.length; j++) {
-                double d = getSquaredEuclidianDistance(distances, prototypes, i, centroids[j]);
+                double d = getSquaredEuclidianDistance(embeddings[i], centroids[j]);
                 if (d < min_d) {
                     min_d = d;
                     a[i] = j;
@@ -296,11 +618,10 @@ public class GraphClustering extends LatticeAlgorithm {
         return a;
     }
 
-    private double getSquaredEuclidianDistance(double[][] distances, int[] prototypes, int i, double[] centroid) {
+    private double getSquaredEuclidianDistance(float[] embedding, double[] centroid) {
         double d = 0.0;
-        for (int j = 0; j < prototypes.length; j++) {
-            int pj = prototypes[j];
-            double x = distances[i][pj];
+        for (int j = 0; j < embedding.length; j++) {
+            double x = embedding[j];
             double y = centroid[j];
             d += (x - y) * (x - y);
         }
@@ -318,17 +639,16 @@ public class GraphClustering extends LatticeAlgorithm {
         return false;
     }
 
-    private double[][] computeCentroids(int[] a, double[][] distances, int[] prototypes) {
-        double[][] centroids = new double[k][prototypes.length];
+    private double[][] computeCentroids(int[] a, float[][] embeddings) {
+        double[][] centroids = new double[k][embeddings.length > 0 ? embeddings[0].length : 0];
         int[] cluster_size = new int[k];
 
         for (int i = 0; i < a.length; i++) {
             int c = a[i];
             cluster_size[c]++;
 
-            for (int j = 0; j < prototypes.length; j++) {
-                int pj = prototypes[j];
-                centroids[c][j] += distances[i][pj];
+            for (int j = 0; j < embeddings[i].length; j++) {
+                centroids[c][j] += embeddings[i][j];
             }
         }
 
@@ -343,7 +663,7 @@ public class GraphClustering extends LatticeAlgorithm {
         return centroids;
     }
 
-    public int getMedoid(Collection<Integer> collection, double[][] distances) {
+    public int getMedoid(Collection<Integer> collection, DistanceMatrix distances) {
         int m = -1;
         double dmax = Double.POSITIVE_INFINITY;
 
@@ -351,7 +671,7 @@ public class GraphClustering extends LatticeAlgorithm {
             double sum = 0.0;
             for (int y : collection) {
                 if (x != y) {
-                    sum += distances[x][y];
+                    sum += distances.get(x, y);
                 }
             }
             if (sum < dmax) {
@@ -362,6 +682,71 @@ public class GraphClustering extends LatticeAlgorithm {
         return m;
     }
 
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * Where to keep the pairwise distances, {@link DistanceMatrix.Storage#MAPPED}
+     * requires a file set with {@link #setMapFile(java.io.File)}
+     * @param storage the distance matrix storage
+     */
+    public void setStorage(DistanceMatrix.Storage storage) {
+        this.storage = storage;
+    }
+
+    public void setMapFile(File mapFile) {
+        this.mapFile = mapFile;
+    }
+
+    /**
+     * Medoid approximated in the prototype embedding: the graph of the cluster
+     * closest to the cluster centroid
+     */
+    public int getMedoid(Collection<Integer> collection, float[][] embeddings) {
+        int m = -1;
+        double dmin = Double.POSITIVE_INFINITY;
+        double[] centroid = new double[embeddings.length > 0 ? embeddings[0].length : 0];
+        
+        if (collection.isEmpty()) {
+            return m; 
+        }
+        for (int x : collection) {
+            for (int j = 0; j < centroid.length; j++) {
+                centroid[j] += embeddings[x][j];
+            }
+        }
+        for (int j = 0; j < centroid.length; j++) {
+            centroid[j] /= collection.size();
+        }
+        for (int x : collection) {
+            double d = getSquaredEuclidianDistance(embeddings[x], centroid);
+            if (d < dmin) {
+                dmin = d;
+                m = x;
+            }
+        }
+        return m;
+    }
+
+    public void setDuplicateRadius(double duplicateRadius) {
+        this.duplicateRadius = duplicateRadius;
+    }
+
+    /**
+     * Find the near duplicates with a metric index of the whole database 
+     * (e.g., loaded from a file) instead of building a BK-tree
+     * @param duplicateIndex an index bound to the database and to the 
+     * edit distance
+     */
+    public void setDuplicateIndex(MetricIndex duplicateIndex) {
+        this.duplicateIndex = duplicateIndex;
+    }
+
+    public void setPrototypeOnly(boolean prototypeOnly) {
+        this.prototypeOnly = prototypeOnly;
+    }
+
     public Collection<Graph> getMedoids() {
         return medoids;   
     }
@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.unitn.disi.db.gref.algorithms;
+
+import de.parmol.graph.Graph;
+import eu.unitn.disi.db.command.algorithmic.Algorithm;
+import eu.unitn.disi.db.command.algorithmic.AlgorithmInput;
+import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
+import eu.unitn.disi.db.command.util.StopWatch;
+import eu.unitn.disi.db.gref.algorithms.ged.CostFunction;
+import eu.unitn.disi.db.gref.algorithms.ged.EditDistance;
+import eu.unitn.disi.db.gref.algorithms.ged.LabelHistogram;
+import eu.unitn.disi.db.gref.algorithms.metric.BKTree;
+import eu.unitn.disi.db.gref.algorithms.metric.EditDistanceMetric;
+import eu.unitn.disi.db.gref.algorithms.metric.MetricIndex;
+import eu.unitn.disi.db.gref.algorithms.metric.Neighbor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Select a set of representative graphs such that any two representatives 
+ * have normalized edit distance at least the threshold. A graph is a 
+ * representative if it is far from all the representatives that precede it
+ * in the database order, hence the result depends only on the order of the 
+ * database and not on the number of threads.
+ * 
+ * The graphs are checked in batches: first all the graphs of a batch are 
+ * checked in parallel against the representatives selected so far, then the 
+ * survivors are checked in order against the representatives found in the 
+ * same batch. Representatives are indexed by number of edges so that only the
+ * ones that are not excluded by the count lower bound are compared, or in a 
+ * BK-tree answering range queries. A metric index of the whole database 
+ * (e.g., built by BuildMetricIndex) can answer the range queries instead, 
+ * keeping only the representatives among the results. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class GraphSummarization extends Algorithm {
+    @AlgorithmInput(
+            description = "The graph database", 
+            mandatory = true,
+            defaultValue = ""
+    )    
+    private Graph[] gdb; 
+
+    @AlgorithmInput(
+            description = "Minimum edit distance (normalized by the number of edges) between two representatives",
+            mandatory = false,
+            defaultValue = "0.1"
+    )
+    private double editThreshold;
+
+    @AlgorithmInput(
+            description = "Number of threads (-1 = all the available cores)",
+            mandatory = false,
+            defaultValue = "-1"
+    )
+    private int numberOfThreads;
+
+    @AlgorithmInput(
+            description = "Keep the representatives in a BK-tree instead of buckets by number of edges",
+            mandatory = false,
+            defaultValue = "false"
+    )
+    private boolean metricIndex;
+
+    private EditDistance.ApproximationType approximation = EditDistance.ApproximationType.VOLGENANT_JONKER;
+    
+    private List<Graph> representatives;
+    private LabelHistogram[] histograms;
+    //Representatives (database positions) by number of edges
+    private TreeMap<Integer, List<Integer>> index;
+    private BKTree tree;
+    //Index of the whole database, positions in the index and back
+    private MetricIndex databaseIndex;
+    private int[] indexIds;
+    private int[] positions;
+    private boolean[] representative;
+    private int maxEdges;
+    private final AtomicLong comparisons = new AtomicLong();
+    
+    private static final int BATCH_PER_THREAD = 64;
+
+    @Override
+    public void compute() throws AlgorithmExecutionException {
+        int threads = numberOfThreads > 0 ? numberOfThreads : Runtime.getRuntime().availableProcessors();
+        int batchSize = threads * BATCH_PER_THREAD;
+        int chunk, end;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        List<Integer> selected = new ArrayList<Integer>();
+        StopWatch watch = new StopWatch();
+        final boolean[] covered = new boolean[batchSize];
+        
+        watch.start();
+        histograms = new LabelHistogram[gdb.length];
+        for (int i = 0; i < gdb.length; i++) {
+            histograms[i] = new LabelHistogram(gdb[i]);
+        }
+        index = new TreeMap<Integer, List<Integer>>();
+        tree = metricIndex && databaseIndex == null ? new BKTree(gdb, new EditDistanceMetric(approximation)) : null;
+        if (databaseIndex != null) {
+            positions = new int[indexIds.length];
+            for (int i = 0; i < indexIds.length; i++) {
+                positions[indexIds[i]] = i;
+            }
+            representative = new boolean[gdb.length];
+        }
+        maxEdges = 0;
+        comparisons.set(0);
+        //The range queries of the metric indexes count their own distances
+        MetricIndex rangeIndex = databaseIndex != null ? databaseIndex : tree;
+        long indexComparisons = rangeIndex != null ? rangeIndex.getDistanceComputations() : 0;
+        
+        try {
+            for (int start = 0; start < gdb.length; start = end) {
+                end = Math.min(start + batchSize, gdb.length);
+                chunk = (end - start + threads - 1) / threads;
+                futures.clear();
+                for (int from = start; from < end; from += chunk) {
+                    final int first = from, last = Math.min(from + chunk, end), offset = start;
+                    futures.add(pool.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws Exception {
+                            for (int i = first; i < last; i++) {
+                                covered[i - offset] = isCovered(i);
+                            }
+                            return last - first;
+                        }
+                    }));
+                }
+                for (Future<Integer> future : futures) {
+                    future.get();
+                }
+                //Representatives of the same batch, in database order
+                int batchStart = selected.size();
+                for (int i = start; i < end; i++) {
+                    if (!covered[i - start] && !isCovered(i, selected, batchStart)) {
+                        selected.add(i);
+                        addToIndex(i);
+                    }
+                }
+                debug("Found %d representatives over %d graphs", selected.size(), end);
+            }
+        } catch (InterruptedException ex) {
+            throw new AlgorithmExecutionException("Summarization interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new AlgorithmExecutionException("Error while checking the candidate representatives", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        if (rangeIndex != null) {
+            comparisons.addAndGet(rangeIndex.getDistanceComputations() - indexComparisons);
+        }
+        
+        representatives = new ArrayList<Graph>(selected.size());
+        for (int i : selected) {
+            representatives.add(gdb[i]);
+        }
+        info("Selected %d representatives over %d graphs with %d comparisons in %dms", 
+                representatives.size(), gdb.length, comparisons.get(), watch.getElapsedTimeMillis());
+    }
+    
+    /*
+     * Check the graph against the indexed representatives, the only ones 
+     * compared are those whose number of edges can give a distance below
+     * the threshold
+     */
+    private boolean isCovered(int graph) {
+        double c = CostFunction.getEdgeCosts(), t = editThreshold;
+        int m = gdb[graph].getEdgeCount();
+        if (databaseIndex != null) {
+            for (Neighbor n : databaseIndex.range(gdb[graph], t * (m + maxEdges))) {
+                int rep = positions[n.getId()];
+                if (representative[rep] && n.getDistance() < t * (m + gdb[rep].getEdgeCount())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (tree != null) {
+            //The farthest a representative can be 
+            for (Neighbor n : tree.range(gdb[graph], t * (m + maxEdges))) {
+                if (n.getDistance() < t * (m + gdb[n.getId()].getEdgeCount())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        int lo = (int) Math.floor(m * (c - t) / (c + t));
+        int hi = t < c ? (int) Math.min(Integer.MAX_VALUE, Math.ceil(m * (c + t) / (c - t))) : Integer.MAX_VALUE;
+        for (List<Integer> bucket : index.subMap(Math.max(lo, 0), true, hi, true).values()) {
+            if (isCovered(graph, bucket, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean isCovered(int graph, List<Integer> candidates, int from) {
+        Graph g = gdb[graph], rep;
+        double maxDistance;
+        for (int i = from; i < candidates.size(); i++) {
+            rep = gdb[candidates.get(i)];
+            maxDistance = editThreshold * (g.getEdgeCount() + rep.getEdgeCount());
+            comparisons.incrementAndGet();
+            if (EditDistance.getBoundedEditDistance(g, histograms[graph], rep, histograms[candidates.get(i)], maxDistance, approximation) < maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void addToIndex(int graph) {
+        int edges = gdb[graph].getEdgeCount();
+        if (databaseIndex != null) {
+            representative[graph] = true;
+            maxEdges = Math.max(maxEdges, edges);
+            return;
+        }
+        if (tree != null) {
+            tree.add(graph);
+            maxEdges = Math.max(maxEdges, edges);
+            return;
+        }
+        List<Integer> bucket = index.get(edges);
+        if (bucket == null) {
+            bucket = new ArrayList<Integer>();
+            index.put(edges, bucket);
+        }
+        bucket.add(graph);
+    }
+
+    public void setGdb(Graph[] gdb) {
+        this.gdb = gdb;
+    }
+
+    public void setEditThreshold(double editThreshold) {
+        this.editThreshold = editThreshold;
+    }
+
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    public void setMetricIndex(boolean metricIndex) {
+        this.metricIndex = metricIndex;
+    }
+
+    /**
+     * Answer the range queries with an index of the whole database instead of
+     * indexing the representatives
+     * @param databaseIndex an index bound to the same graphs, in any order, 
+     * and to the edit distance with the approximation of the summarization
+     * @param indexIds the position in the index of each graph of the 
+     * database
+     */
+    public void setDatabaseIndex(MetricIndex databaseIndex, int[] indexIds) {
+        this.databaseIndex = databaseIndex;
+        this.indexIds = indexIds;
+    }
+
+    public void setApproximation(EditDistance.ApproximationType approximation) {
+        this.approximation = approximation;
+    }
+
+    /**
+     * @return the representatives in database order
+     */
+    public List<Graph> getRepresentatives() {
+        return representatives;
+    }
+}
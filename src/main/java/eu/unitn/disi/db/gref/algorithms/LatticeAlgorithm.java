@@ -26,7 +26,10 @@ package eu.unitn.disi.db.gref.algorithms;
 
 import de.parmol.graph.Graph;
 import eu.unitn.disi.db.command.algorithmic.AlgorithmInput;
+import eu.unitn.disi.db.gref.lattice.LatticeLimits;
 import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
+import eu.unitn.disi.db.gref.monitoring.Counter;
+import eu.unitn.disi.db.gref.monitoring.Metrics;
 
 /**
  * A lattice algorithm 
@@ -52,4 +55,64 @@ public abstract class LatticeAlgorithm extends ReformulationAlgorithm {
     public void setLattice(ReformulationLattice lattice) {
         this.lattice = lattice;
     }
+    
+    @AlgorithmInput(
+            description = "Limits on the size of the lattice and policy when they are exceeded", 
+            mandatory = false
+    )
+    protected LatticeLimits limits = LatticeLimits.UNLIMITED;
+    
+    protected String limitTrigger; 
+    
+    private static final Counter LIMIT_TRIGGERS = Metrics.counter("gqref_lattice_limit_triggers_total", "Requests whose lattice exceeded a limit");
+
+    public void setLimits(LatticeLimits limits) {
+        this.limits = limits;
+    }
+    
+    /**
+     * Check the limits of the lattice, once a limit is exceeded the lattice 
+     * cannot grow anymore
+     * @return true if the lattice can grow
+     */
+    protected boolean withinLimits() {
+        if (limitTrigger != null) {
+            return false;
+        }
+        if (limits.isUnlimited()) {
+            return true; 
+        }
+        limitTrigger = limits.check(lattice);
+        if (limitTrigger != null) {
+            LIMIT_TRIGGERS.inc();
+            warn("Lattice limit exceeded (%s), policy %s", limitTrigger, limits.getPolicy());
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Fail if a limit has been exceeded and the policy is to fail
+     * @throws LatticeLimitException if the request has to be aborted
+     */
+    protected void enforceLimits() throws LatticeLimitException {
+        if (limitTrigger != null && limits.getPolicy() == LatticeLimits.Policy.FAIL) {
+            throw new LatticeLimitException(limitTrigger);
+        }
+    }
+
+    /**
+     * @return the description of the exceeded limit, null if the lattice 
+     * stayed within the limits
+     */
+    public String getLimitTrigger() {
+        return limitTrigger;
+    }
+    
+    /**
+     * @return the estimated bytes retained by the lattice
+     */
+    public long getEstimatedBytes() {
+        return lattice.getEstimatedBytes();
+    }
 }
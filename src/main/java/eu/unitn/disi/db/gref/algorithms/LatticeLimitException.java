@@ -0,0 +1,49 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.algorithms;
+
+import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
+
+/**
+ * Thrown when a lattice exceeds its {@link eu.unitn.disi.db.gref.lattice.LatticeLimits} 
+ * and the policy is to fail
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class LatticeLimitException extends AlgorithmExecutionException {
+    private final String trigger; 
+
+    public LatticeLimitException(String trigger) {
+        super("Lattice limit exceeded: %s", trigger);
+        this.trigger = trigger;
+    }
+
+    /**
+     * @return the description of the exceeded limit
+     */
+    public String getTrigger() {
+        return trigger;
+    }
+}
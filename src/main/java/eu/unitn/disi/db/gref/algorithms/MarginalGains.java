@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.algorithms;
+
+import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
+import eu.unitn.disi.db.gref.utils.collections.IntArrayList;
+import eu.unitn.disi.db.gref.utils.collections.IntIterator;
+
+/**
+ * Marginal gains in coverage and diversity of the reformulations of a lattice
+ * with respect to a growing set of selected reformulations S. Each 
+ * reformulation keeps the number of its results not covered by S and the sum
+ * of the multiplicities of its results; when a reformulation is selected only
+ * the reformulations sharing some result with it are updated, through an 
+ * inverted list from results to reformulations. The gains are then computed 
+ * in constant time (see {@link ResultMultiplicity}). 
+ * 
+ * The lattice must not change once the gains are created. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class MarginalGains {
+    private final ResultMultiplicity multiplicity; 
+    /*
+     * Node ids of the reformulations containing each result
+     */
+    private final IntArrayList[] postings; 
+    /*
+     * Indexed by node id
+     */
+    private final int[] uncovered; 
+    private final int[] shared; 
+    
+    public MarginalGains(ReformulationLattice lattice) {
+        int id; 
+        multiplicity = ResultMultiplicity.of(lattice.getRoot());
+        postings = new IntArrayList[multiplicity.getUniverse()];
+        uncovered = new int[lattice.getNodeIds()];
+        shared = new int[lattice.getNodeIds()];
+        for (ReformulatedQuery q : lattice.getIndex().values()) {
+            id = q.getNodeId();
+            uncovered[id] = q.resultsNumber();
+            for (IntIterator it = q.getResults().intIterator(); it.hasNext();) {
+                posting(it.nextInt()).add(id);
+            }
+        }
+    }
+    
+    private IntArrayList posting(int result) {
+        if (postings[result] == null) {
+            postings[result] = new IntArrayList();
+        }
+        return postings[result];
+    }
+    
+    /**
+     * Add a reformulation to S and update the gains of the reformulations 
+     * that share some result with it 
+     * @param q the selected reformulation
+     */
+    public void select(ReformulatedQuery q) {
+        int res, i; 
+        boolean first;
+        IntArrayList nodes; 
+        for (IntIterator it = q.getResults().intIterator(); it.hasNext();) {
+            res = it.nextInt();
+            nodes = postings[res];
+            if (nodes != null) {
+                first = multiplicity.get(res) == 0;
+                for (i = 0; i < nodes.size(); i++) {
+                    shared[nodes.get(i)]++;
+                    if (first) {
+                        uncovered[nodes.get(i)]--;
+                    }
+                }
+            }
+        }
+        multiplicity.add(q);
+    }
+    
+    /**
+     * @param q a reformulation of the lattice
+     * @return the number of results of q not covered by S
+     */
+    public int coverageDiff(ReformulatedQuery q) {
+        return uncovered[q.getNodeId()];
+    }
+    
+    /**
+     * @param q a reformulation of the lattice
+     * @return the sum of the symmetric differences between q and the 
+     * reformulations of S
+     */
+    public int diversityDiff(ReformulatedQuery q) {
+        return multiplicity.size() * q.resultsNumber() + multiplicity.getSum() - 2 * shared[q.getNodeId()];
+    }
+    
+    /**
+     * @param q a reformulation of the lattice
+     * @return the sum of the multiplicities in S of the results of q
+     */
+    public int sharedResults(ReformulatedQuery q) {
+        return shared[q.getNodeId()];
+    }
+    
+    /**
+     * @return the multiplicity of the results in S
+     */
+    public ResultMultiplicity getMultiplicity() {
+        return multiplicity;
+    }
+}
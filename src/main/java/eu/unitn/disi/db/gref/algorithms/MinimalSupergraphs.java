@@ -155,12 +155,9 @@ public class MinimalSupergraphs extends IndexAlgorithm {
             }
             algorithmTime = watch.getElapsedTimeMillis();
             info("Time to compute %d reformulations using index algorithm: %dms", k, watch.getElapsedTimeMillis());
-            Set<Integer> finalResults = new HashSet<>(); 
-            for (ReformulatedQuery q : s) {
-                finalResults.addAll(q.getResults());
-            }
-            coverage = finalResults.size()/(double)queryResults.size();
-            diversity = diversitySum(s);
+            ResultMultiplicity multiplicity = new ResultMultiplicity(s);
+            coverage = multiplicity.getCovered()/(double)queryResults.size();
+            diversity = multiplicity.diversity();
             info("Coverage of the result set: %.2f%%", coverage*100);
             info("Diversity of the result set: %d", diversity);
             info("Number of call to extend: %d", callToExtend);
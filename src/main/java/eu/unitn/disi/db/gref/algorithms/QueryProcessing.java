@@ -32,16 +32,23 @@ import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
 import eu.unitn.disi.db.gref.lattice.Query;
 import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
 import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
+import eu.unitn.disi.db.gref.monitoring.Histogram;
+import eu.unitn.disi.db.gref.monitoring.Metrics;
+import eu.unitn.disi.db.gref.monitoring.Span;
+import eu.unitn.disi.db.gref.monitoring.Timer;
+import eu.unitn.disi.db.gref.monitoring.TraceEvent;
+import eu.unitn.disi.db.gref.monitoring.Tracing;
+import eu.unitn.disi.db.gref.utils.collections.IntArrayList;
+import eu.unitn.disi.db.gref.utils.collections.IntHashSet;
+import eu.unitn.disi.db.gref.utils.collections.IntIntHashMap;
 
 /**
  * Finds the results of a query over a graph database
  * @author Davide Mottin <mottin@disi.unitn.eu>
  */
 public class QueryProcessing extends Algorithm {
+    private static final Timer PROCESSING_TIMER = Metrics.timer("gqref_query_processing_seconds", "Time to find the embeddings of the query in the database");
+    private static final Histogram EMBEDDINGS = Metrics.histogram("gqref_embeddings_per_graph", "Number of embeddings of the query in each answer graph", 1, 2, 4, 8, 16, 32, 64, 128, 256);
     @AlgorithmInput(
             description = "The query to be executed", 
             mandatory = true, 
@@ -66,9 +73,10 @@ public class QueryProcessing extends Algorithm {
     @Override
     public void compute() throws AlgorithmExecutionException {
         int multipleResults = 0, resultsNum = 0;
-        List<Integer> resultsIds = new ArrayList<>();
+        long embeddings = 0;
+        IntArrayList resultsIds = new IntArrayList();
         ReformulatedQuery currentQuery;
-        HashSet<Integer> candidates, mapped;
+        IntHashSet candidates, mapped;
         Graph graph;
         FastSUCompleteEmbedding isoProcessor;
         int mappedNode;
@@ -76,8 +84,10 @@ public class QueryProcessing extends Algorithm {
         int[][] maps;
         //Iterators
         int i;
-        HashMap<Integer, Integer> nodeMap;
+        IntIntHashMap nodeMap;
         
+        long start = PROCESSING_TIMER.start();
+        Span span = Tracing.begin(TraceEvent.QUERY_PROCESSING);
         lattice = new ReformulationLattice(query);
         currentQuery = lattice.getRoot();
         for (i = 0; i < gdb.length; i++) {
@@ -87,13 +97,15 @@ public class QueryProcessing extends Algorithm {
             if (isoProcessor.issubIsomorphic()) { //We found an answer to the query
                 //currentQuery.addResult(i);
                 maps = isoProcessor.getMaps(); //Isomorphic mapping. qNode -> gNode
+                EMBEDDINGS.observe(maps.length);
+                embeddings += maps.length;
                 if (maps.length > 1) {
                     multipleResults++;
                 }
                 for (int[] map : maps) {
-                    candidates = new HashSet<>();
-                    mapped = new HashSet<>();
-                    nodeMap = new HashMap<>();
+                    candidates = new IntHashSet(map.length);
+                    mapped = new IntHashSet(query.getEdgeCount());
+                    nodeMap = new IntIntHashMap(map.length);
                     for (int col = 0; col < map.length; col++) {
                         mappedNode = map[col];
                         nodeMap.put(mappedNode, col);
@@ -115,10 +127,11 @@ public class QueryProcessing extends Algorithm {
             }
         }
         results = new Graph[resultsNum];
-        i = 0; 
-        for (Integer res : resultsIds) {
-            results[i++] = gdb[res];
+        for (i = 0; i < resultsIds.size(); i++) {
+            results[i] = gdb[resultsIds.get(i)];
         }
+        PROCESSING_TIMER.stop(start);
+        span.end(gdb.length, resultsNum, embeddings);
         info("Number of graphs with multiple answers: %d/%d", multipleResults, resultsNum);
     }
 
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.algorithms;
+
+import de.parmol.graph.Graph;
+import de.parmol.parsers.GraphParser;
+import edu.psu.chemxseer.structure.postings.Impl.GraphDatabase_OnDisk;
+import eu.unitn.disi.db.command.exceptions.AlgorithmExecutionException;
+
+/**
+ * The reformulation algorithms that can be run from the command line, in the 
+ * order of their numbers (starting from 1)
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public enum RefAlgorithm {
+    GREEDY_BF("Greedy_BF"),
+    FAST_MMPG("Fast_MMPG"),
+    K_FREQ("k-freq"), 
+    INDEXED_MMPG("Indexed_MMPG"), 
+    MIN_SUP("Indexed_MinSup"), 
+    COMPARISON("Comparison"), 
+    STOCHASTIC("Stochastic_Greedy"), 
+    STREAMING("Sieve_Streaming");
+
+    String name; 
+
+    RefAlgorithm(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Create a new instance of the algorithm, the lattice algorithms still 
+     * need the lattice and the database of the processed query
+     * @param k the number of reformulations
+     * @param lambda the diversification factor
+     * @param query the query to reformulate
+     * @param dbFileName the file containing the graph database
+     * @param dbParser the parser of the database
+     * @param indexPath the index path, if needed
+     * @return the algorithm
+     * @throws AlgorithmExecutionException if the algorithm cannot be instantiated
+     */
+    public ReformulationAlgorithm newAlgorithm(int k, float lambda, Graph query, String dbFileName, GraphParser dbParser, String indexPath) throws AlgorithmExecutionException {
+        ReformulationAlgorithm algo = null;
+        switch (this) {
+            case GREEDY_BF: //Exact
+                algo = new GQRExact();
+                ((GQRExact)algo).setLambda(lambda);
+                break;
+            case FAST_MMPG: //Pruning
+                algo = new GQRPruning(); 
+                ((GQRExact)algo).setLambda(lambda);
+                break;
+            case INDEXED_MMPG: 
+                algo = new GQRIndex();
+                ((GQRExact)algo).setLambda(lambda);
+                break;
+            case K_FREQ: 
+                algo = new GQRNaive(); 
+                ((GQRExact)algo).setLambda(0);
+                break;
+            case MIN_SUP: 
+                algo = new MinimalSupergraphs(new GraphDatabase_OnDisk(dbFileName, dbParser));
+                ((MinimalSupergraphs)algo).setQuery(query);
+                ((MinimalSupergraphs)algo).setIndexPath(indexPath);
+                break;
+            case STOCHASTIC: 
+                algo = new GQRStochastic();
+                ((GQRExact)algo).setLambda(lambda);
+                break;
+            case STREAMING: 
+                algo = new GQRStreaming();
+                ((GQRExact)algo).setLambda(lambda);
+                break;
+            case COMPARISON: 
+                throw new AlgorithmExecutionException("This method been used to test pruning code correctness");
+        }
+        algo.setK(k);
+        return algo;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
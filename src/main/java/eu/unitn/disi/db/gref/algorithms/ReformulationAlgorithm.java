@@ -28,9 +28,7 @@ import eu.unitn.disi.db.command.algorithmic.Algorithm;
 import eu.unitn.disi.db.command.algorithmic.AlgorithmInput;
 import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
 import eu.unitn.disi.db.gref.utils.Utils;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
+import eu.unitn.disi.db.gref.utils.collections.IntHashSet;
 import java.util.Set;
 
 /**
@@ -81,7 +79,7 @@ public abstract class ReformulationAlgorithm extends Algorithm {
     
     public static int ovelap(Set<ReformulatedQuery> s) {
         int overlap = 0;
-        Set<Integer> union = new HashSet<>(); 
+        IntHashSet union = new IntHashSet(); 
         for (ReformulatedQuery ref : s) {
             overlap += Utils.setIntersection(union, ref.getResults());
             union.addAll(ref.getResults());
@@ -90,11 +88,7 @@ public abstract class ReformulationAlgorithm extends Algorithm {
     }
     
     public static int coverage(Set<ReformulatedQuery> s) {
-        Set<Integer> union = new HashSet<>();
-        for (ReformulatedQuery ref : s) {
-            union.addAll(ref.getResults());
-        }
-        return union.size();
+        return new ResultMultiplicity(s).getCovered();
     }
     
     public static int diversity(ReformulatedQuery q1, ReformulatedQuery q2) {
@@ -110,24 +104,20 @@ public abstract class ReformulationAlgorithm extends Algorithm {
     }
 
     public static int coverageDiff(Set<ReformulatedQuery> s, ReformulatedQuery qPrime) {
-        Set<Integer> results = new HashSet<>();
+        IntHashSet results = new IntHashSet(qPrime.resultsNumber());
         for (ReformulatedQuery q : s) {
             results.addAll(Utils.intersect(q.getResults(), qPrime.getResults()));
         }
         return qPrime.resultsNumber() - results.size();
     }
     
+    /**
+     * @param s a set of reformulations
+     * @return the sum of {@link #diversity(ReformulatedQuery, ReformulatedQuery)} 
+     * over the ordered pairs of reformulations in s
+     */
     public int diversitySum(Set<ReformulatedQuery> s) {
-        List<ReformulatedQuery> sList = new ArrayList<>(s);
-        int div = 0;
-        for (int i = 0; i < sList.size(); i++) {
-            for (int j = 0; j < sList.size(); j++) {
-                if (i != j) {
-                    div += diversity(sList.get(i), sList.get(j));
-                }
-            }
-        }
-        return div;
+        return new ResultMultiplicity(s).diversity();
     }
 
 }
@@ -0,0 +1,227 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.algorithms;
+
+import eu.unitn.disi.db.gref.lattice.Query;
+import eu.unitn.disi.db.gref.utils.collections.IntHashSet;
+import eu.unitn.disi.db.gref.utils.collections.IntIterator;
+import java.util.Arrays;
+
+/**
+ * Equivalence classes of the results of a query: two results are in the same 
+ * class if they belong to the same refined result sets (e.g. the results of 
+ * the reformulations in the lattice), hence they have the same multiplicity 
+ * in any set S of such queries. Coverage and diversity of S are sums over 
+ * the results that can be computed over the classes weighted by their size. 
+ * 
+ * The classes are refined every time a new result set is added (partition 
+ * refinement, linear in the size of the set): a class partially contained in
+ * the set is split in two. The multiplicity of each class is kept with the 
+ * classes, the new class inherits it.
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class ResultClasses {
+    /*
+     * Class of each result (-1 if not a result of the root), size and 
+     * multiplicity in S of each class, version at which each class has 
+     * been split last
+     */
+    private int[] classOf;
+    private int[] weights;
+    private int[] multiplicity; 
+    private int[] splits;
+    private int classes; 
+    private int version; 
+    /*
+     * Classes of each result set id and version at which they have been 
+     * computed
+     */
+    private int[][] setClasses; 
+    private int[] setVersions; 
+    /*
+     * Scratch space: members of a class touched by the set being refined 
+     * and new class of the touched members
+     */
+    private int[] touched; 
+    private int[] moved; 
+    
+    /**
+     * @param root a query, its results are a single class
+     */
+    public ResultClasses(Query root) {
+        int max = -1, res;
+        for (IntIterator it = root.getResults().intIterator(); it.hasNext();) {
+            res = it.nextInt();
+            if (res > max) {
+                max = res;
+            }
+        }
+        classOf = new int[max + 1];
+        Arrays.fill(classOf, -1);
+        for (IntIterator it = root.getResults().intIterator(); it.hasNext();) {
+            classOf[it.nextInt()] = 0;
+        }
+        weights = new int[16];
+        multiplicity = new int[16];
+        splits = new int[16];
+        touched = new int[16];
+        moved = new int[16];
+        weights[0] = root.resultsNumber();
+        classes = 1;
+        setClasses = new int[16][];
+        setVersions = new int[16];
+    }
+    
+    /**
+     * Split the classes partially contained in a set of results
+     * @param results a subset of the results of the root
+     */
+    public void refine(IntHashSet results) {
+        int c, split = 0;
+        int[] touchedClasses = new int[Math.min(results.size(), classes)];
+        for (IntIterator it = results.intIterator(); it.hasNext();) {
+            c = classOf[it.nextInt()];
+            if (touched[c]++ == 0) {
+                touchedClasses[split++] = c;
+            }
+        }
+        for (int i = 0; i < split; i++) {
+            c = touchedClasses[i];
+            if (touched[c] < weights[c]) {
+                ensureClasses(classes + 1);
+                moved[c] = classes; 
+                weights[classes] = touched[c];
+                multiplicity[classes] = multiplicity[c];
+                weights[c] -= touched[c];
+                splits[c] = ++version;
+                classes++;
+            } else {
+                moved[c] = c;
+            }
+            touched[c] = 0;
+        }
+        for (IntIterator it = results.intIterator(); it.hasNext();) {
+            int res = it.nextInt();
+            classOf[res] = moved[classOf[res]];
+        }
+    }
+    
+    /**
+     * @param set the id of a refined result set
+     * @param results the results of the set
+     * @return the classes whose union is the result set, cached by set id 
+     * until one of them is split
+     */
+    public int[] classesOf(int set, IntHashSet results) {
+        int[] cached;
+        if (set >= setClasses.length) {
+            setClasses = Arrays.copyOf(setClasses, Math.max(set + 1, setClasses.length * 2));
+            setVersions = Arrays.copyOf(setVersions, setClasses.length);
+        }
+        cached = setClasses[set];
+        if (cached == null || (setVersions[set] != version && splitSince(cached, setVersions[set]))) {
+            cached = classesOf(results);
+            setClasses[set] = cached;
+        }
+        setVersions[set] = version;
+        return cached;
+    }
+    
+    /**
+     * @param results a refined result set
+     * @return the classes whose union is the result set
+     */
+    public int[] classesOf(IntHashSet results) {
+        int c, size = 0;
+        int[] set = new int[Math.min(results.size(), classes)];
+        for (IntIterator it = results.intIterator(); it.hasNext();) {
+            c = classOf[it.nextInt()];
+            if (touched[c]++ == 0) {
+                set[size++] = c;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            touched[set[i]] = 0;
+        }
+        return size == set.length? set : Arrays.copyOf(set, size);
+    }
+    
+    private boolean splitSince(int[] set, int version) {
+        for (int c : set) {
+            if (splits[c] > version) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Increment the multiplicity of the classes of a query added to S
+     * @param set the classes of the query
+     */
+    public void add(int[] set) {
+        for (int c : set) {
+            multiplicity[c]++;
+        }
+    }
+    
+    private void ensureClasses(int size) {
+        int length = weights.length;
+        if (size > length) {
+            while (length < size) {
+                length <<= 1;
+            }
+            weights = Arrays.copyOf(weights, length);
+            multiplicity = Arrays.copyOf(multiplicity, length);
+            splits = Arrays.copyOf(splits, length);
+            touched = Arrays.copyOf(touched, length);
+            moved = Arrays.copyOf(moved, length);
+        }
+    }
+    
+    /**
+     * @param c a class
+     * @return the number of results in the class
+     */
+    public int weight(int c) {
+        return weights[c];
+    }
+    
+    /**
+     * @param c a class
+     * @return the number of queries of S containing the results of the class
+     */
+    public int multiplicity(int c) {
+        return multiplicity[c];
+    }
+    
+    /**
+     * @return the number of classes, they are in [0, size())
+     */
+    public int size() {
+        return classes;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.algorithms;
+
+import eu.unitn.disi.db.gref.lattice.Query;
+import eu.unitn.disi.db.gref.utils.collections.IntIterator;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Multiplicity of the results in a set of queries S, i.e. the number of 
+ * queries of S each result belongs to. Coverage and diversity of S (and their
+ * marginal gains) are computed from the multiplicities instead of 
+ * intersecting the results of each pair of queries: with n = |S| and m(r) the 
+ * multiplicity of the result r 
+ * <ul>
+ *  <li>sum of |q1 \ q2| + |q2 \ q1| over the ordered pairs of S = 
+ *      sum of 2 m(r) (n - m(r)) over the results</li>
+ *  <li>sum of |q \ q'| + |q' \ q| over q in S = 
+ *      n |q'| + sum of m(r) - 2 sum of m(r) over the results of q'</li>
+ *  <li>results of q' not covered by S = results of q' with m(r) = 0</li>
+ * </ul>
+ * Results are identified by non negative integers (graph ids or dense result 
+ * ids), the multiplicities are stored in an array indexed by result. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class ResultMultiplicity {
+    private int[] multiplicity; 
+    private int queries; 
+    private int sum; 
+    private int covered; 
+    
+    public ResultMultiplicity() {
+        this(16);
+    }
+    
+    /**
+     * @param universe the results are expected in [0, universe), the 
+     * multiplicities grow if larger results are added
+     */
+    public ResultMultiplicity(int universe) {
+        multiplicity = new int[Math.max(universe, 1)];
+    }
+    
+    /**
+     * @param s the queries whose multiplicities are counted
+     */
+    public ResultMultiplicity(Collection<? extends Query> s) {
+        this();
+        for (Query q : s) {
+            add(q);
+        }
+    }
+    
+    /**
+     * @param root a query
+     * @return empty multiplicities large enough to store the results of the
+     * root (results of its reformulations are a subset)
+     */
+    public static ResultMultiplicity of(Query root) {
+        int max = -1, res;
+        for (IntIterator it = root.getResults().intIterator(); it.hasNext();) {
+            res = it.nextInt();
+            if (res > max) {
+                max = res;
+            }
+        }
+        return new ResultMultiplicity(max + 1);
+    }
+    
+    /**
+     * Add a query to S and increment the multiplicity of its results
+     * @param q the query
+     */
+    public void add(Query q) {
+        int res;
+        for (IntIterator it = q.getResults().intIterator(); it.hasNext();) {
+            res = it.nextInt();
+            if (res >= multiplicity.length) {
+                multiplicity = Arrays.copyOf(multiplicity, Math.max(res + 1, multiplicity.length * 2));
+            }
+            if (multiplicity[res]++ == 0) {
+                covered++;
+            }
+        }
+        sum += q.resultsNumber();
+        queries++;
+    }
+    
+    /**
+     * @param result a result
+     * @return the number of queries of S containing the result
+     */
+    public int get(int result) {
+        return result < multiplicity.length ? multiplicity[result] : 0;
+    }
+    
+    /**
+     * @return the results currently stored without growing are in 
+     * [0, getUniverse())
+     */
+    public int getUniverse() {
+        return multiplicity.length;
+    }
+    
+    /**
+     * @return the number of queries in S
+     */
+    public int size() {
+        return queries;
+    }
+    
+    /**
+     * @return the sum of the multiplicities, i.e. the sum of the result sizes
+     */
+    public int getSum() {
+        return sum;
+    }
+    
+    /**
+     * @return the number of results covered by at least one query of S
+     */
+    public int getCovered() {
+        return covered;
+    }
+    
+    /**
+     * @return the sum of the symmetric differences of the results over the 
+     * ordered pairs of queries of S
+     */
+    public int diversity() {
+        int div = 0; 
+        for (int mult : multiplicity) {
+            div += 2 * mult * (queries - mult);
+        }
+        return div;
+    }
+    
+    /**
+     * @param qPrime a query not in S
+     * @return the increase of {@link #diversity()} divided by 2 if qPrime is
+     * added to S, i.e. the sum of the symmetric differences between qPrime and
+     * the queries of S
+     */
+    public int diversityDiff(Query qPrime) {
+        int shared = 0; 
+        for (IntIterator it = qPrime.getResults().intIterator(); it.hasNext();) {
+            shared += get(it.nextInt());
+        }
+        return queries * qPrime.resultsNumber() + sum - 2 * shared;
+    }
+    
+    /**
+     * @param qPrime a query not in S
+     * @return the number of results of qPrime not covered by S
+     */
+    public int coverageDiff(Query qPrime) {
+        int uncovered = 0; 
+        for (IntIterator it = qPrime.getResults().intIterator(); it.hasNext();) {
+            if (get(it.nextInt()) == 0) {
+                uncovered++;
+            }
+        }
+        return uncovered;
+    }
+}
@@ -48,38 +48,62 @@ public class BipartiteMatching {
         this.matching = matching;
     }
 
+    /**
+     * solvers, created on first use and reused by the following calls 
+     */
+    private HungarianAlgorithm ha;
+    private VolgenantJonker vj;
+
     /**
      * @return the optimal matching according to the @param costMatrix the
      * matching actually used is defined in the string "matching"
      */
     public int[][] getMatching(double[][] costMatrix) {
-        int[][] assignment = null;;
+        int[][] assignment = null;
         if (this.matching.equals("Hungarian")) {
-            HungarianAlgorithm ha = new HungarianAlgorithm();
-            assignment = ha.hgAlgorithm(costMatrix);
+            assignment = hungarian().hgAlgorithm(costMatrix);
         }
         if (this.matching.equals("VJ")) {
-            VolgenantJonker vj = new VolgenantJonker();
-            vj.computeAssignment(costMatrix);
+            volgenantJonker().computeAssignment(costMatrix);
             int[] solution = vj.rowsol;
             assignment = new int[costMatrix.length][2];
             // format the assignment correctly
-            for (int i = 0; i < solution.length; i++) {
+            for (int i = 0; i < assignment.length; i++) {
                 assignment[i][0] = i;
                 assignment[i][1] = solution[i];
             }
 
         }
-        // log the matching on the console
-//        if (this.outputMatching == 1) {
-//            System.out.println("\nThe Optimal Matching:");
-//            for (int k = 0; k < assignment.length; k++) {
-//                System.out.print(assignment[k][0] + " -> " + assignment[k][1] + " ");
-//            }
-//            System.out.println();
-//        }
-
         return assignment;
     }
 
+    /**
+     * Optimal matching of a square cost matrix stored in row-major order. 
+     * @param costMatrix the cost matrix (only the first dim*dim elements are used)
+     * @param dim the number of rows (and columns)
+     * @return the column assigned to each row (the first dim elements), the 
+     * array is owned by the solver and overwritten by the next call
+     */
+    public int[] getMatching(double[] costMatrix, int dim) {
+        if (this.matching.equals("VJ")) {
+            volgenantJonker().computeAssignment(costMatrix, dim);
+            return vj.getAssignment();
+        }
+        return hungarian().hgAlgorithm(costMatrix, dim);
+    }
+
+    private HungarianAlgorithm hungarian() {
+        if (ha == null) {
+            ha = new HungarianAlgorithm();
+        }
+        return ha;
+    }
+
+    private VolgenantJonker volgenantJonker() {
+        if (vj == null) {
+            vj = new VolgenantJonker();
+        }
+        return vj;
+    }
+
 }
@@ -59,6 +59,14 @@ public class CostFunction {
      * result is multiplied by (1-alpha)
      */
     
+    /**
+     * @return the cost of substituting a label with a different one, i.e., the
+     * minimum of {@link #getCost(int, int)} over distinct labels
+     */
+    public static double getSubstitutionCosts() {
+        return .5;
+    }
+
     /**
      * @return the constant cost for node deletion/insertion multiplied by alpha
      */
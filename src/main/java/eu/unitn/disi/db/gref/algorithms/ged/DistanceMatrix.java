@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.unitn.disi.db.gref.algorithms.ged;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Symmetric matrix of pairwise distances stored as a packed upper triangle of
+ * floats. The diagonal is not stored (it is always 0), so a matrix over 
+ * <code>n</code> graphs takes <code>n(n-1)/2</code> floats, split in segments
+ * that can live on the heap, in direct (off-heap) buffers or in a memory-mapped
+ * file. 
+ * 
+ * Distinct cells can be written concurrently by different threads. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class DistanceMatrix implements Closeable {
+    
+    public enum Storage {
+        HEAP, 
+        OFF_HEAP, 
+        MAPPED
+    }
+    
+    /*
+     * Each segment holds 2^SEGMENT_BITS floats (256MB), this keeps every 
+     * segment below the 2GB limit of nio buffers
+     */
+    private static final int SEGMENT_BITS = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+    
+    private final int size; 
+    private final long entries; 
+    private final FloatBuffer[] segments;
+    private final Storage storage;
+    private final RandomAccessFile file; 
+    
+    private DistanceMatrix(int size, Storage storage, File mapFile) throws IOException {
+        int numSegments, segmentSize; 
+        long remaining;
+        FileChannel channel = null; 
+        
+        this.size = size;
+        this.storage = storage;
+        this.entries = size * (size - 1L) / 2;
+        numSegments = (int) ((entries + SEGMENT_MASK) >>> SEGMENT_BITS);
+        segments = new FloatBuffer[numSegments];
+        if (storage == Storage.MAPPED) {
+            file = new RandomAccessFile(mapFile, "rw");
+            file.setLength(entries * 4);
+            channel = file.getChannel();
+        } else {
+            file = null; 
+        }
+        remaining = entries;
+        for (int i = 0; i < numSegments; i++) {
+            segmentSize = (int) Math.min(remaining, SEGMENT_MASK + 1);
+            switch (storage) {
+                case HEAP: 
+                    segments[i] = FloatBuffer.wrap(new float[segmentSize]);
+                    break;
+                case OFF_HEAP: 
+                    segments[i] = ByteBuffer.allocateDirect(segmentSize * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+                    break;
+                case MAPPED:
+                    segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, ((long) i << SEGMENT_BITS) * 4, segmentSize * 4L).order(ByteOrder.nativeOrder()).asFloatBuffer();
+                    break;
+            }
+            remaining -= segmentSize;
+        }
+    }
+    
+    /**
+     * Create a distance matrix stored on the java heap
+     * @param size The number of graphs 
+     * @return a new matrix filled with zeros
+     */
+    public static DistanceMatrix onHeap(int size) {
+        try {
+            return new DistanceMatrix(size, Storage.HEAP, null);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); //Cannot happen
+        }
+    }
+    
+    /**
+     * Create a distance matrix stored in direct buffers, outside of the heap 
+     * @param size The number of graphs
+     * @return a new matrix filled with zeros
+     */
+    public static DistanceMatrix offHeap(int size) {
+        try {
+            return new DistanceMatrix(size, Storage.OFF_HEAP, null);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); //Cannot happen
+        }
+    }
+    
+    /**
+     * Create a distance matrix backed by a memory-mapped file, the operating 
+     * system pages the matrix in and out as needed. 
+     * @param size The number of graphs
+     * @param mapFile The file to map (it is created or truncated)
+     * @return a new matrix
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static DistanceMatrix mapped(int size, File mapFile) throws IOException {
+        return new DistanceMatrix(size, Storage.MAPPED, mapFile);
+    }
+    
+    private long index(int i, int j) {
+        //Row i starts after the i previous rows of decreasing length
+        return (long) i * (2L * size - i - 1) / 2 + (j - i - 1);
+    }
+    
+    public float get(int i, int j) {
+        long idx; 
+        if (i == j) {
+            return 0;
+        }
+        idx = i < j ? index(i, j) : index(j, i);
+        return segments[(int) (idx >>> SEGMENT_BITS)].get((int) (idx & SEGMENT_MASK));
+    }
+    
+    public void set(int i, int j, float distance) {
+        long idx; 
+        if (i == j) {
+            throw new IllegalArgumentException("Cannot set the diagonal of a distance matrix");
+        }
+        idx = i < j ? index(i, j) : index(j, i);
+        segments[(int) (idx >>> SEGMENT_BITS)].put((int) (idx & SEGMENT_MASK), distance);
+    }
+
+    /**
+     * @return the number of graphs (rows) in the matrix
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return the number of stored distances, i.e., n(n-1)/2
+     */
+    public long entries() {
+        return entries;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+}
@@ -25,8 +25,9 @@ package eu.unitn.disi.db.gref.algorithms.ged;
 
 import de.parmol.graph.Graph;
 import de.parmol.graph.UndirectedGraph;
-import java.util.LinkedList;
-import java.util.TreeSet;
+import eu.unitn.disi.db.gref.monitoring.Span;
+import eu.unitn.disi.db.gref.monitoring.TraceEvent;
+import eu.unitn.disi.db.gref.monitoring.Tracing;
 
 /**
  * Computes the graph edit distance either approximate or exact. 
@@ -58,34 +59,114 @@ public class EditDistance {
     }
     
     
+    /*
+     * Matrix generator and solvers of the calling thread, their workspaces
+     * are reused among the calls
+     */
+    private static final ThreadLocal<Workspace> WORKSPACE = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+    
+    private static class Workspace {
+        final MatrixGenerator matrixGenerator = new MatrixGenerator();
+        final BipartiteMatching hungarian = new BipartiteMatching(ApproximationType.HUNGARIAN.toString());
+        final BipartiteMatching volgenantJonker = new BipartiteMatching(ApproximationType.VOLGENANT_JONKER.toString());
+    }
+    
     public static double getApproximateEditDistance(Graph g1, Graph g2, ApproximationType type) {
         Graph sourceGraph = g1;
         Graph targetGraph = g2;
-        MatrixGenerator matrixGenerator = new MatrixGenerator();
-        BipartiteMatching bipartiteMatching = new BipartiteMatching(type.toString());
+        Workspace workspace = WORKSPACE.get();
+        BipartiteMatching bipartiteMatching = type == ApproximationType.VOLGENANT_JONKER ? workspace.volgenantJonker : workspace.hungarian;
         // in order to get determinant edit costs between two graphs
         if (g1.getNodeCount() < g2.getNodeCount()) {
             sourceGraph = g2; 
             targetGraph = g1; 
         }
+        int dim = sourceGraph.getNodeCount() + targetGraph.getNodeCount();
+        Span span = Tracing.begin(TraceEvent.EDIT_DISTANCE);
         
           // generate the cost-matrix between the local substructures of the source and target graphs
-        double[][] costMatrix = matrixGenerator.getMatrix(sourceGraph, targetGraph);
+        double[] costMatrix = workspace.matrixGenerator.getCostMatrix(sourceGraph, targetGraph);
         // compute the matching using Hungarian or VolgenantJonker (defined in String matching)
-        int[][] matching = bipartiteMatching.getMatching(costMatrix);
+        int[] matching = bipartiteMatching.getMatching(costMatrix, dim);
           // calculate the approximated edit-distance according to the bipartite matching 
-        return getEditDistance(sourceGraph, targetGraph, matching);
+        double distance = getEditDistance(sourceGraph, targetGraph, matching, dim);
+        span.end(sourceGraph.getNodeCount(), targetGraph.getNodeCount(), 0);
+        return distance;
+    }
+    
+    
+    /**
+     * Lower bound of the edit distance in constant time, from the difference in
+     * the number of nodes and edges
+     * @param g1 first graph
+     * @param g2 second graph
+     * @return a lower bound of the edit distance between g1 and g2
+     */
+    public static double getCountLowerBound(Graph g1, Graph g2) {
+        return Math.abs(g1.getNodeCount() - g2.getNodeCount()) * CostFunction.getNodeCosts()
+                + Math.abs(g1.getEdgeCount() - g2.getEdgeCount()) * CostFunction.getEdgeCosts();
+    }
+    
+    /**
+     * Lower bound of the edit distance from the node and edge label multisets, 
+     * computed in O(n log n) (O(n) with precomputed {@link LabelHistogram}s)
+     * @param g1 first graph
+     * @param g2 second graph
+     * @return a lower bound of the edit distance between g1 and g2
+     */
+    public static double getLowerBound(Graph g1, Graph g2) {
+        return new LabelHistogram(g1).lowerBound(new LabelHistogram(g2));
+    }
+    
+    /**
+     * Same as {@link #getBoundedEditDistance(de.parmol.graph.Graph, eu.unitn.disi.db.gref.algorithms.ged.LabelHistogram, de.parmol.graph.Graph, eu.unitn.disi.db.gref.algorithms.ged.LabelHistogram, double, eu.unitn.disi.db.gref.algorithms.ged.EditDistance.ApproximationType)}
+     * computing the histograms on the fly
+     */
+    public static double getBoundedEditDistance(Graph g1, Graph g2, double threshold, ApproximationType type) {
+        return getBoundedEditDistance(g1, null, g2, null, threshold, type);
     }
     
+    /**
+     * Tiered edit distance for threshold tests: the count bound, then the 
+     * label histogram bound and only if both are below the threshold the 
+     * bipartite approximation. 
+     * @param g1 first graph
+     * @param h1 label histogram of g1 (can be null)
+     * @param g2 second graph
+     * @param h2 label histogram of g2 (can be null)
+     * @param threshold the distance to test 
+     * @param type the bipartite matching to use
+     * @return a lower bound of the distance if it is already at least 
+     * threshold, otherwise the approximate edit distance; the result is below 
+     * threshold if and only if the approximate edit distance is. 
+     */
+    public static double getBoundedEditDistance(Graph g1, LabelHistogram h1, Graph g2, LabelHistogram h2, double threshold, ApproximationType type) {
+        double bound = getCountLowerBound(g1, g2);
+        if (bound >= threshold) {
+            return bound;
+        }
+        bound = (h1 != null ? h1 : new LabelHistogram(g1)).lowerBound(h2 != null ? h2 : new LabelHistogram(g2));
+        if (bound >= threshold) {
+            return bound;
+        }
+        return getApproximateEditDistance(g1, g2, type);
+    }
     
     /**
      *
      * @param g1 first graph
      * @param g2 second graph
-     * @param matching  matching using the cost function 
+     * @param matching  matching using the cost function, node i is mapped to 
+     * matching[i] 
+     * @param dim number of nodes of g1 plus number of nodes of g2
      * @return the approximated edit distance between graph 
      */
-    private static double getEditDistance(Graph g1, Graph g2, int[][] matching) {
+    private static double getEditDistance(Graph g1, Graph g2, int[] matching, int dim) {
         // if the edges are undirected
         // all of the edge operations have to be multiplied by 0.5
         // since all edge operations are performed twice 
@@ -99,19 +180,19 @@ public class EditDistance {
         //Edge[][] edgesOfG2 = g2.getAdjacenyMatrix();
 
         
-        for (int i = 0; i < matching.length; i++) {
-            if (matching[i][0] < g1.getNodeCount()) {
-                if (matching[i][1] < g2.getNodeCount()) {
-                    // i-th node substitution with node from g2 with index matching[i][1]
-                    ed += CostFunction.getCost(g1.getNodeLabel(matching[i][0]), g2.getNodeLabel(matching[i][1]));
+        for (int i = 0; i < dim; i++) {
+            if (i < g1.getNodeCount()) {
+                if (matching[i] < g2.getNodeCount()) {
+                    // i-th node substitution with node from g2 with index matching[i]
+                    ed += CostFunction.getCost(g1.getNodeLabel(i), g2.getNodeLabel(matching[i]));
                     // edge handling when i-th node is substituted with node with index matching[i][i];
                     // iterating through all possible edges e_ij of node i
-                    for (int j = 0; j < matching.length; j++) {
+                    for (int j = 0; j < dim; j++) {
                         if (j < g1.getNodeCount()) {
-                            int e_ij = g1.getEdge(matching[i][0], j);
-                            if (matching[j][1] < g2.getNodeCount()) {
+                            int e_ij = g1.getEdge(i, j);
+                            if (matching[j] < g2.getNodeCount()) {
                                 // node with index j is NOT deleted but subtituted
-                                int e_ij_mapped = g2.getEdge(matching[i][1],matching[j][1]);
+                                int e_ij_mapped = g2.getEdge(matching[i],matching[j]);
                                 if (e_ij != -1) {
                                     if (e_ij_mapped != -1) {
                                         // case 1:
@@ -143,8 +224,8 @@ public class EditDistance {
                             }
                         } else {
                             // node with index j is inserted
-                            if (matching[j][1] < g2.getNodeCount()) {
-                                int e_ij_mapped = g2.getEdge(matching[i][1],matching[j][1]);
+                            if (matching[j] < g2.getNodeCount()) {
+                                int e_ij_mapped = g2.getEdge(matching[i],matching[j]);
                                 if (e_ij_mapped != -1) {
                                     // case 5:
                                     // there is an edge between the mappings of i and j
@@ -158,7 +239,7 @@ public class EditDistance {
                     ed += CostFunction.getNodeCosts();
                     // edge handling
                     for (int j = 0; j < g1.getNodeCount(); j++) {
-                        int e_ij = g1.getEdge(matching[i][0],j);
+                        int e_ij = g1.getEdge(i,j);
                         if (e_ij != -1) {
                             // case 6:
                             // there is an edge between the i-th and j-th node
@@ -167,12 +248,12 @@ public class EditDistance {
                     }
                 }
             } else {
-                if (matching[i][1] < g2.getNodeCount()) {
+                if (matching[i] < g2.getNodeCount()) {
                     // i-th node insertion
                     ed += CostFunction.getNodeCosts();
                     // edge handling
                     for (int j = 0; j < g2.getNodeCount(); j++) {
-                        int e_ij_mapped = g2.getEdge(matching[i][1],j);
+                        int e_ij_mapped = g2.getEdge(matching[i],j);
                         if (e_ij_mapped != -1) {
                             // case 7:
                             // there is an edge between the mapping of the i-th and j-th node
@@ -186,51 +267,23 @@ public class EditDistance {
     }
 
     /**
-     * Edit distance using beam search
+     * Edit distance using A* search, with beam search if s is bounded
      * @param g1
      * @param g2
-     * @param cf
      * @param s
      * @return the exact edit distance between graph @param g1 and graph @param
-     * g2 using the cost function @param cf s is the maximum number of open
-     * paths used in beam-search
+     * g2 if s is Integer.MAX_VALUE, otherwise the cost of the best edit path 
+     * found keeping at most s open paths (the bipartite approximation if it is 
+     * better)
      */
     public static double getSuboptEditDistance(Graph g1, Graph g2, int s) {
-        // list of partial edit paths (open) organized as TreeSet
-        TreeSet<TreeNode> open = new TreeSet<>();
-
-        // if the edges are undirected
-        // all of the edge operations have to be multiplied by 0.5
-        // since all edge operations are performed twice 
-        double factor = 1.0;
-        if (g1 instanceof UndirectedGraph) {
-            factor = 0.5;
-        }
-
-        // each treenode represents a (partial) solution (i.e. edit path)
-        // start is the first (empty) partial solution
-        TreeNode start = new TreeNode(g1, g2, factor);
-        open.add(start);
-
-        // main loop of the tree search
-        while (!open.isEmpty()) {
-            TreeNode u = open.pollFirst();
-            if (u.allNodesUsed()) {
-                return u.getCost();
-            }
-            // generates all successors of node u in the search tree
-            // and add them to open
-            LinkedList<TreeNode> successors = u.generateSuccessors();
-            open.addAll(successors);
-
-            // in beam search the maximum number of open paths
-            // is limited to s
-            while (open.size() > s) {
-                open.pollLast();
-            }
-        }
-        // error case
-        return -1;
+        // the cost of the approximate edit path bounds the search (traced 
+        // on its own)
+        double upperBound = getApproximateEditDistance(g1, g2, ApproximationType.HUNGARIAN);
+        Span span = Tracing.begin(TraceEvent.EDIT_DISTANCE);
+        double distance = new EditPathSearch(g1, g2).search(s, upperBound);
+        span.end(g1.getNodeCount(), g2.getNodeCount(), s);
+        return distance;
     }
 
 }
@@ -0,0 +1,387 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.unitn.disi.db.gref.algorithms.ged;
+
+import de.parmol.graph.Graph;
+import de.parmol.graph.UndirectedGraph;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A* (or beam) search over the edit paths between two graphs. The nodes of the
+ * first graph are processed in order, each one is substituted with an unused
+ * node of the second graph or deleted; when one of the graphs is exhausted the
+ * remaining nodes of the other are deleted (inserted) at once. 
+ * 
+ * Partial paths are compact states linked to their parent: the mapping is 
+ * rebuilt in scratch arrays only when a state is expanded. The open list is a
+ * binary heap ordered by the path cost plus an admissible estimate of the 
+ * remaining cost (the label multiset bound of {@link LabelHistogram} on the 
+ * unprocessed nodes and on the edges that have not been charged yet). Paths 
+ * more expensive than the bipartite approximation are never opened. 
+ * 
+ * Not thread safe, use one instance per computation. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+class EditPathSearch {
+    private static final int UNMAPPED = -1;
+    private static final int DELETED = -2; 
+    
+    private static final class State {
+        /*
+         * The state covers the nodes of g1 from parent.depth to depth - 1, 
+         * mapped to "mapped" if it is one node, deleted otherwise
+         */
+        final State parent;
+        final int depth;
+        final int mapped;
+        final double cost;
+        final double estimate;
+        final long sequence;
+        final boolean complete;
+
+        State(State parent, int depth, int mapped, double cost, double estimate, long sequence, boolean complete) {
+            this.parent = parent;
+            this.depth = depth;
+            this.mapped = mapped;
+            this.cost = cost;
+            this.estimate = estimate;
+            this.sequence = sequence;
+            this.complete = complete;
+        }
+    }
+    
+    /*
+     * Cheapest estimate first, then the deepest path, then the oldest
+     */
+    private static final Comparator<State> ORDER = new Comparator<State>() {
+        @Override
+        public int compare(State s1, State s2) {
+            if (s1.estimate != s2.estimate) {
+                return s1.estimate < s2.estimate ? -1 : 1;
+            }
+            if (s1.complete != s2.complete) {
+                return s1.complete ? -1 : 1;
+            }
+            if (s1.depth != s2.depth) {
+                return s1.depth > s2.depth ? -1 : 1;
+            }
+            return s1.sequence < s2.sequence ? -1 : (s1.sequence == s2.sequence ? 0 : 1);
+        }
+    };
+    
+    private final Graph g1, g2;
+    private final int n1, n2;
+    private final double factor;
+    private final double nodeCost, edgeCost, nodeSubstitution, edgeSubstitution;
+    
+    //Labels renumbered densely to count them in arrays
+    private final int[] nodeLabels1, nodeLabels2, edgeLabels1, edgeLabels2;
+    private final int[] nodeCounts, edgeCounts;
+    
+    //Scratch mapping of the state under expansion
+    private final int[] matching;
+    private final int[] inverseMatching;
+    
+    private State[] heap = new State[64];
+    private int size; 
+    private long sequence;
+    private long expansions;
+    
+    EditPathSearch(Graph g1, Graph g2) {
+        Map<Integer, Integer> nodeIds = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> edgeIds = new HashMap<Integer, Integer>();
+        
+        this.g1 = g1;
+        this.g2 = g2;
+        this.n1 = g1.getNodeCount();
+        this.n2 = g2.getNodeCount();
+        // if the edges are undirected
+        // all of the edge operations have to be multiplied by 0.5
+        // since all edge operations are performed twice 
+        this.factor = g1 instanceof UndirectedGraph ? 0.5 : 1.0;
+        this.nodeCost = CostFunction.getNodeCosts();
+        this.edgeCost = CostFunction.getEdgeCosts();
+        this.nodeSubstitution = Math.min(CostFunction.getSubstitutionCosts(), 2 * nodeCost);
+        this.edgeSubstitution = Math.min(CostFunction.getSubstitutionCosts(), 2 * edgeCost);
+        
+        nodeLabels1 = denseLabels(g1, true, nodeIds);
+        nodeLabels2 = denseLabels(g2, true, nodeIds);
+        edgeLabels1 = denseLabels(g1, false, edgeIds);
+        edgeLabels2 = denseLabels(g2, false, edgeIds);
+        nodeCounts = new int[nodeIds.size()];
+        edgeCounts = new int[edgeIds.size()];
+        
+        matching = new int[n1];
+        inverseMatching = new int[n2];
+    }
+    
+    private static int[] denseLabels(Graph g, boolean nodes, Map<Integer, Integer> ids) {
+        int[] labels = new int[nodes ? g.getNodeCount() : g.getEdgeCount()];
+        Integer id; 
+        for (int i = 0; i < labels.length; i++) {
+            int label = nodes ? g.getNodeLabel(i) : g.getEdgeLabel(i);
+            id = ids.get(label);
+            if (id == null) {
+                id = ids.size();
+                ids.put(label, id);
+            }
+            labels[i] = id;
+        }
+        return labels;
+    }
+    
+    /**
+     * @param s maximum number of open paths (Integer.MAX_VALUE for the exact 
+     * distance)
+     * @param upperBound the cost of a known edit path, paths more expensive 
+     * are not explored
+     * @return the cost of the cheapest edit path found, upperBound if the beam
+     * discarded all of them
+     */
+    double search(int s, double upperBound) {
+        State state;
+        
+        Arrays.fill(matching, UNMAPPED);
+        Arrays.fill(inverseMatching, UNMAPPED);
+        push(new State(null, 0, UNMAPPED, 0, heuristic(0), sequence++, false));
+        
+        while (size > 0) {
+            state = pop();
+            if (state.complete) {
+                return state.cost;
+            }
+            expansions++;
+            expand(state, upperBound);
+            // in beam search the maximum number of open paths
+            // is limited to s
+            if (s < Integer.MAX_VALUE && size > 2L * s) {
+                Arrays.sort(heap, 0, size, ORDER);
+                Arrays.fill(heap, s, size, null);
+                size = s;
+            }
+        }
+        return upperBound;
+    }
+    
+    long getExpansions() {
+        return expansions;
+    }
+    
+    private void expand(State state, double upperBound) {
+        int depth = state.depth, unused = 0;
+        double cost;
+        
+        restore(state);
+        for (int v = 0; v < n2; v++) {
+            if (inverseMatching[v] == UNMAPPED) {
+                unused++;
+            }
+        }
+        if (depth == n1) {
+            // no nodes left in g1, the remaining nodes of g2 are inserted
+            cost = state.cost;
+            for (int v = 0; v < n2; v++) {
+                if (inverseMatching[v] == UNMAPPED) {
+                    inverseMatching[v] = DELETED;
+                    cost += nodeCost + adjacentEdges(inverseMatching, g2, v) * edgeCost * factor;
+                }
+            }
+            offer(new State(state, depth, UNMAPPED, cost, cost, sequence++, true), upperBound);
+        } else if (unused == 0) {
+            // all nodes of g2 are processed, the remaining nodes of g1 are deleted
+            cost = state.cost;
+            for (int u = depth; u < n1; u++) {
+                matching[u] = DELETED;
+                cost += nodeCost + adjacentEdges(matching, g1, u) * edgeCost * factor;
+            }
+            offer(new State(state, n1, DELETED, cost, cost, sequence++, true), upperBound);
+        } else {
+            for (int v = 0; v < n2; v++) {
+                if (inverseMatching[v] == UNMAPPED) {
+                    matching[depth] = v;
+                    inverseMatching[v] = depth;
+                    cost = state.cost + CostFunction.getCost(g1.getNodeLabel(depth), g2.getNodeLabel(v)) + substitutionEdgeCost(depth, v);
+                    offer(new State(state, depth + 1, v, cost, cost + heuristic(depth + 1), sequence++, false), upperBound);
+                    inverseMatching[v] = UNMAPPED;
+                }
+            }
+            // deletion of a node from g_1 is also a valid successor
+            matching[depth] = DELETED;
+            cost = state.cost + nodeCost + adjacentEdges(matching, g1, depth) * edgeCost * factor;
+            offer(new State(state, depth + 1, DELETED, cost, cost + heuristic(depth + 1), sequence++, false), upperBound);
+        }
+    }
+    
+    /*
+     * Rebuild the mapping of the path ending in state
+     */
+    private void restore(State state) {
+        Arrays.fill(matching, UNMAPPED);
+        Arrays.fill(inverseMatching, UNMAPPED);
+        for (State s = state; s.parent != null; s = s.parent) {
+            if (s.depth - s.parent.depth == 1) {
+                matching[s.parent.depth] = s.mapped;
+                if (s.mapped >= 0) {
+                    inverseMatching[s.mapped] = s.parent.depth;
+                }
+            } else {
+                for (int u = s.parent.depth; u < s.depth; u++) {
+                    matching[u] = DELETED;
+                }
+            }
+        }
+    }
+    
+    /*
+     * Cost of the edges between n1 (mapped to n2) and the processed nodes, 
+     * every edge is charged when its second end is processed
+     */
+    private double substitutionEdgeCost(int n1, int n2) {
+        double cost = 0;
+        for (int e = 0; e < this.n1; e++) {
+            if (matching[e] != UNMAPPED) {
+                cost += edgePairCost(g1.getEdge(n1, e), matching[e] >= 0 ? g2.getEdge(n2, matching[e]) : -1, matching[e] >= 0);
+                cost += edgePairCost(g1.getEdge(e, n1), matching[e] >= 0 ? g2.getEdge(matching[e], n2) : -1, matching[e] >= 0);
+            }
+        }
+        return cost; 
+    }
+    
+    private double edgePairCost(int edge1, int edge2, boolean substituted) {
+        if (edge1 != -1) {
+            if (substituted && edge2 != -1) {
+                return CostFunction.getCost(g1.getEdgeLabel(edge1), g2.getEdgeLabel(edge2)) * factor;
+            }
+            return edgeCost * factor;
+        } 
+        return edge2 != -1 ? edgeCost * factor : 0;
+    }
+    
+    /*
+     * Number of edges between node i and the processed nodes
+     */
+    private static int adjacentEdges(int[] m, Graph g, int i) {
+        int e = 0;
+        for (int j = 0; j < m.length; j++) {
+            if (m[j] != UNMAPPED) { // count edges only if other end has been processed
+                if (g.getEdge(i, j) != -1) {
+                    e += 1;
+                }
+                if (g.getEdge(j, i) != -1) {
+                    e += 1;
+                }
+            }
+        }
+        return e;
+    }
+    
+    /*
+     * Lower bound of the cost to complete the current mapping where the nodes 
+     * of g1 before depth are processed
+     */
+    private double heuristic(int depth) {
+        int r1 = n1 - depth, r2 = 0, common = 0;
+        double bound;
+        
+        Arrays.fill(nodeCounts, 0);
+        for (int u = depth; u < n1; u++) {
+            nodeCounts[nodeLabels1[u]]++;
+        }
+        for (int v = 0; v < n2; v++) {
+            if (inverseMatching[v] == UNMAPPED) {
+                r2++;
+                if (nodeCounts[nodeLabels2[v]]-- > 0) {
+                    common++;
+                }
+            }
+        }
+        bound = Math.abs(r1 - r2) * nodeCost + (Math.min(r1, r2) - common) * nodeSubstitution;
+        
+        r1 = 0; 
+        r2 = 0; 
+        common = 0;
+        Arrays.fill(edgeCounts, 0);
+        for (int e = 0; e < edgeLabels1.length; e++) {
+            if (g1.getNodeA(e) >= depth || g1.getNodeB(e) >= depth) {
+                r1++;
+                edgeCounts[edgeLabels1[e]]++;
+            }
+        }
+        for (int e = 0; e < edgeLabels2.length; e++) {
+            if (inverseMatching[g2.getNodeA(e)] == UNMAPPED || inverseMatching[g2.getNodeB(e)] == UNMAPPED) {
+                r2++;
+                if (edgeCounts[edgeLabels2[e]]-- > 0) {
+                    common++;
+                }
+            }
+        }
+        return bound + Math.abs(r1 - r2) * edgeCost + (Math.min(r1, r2) - common) * edgeSubstitution;
+    }
+    
+    private void offer(State state, double upperBound) {
+        if (state.estimate <= upperBound) {
+            push(state);
+        }
+    }
+    
+    private void push(State state) {
+        int i = size++, parent;
+        if (size > heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        while (i > 0) {
+            parent = (i - 1) >>> 1;
+            if (ORDER.compare(state, heap[parent]) >= 0) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = state;
+    }
+    
+    private State pop() {
+        State top = heap[0], last = heap[--size];
+        int i = 0, child;
+        heap[size] = null;
+        if (size > 0) {
+            while ((child = 2 * i + 1) < size) {
+                if (child + 1 < size && ORDER.compare(heap[child + 1], heap[child]) < 0) {
+                    child++;
+                }
+                if (ORDER.compare(last, heap[child]) <= 0) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+        }
+        return top;
+    }
+}
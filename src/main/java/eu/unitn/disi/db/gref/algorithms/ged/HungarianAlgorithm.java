@@ -216,6 +216,257 @@ public class HungarianAlgorithm {
 
     }
 
+    //*********************************************//
+    //FLAT VERSION WITH REUSABLE WORKSPACES        //
+    //*********************************************//
+    /*
+     * The methods below run the same steps on a square matrix stored row by 
+     * row in a double[] and keep the working arrays in the instance, so that 
+     * an instance reused (by a single thread) does not allocate once the 
+     * workspace is large enough. 
+     */
+    private int capacity;
+    private double[] wCost;
+    private int[] wMask;
+    private int[] wRowCover;
+    private int[] wColCover;
+    private int[] wPath;
+    private int[] wAssignment;
+    private int zeroRow, zeroCol;
+
+    private void ensureCapacity(int dim) {
+        if (dim > capacity) {
+            capacity = dim;
+            wCost = new double[dim * dim];
+            wMask = new int[dim * dim];
+            wRowCover = new int[dim];
+            wColCover = new int[dim];
+            wPath = new int[2 * (2 * dim + 1)];
+            wAssignment = new int[dim];
+        }
+    }
+
+    /**
+     * Solve the assignment problem on a square matrix stored in row-major order
+     * @param array the cost matrix (only the first dim*dim elements are used)
+     * @param dim the number of rows (and columns) 
+     * @return the column assigned to each row, the array is owned by this 
+     * instance and is valid until the next call
+     */
+    public int[] hgAlgorithm(double[] array, int dim) {
+        ensureCapacity(dim);
+        solve(array, dim);
+        return wAssignment;
+    }
+
+    /**
+     * @param array the cost matrix in row-major order
+     * @param dim the number of rows (and columns)
+     * @return the cost of the optimal assignment
+     */
+    public double hgAlgorithmOnlyCost(double[] array, int dim) {
+        double sum = 0;
+        ensureCapacity(dim);
+        solve(array, dim);
+        for (int i = 0; i < dim; i++) {
+            sum = sum + array[i * dim + wAssignment[i]];
+        }
+        return sum;
+    }
+
+    private void solve(double[] array, int dim) {
+        int size = dim * dim;
+        double maxCost = 0;
+        int step = 1;
+        
+        System.arraycopy(array, 0, wCost, 0, size);
+        Arrays.fill(wMask, 0, size, 0);
+        Arrays.fill(wRowCover, 0, dim, 0);
+        Arrays.fill(wColCover, 0, dim, 0);
+        for (int i = 0; i < size; i++) {
+            if (wCost[i] > maxCost) {
+                maxCost = wCost[i];
+            }
+        }
+        while (step != 7 && dim > 0) {
+            switch (step) {
+                case 1:
+                    step = step1(dim);
+                    break;
+                case 2:
+                    step = step2(dim);
+                    break;
+                case 3:
+                    step = step3(dim);
+                    break;
+                case 4:
+                    step = step4(dim);
+                    break;
+                case 5:
+                    step = step5(dim);
+                    break;
+                case 6:
+                    step = step6(dim, maxCost);
+                    break;
+            }
+        }
+        for (int i = 0; i < dim; i++) {
+            wAssignment[i] = 0;
+            for (int j = 0; j < dim; j++) {
+                if (wMask[i * dim + j] == 1) {
+                    wAssignment[i] = j;
+                }
+            }
+        }
+    }
+
+    private int step1(int dim) {
+        double minval;
+        for (int i = 0, row = 0; i < dim; i++, row += dim) {
+            minval = wCost[row];
+            for (int j = 0; j < dim; j++) {
+                if (minval > wCost[row + j]) {
+                    minval = wCost[row + j];
+                }
+            }
+            for (int j = 0; j < dim; j++) {
+                wCost[row + j] = wCost[row + j] - minval;
+            }
+        }
+        return 2;
+    }
+
+    private int step2(int dim) {
+        for (int i = 0; i < dim; i++) {
+            for (int j = 0; j < dim; j++) {
+                if (wCost[i * dim + j] == 0 && wColCover[j] == 0 && wRowCover[i] == 0) {
+                    wMask[i * dim + j] = 1;
+                    wColCover[j] = 1;
+                    wRowCover[i] = 1;
+                }
+            }
+        }
+        Arrays.fill(wRowCover, 0, dim, 0);
+        Arrays.fill(wColCover, 0, dim, 0);
+        return 3;
+    }
+
+    private int step3(int dim) {
+        int count = 0;
+        for (int i = 0; i < dim * dim; i++) {
+            if (wMask[i] == 1) {
+                wColCover[i % dim] = 1;
+            }
+        }
+        for (int j = 0; j < dim; j++) {
+            count = count + wColCover[j];
+        }
+        return count >= dim ? 7 : 4;
+    }
+
+    private int step4(int dim) {
+        int r, c, star;
+        while (true) {
+            //Find the last uncovered zero in the first row that has one
+            r = -1;
+            c = 0;
+            for (int i = 0; i < dim && r == -1; i++) {
+                if (wRowCover[i] == 0) {
+                    for (int j = 0; j < dim; j++) {
+                        if (wCost[i * dim + j] == 0 && wColCover[j] == 0) {
+                            r = i;
+                            c = j;
+                        }
+                    }
+                }
+            }
+            if (r == -1) {
+                return 6;
+            }
+            wMask[r * dim + c] = 2;
+            star = -1;
+            for (int j = 0; j < dim; j++) {
+                if (wMask[r * dim + j] == 1) {
+                    star = j;
+                }
+            }
+            if (star != -1) {
+                wRowCover[r] = 1;
+                wColCover[star] = 0;
+            } else {
+                zeroRow = r;
+                zeroCol = c;
+                return 5;
+            }
+        }
+    }
+
+    private int step5(int dim) {
+        int count = 0, r, c;
+        wPath[0] = zeroRow;
+        wPath[1] = zeroCol;
+        while (true) {
+            r = -1;
+            c = wPath[2 * count + 1];
+            for (int i = 0; i < dim; i++) {
+                if (wMask[i * dim + c] == 1) {
+                    r = i;
+                }
+            }
+            if (r < 0) {
+                break;
+            }
+            count++;
+            wPath[2 * count] = r;
+            wPath[2 * count + 1] = c;
+            c = -1;
+            for (int j = 0; j < dim; j++) {
+                if (wMask[r * dim + j] == 2) {
+                    c = j;
+                }
+            }
+            count++;
+            wPath[2 * count] = r;
+            wPath[2 * count + 1] = c;
+        }
+        for (int i = 0; i <= count; i++) {
+            int cell = wPath[2 * i] * dim + wPath[2 * i + 1];
+            wMask[cell] = wMask[cell] == 1 ? 0 : 1;
+        }
+        Arrays.fill(wRowCover, 0, dim, 0);
+        Arrays.fill(wColCover, 0, dim, 0);
+        for (int i = 0; i < dim * dim; i++) {
+            if (wMask[i] == 2) {
+                wMask[i] = 0;
+            }
+        }
+        return 3;
+    }
+
+    private int step6(int dim, double maxCost) {
+        double minval = maxCost;
+        for (int i = 0; i < dim; i++) {
+            if (wRowCover[i] == 0) {
+                for (int j = 0; j < dim; j++) {
+                    if (wColCover[j] == 0 && minval > wCost[i * dim + j]) {
+                        minval = wCost[i * dim + j];
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < dim; i++) {
+            for (int j = 0; j < dim; j++) {
+                if (wRowCover[i] == 1) {
+                    wCost[i * dim + j] = wCost[i * dim + j] + minval;
+                }
+                if (wColCover[j] == 0) {
+                    wCost[i * dim + j] = wCost[i * dim + j] - minval;
+                }
+            }
+        }
+        return 4;
+    }
+
     public static int hg_step1(int step, double[][] cost) {
 		//What STEP 1 does:
         //For each row of the cost matrix, find the smallest element
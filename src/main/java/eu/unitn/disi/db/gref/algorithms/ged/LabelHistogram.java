@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.unitn.disi.db.gref.algorithms.ged;
+
+import de.parmol.graph.Graph;
+import java.util.Arrays;
+
+/**
+ * Sorted multisets of the node and edge labels of a graph, used to compute 
+ * lower bounds of the graph edit distance in linear time. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class LabelHistogram {
+    private final int[] nodeLabels; 
+    private final int[] edgeLabels;
+
+    public LabelHistogram(Graph g) {
+        nodeLabels = new int[g.getNodeCount()];
+        edgeLabels = new int[g.getEdgeCount()];
+        for (int i = 0; i < nodeLabels.length; i++) {
+            nodeLabels[i] = g.getNodeLabel(i);
+        }
+        for (int i = 0; i < edgeLabels.length; i++) {
+            edgeLabels[i] = g.getEdgeLabel(i);
+        }
+        Arrays.sort(nodeLabels);
+        Arrays.sort(edgeLabels);
+    }
+
+    public int getNodeCount() {
+        return nodeLabels.length;
+    }
+
+    public int getEdgeCount() {
+        return edgeLabels.length;
+    }
+    
+    /**
+     * Lower bound of the edit distance between the graphs of the two histograms: 
+     * every node (edge) in excess is deleted or inserted and every other node
+     * (edge) whose label is not shared is at least substituted. 
+     * @param other the histogram of the other graph
+     * @return a lower bound of the edit distance
+     */
+    public double lowerBound(LabelHistogram other) {
+        return lowerBound(nodeLabels, other.nodeLabels, CostFunction.getNodeCosts()) 
+                + lowerBound(edgeLabels, other.edgeLabels, CostFunction.getEdgeCosts());
+    }
+    
+    private static double lowerBound(int[] l1, int[] l2, double indelCost) {
+        int small = Math.min(l1.length, l2.length);
+        int common = common(l1, l2);
+        return Math.abs(l1.length - l2.length) * indelCost 
+                + (small - common) * Math.min(CostFunction.getSubstitutionCosts(), 2 * indelCost);
+    }
+    
+    /*
+     * Size of the intersection of two sorted multisets
+     */
+    private static int common(int[] l1, int[] l2) {
+        int i = 0, j = 0, common = 0;
+        while (i < l1.length && j < l2.length) {
+            if (l1[i] < l2[j]) {
+                i++;
+            } else if (l1[i] > l2[j]) {
+                j++;
+            } else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+        return common;
+    }
+}
@@ -73,134 +73,162 @@ public class MatrixGenerator {
         this.decFormat.applyPattern("0.00000");
     }
 
+    /**
+     * cost matrix and edge matrix workspaces, reused among the calls
+     */
+    private double[] matrix = new double[0];
+    private double[] edgeMatrix = new double[0];
+    
+    /*
+     * Edge matrices up to this dimension are solved by enumerating the 
+     * permutations instead of running the Hungarian algorithm
+     */
+    private static final int SMALL_EDGE_MATRIX = 4;
+    private final int[] permutation = new int[SMALL_EDGE_MATRIX];
+
     /**
      * @return the cost matrix for two graphs @param sourceGraph and @param
      * targetGraph | | | c_i,j | del |_________|______ | | | ins |	0 | |
      *
      */
     public double[][] getMatrix(Graph sourceGraph, Graph targetGraph) {
+        int dim = sourceGraph.getNodeCount() + targetGraph.getNodeCount();
+        double[] flat = getCostMatrix(sourceGraph, targetGraph);
+        double[][] costs = new double[dim][dim];
+        for (int i = 0; i < dim; i++) {
+            System.arraycopy(flat, i * dim, costs[i], 0, dim);
+        }
+        return costs;
+    }
+
+    /**
+     * Same as {@link #getMatrix(de.parmol.graph.Graph, de.parmol.graph.Graph)}
+     * but the (s+t) x (s+t) matrix is returned in row-major order in an array
+     * owned by this generator, which is overwritten by the next call. 
+     * @param sourceGraph
+     * @param targetGraph
+     * @return the cost matrix in row-major order (the array can be longer 
+     * than (s+t)^2)
+     */
+    public double[] getCostMatrix(Graph sourceGraph, Graph targetGraph) {
         this.source = sourceGraph;
         this.target = targetGraph;
         int sSize = sourceGraph.getNodeCount();
         int tSize = targetGraph.getNodeCount();
         int dim = sSize + tSize;
-        double[][] matrix = new double[dim][dim];
-        double[][] edgeMatrix;
-        //int u;
-        //int v;
+        if (matrix.length < dim * dim) {
+            matrix = new double[dim * dim];
+        }
         
         for (int i = 0; i < sSize; i++) {
-            //u = this.source.getNode(i);
             for (int j = 0; j < tSize; j++) {
-                //v = this.target.getNode(j);
                 double costs = CostFunction.getCost(source.getNodeLabel(i), target.getNodeLabel(j));
                 // adjacency information is added to the node costs
-                edgeMatrix = this.getEdgeMatrix(i, j);
-                costs += this.ha.hgAlgorithmOnlyCost(edgeMatrix);
-                matrix[i][j] = costs;
+                costs += this.getEdgeCost(i, j);
+                matrix[i * dim + j] = costs;
             }
         }
         for (int i = sSize; i < dim; i++) {
             for (int j = 0; j < tSize; j++) {
                 if ((i - sSize) == j) {
-                    //v = (Node) this.target.get(j);
                     double costs = CostFunction.getNodeCosts();
-                    double f = target.getDegree(j);//v.getEdges().size();
+                    double f = target.getDegree(j);
                     costs += (f * CostFunction.getEdgeCosts());
-                    matrix[i][j] = costs;
+                    matrix[i * dim + j] = costs;
                 } else {
-                    matrix[i][j] = Double.POSITIVE_INFINITY;
+                    matrix[i * dim + j] = Double.POSITIVE_INFINITY;
                 }
             }
         }
         for (int i = 0; i < sSize; i++) {
-            //u = (Node) this.source.get(i);
             for (int j = tSize; j < dim; j++) {
                 if ((j - tSize) == i) {
-                    double costs = CostFunction.getNodeCosts();;
-                    double f = source.getDegree(i);//u.getEdges().size();
+                    double costs = CostFunction.getNodeCosts();
+                    double f = source.getDegree(i);
                     costs += (f * CostFunction.getEdgeCosts());
-                    matrix[i][j] = costs;
+                    matrix[i * dim + j] = costs;
                 } else {
-                    matrix[i][j] = Double.POSITIVE_INFINITY;
+                    matrix[i * dim + j] = Double.POSITIVE_INFINITY;
                 }
             }
         }
         for (int i = sSize; i < dim; i++) {
             for (int j = tSize; j < dim; j++) {
-                matrix[i][j] = 0.0;
+                matrix[i * dim + j] = 0.0;
             }
         }
-//        if (this.outputCostMatrix == 1) {
-//            System.out.println("\nThe Cost Matrix:");
-//            for (int k = 0; k < matrix.length; k++) {
-//                for (int l = 0; l < matrix[0].length; l++) {
-//                    if (matrix[k][l] < Double.POSITIVE_INFINITY) {
-//                        System.out.print(decFormat.format(matrix[k][l]) + "\t");
-//
-//                    } else {
-//                        System.out.print("infty\t");
-//                    }
-//
-//                }
-//                System.out.println();
-//            }
-//        }
         return matrix;
     }
 
     /**
-     * @return the cost matrix for the edge operations between the nodes @param
-     * u
-     * @param v
+     * @return the cost of the optimal assignment of the edges of node @param u
+     * to the edges of node @param v
      */
-    private double[][] getEdgeMatrix(int u, int v) {
+    private double getEdgeCost(int u, int v) {
         int uSize = source.getDegree(u);
         int vSize = target.getDegree(v);
         int dim = uSize + vSize;
-        double[][] edgeMatrix = new double[dim][dim];
+        
+        // with no edges on one side every edge is inserted or deleted
+        if (uSize == 0 || vSize == 0) {
+            return dim * CostFunction.getEdgeCosts();
+        }
+        if (edgeMatrix.length < dim * dim) {
+            edgeMatrix = new double[dim * dim];
+        }
         int e_u;
         int e_v;
         for (int i = 0; i < uSize; i++) {
             e_u = source.getNodeEdge(u, i);
-            //(Edge) u.getEdges().get(i);
             for (int j = 0; j < vSize; j++) {
                 e_v = target.getNodeEdge(v, j);
-                //(Edge) v.getEdges().get(j);
-                double costs = CostFunction.getCost(e_u, e_v);
-                edgeMatrix[i][j] = costs;
+                edgeMatrix[i * dim + j] = CostFunction.getCost(e_u, e_v);
             }
         }
         for (int i = uSize; i < dim; i++) {
             for (int j = 0; j < vSize; j++) {
                 // diagonal
-                if ((i - uSize) == j) {
-                    e_v = target.getNodeEdge(v,j);
-                    double costs = CostFunction.getEdgeCosts();
-                    edgeMatrix[i][j] = costs;
-                } else {
-                    edgeMatrix[i][j] = Double.POSITIVE_INFINITY;
-                }
+                edgeMatrix[i * dim + j] = (i - uSize) == j ? CostFunction.getEdgeCosts() : Double.POSITIVE_INFINITY;
             }
         }
         for (int i = 0; i < uSize; i++) {
-            e_u = source.getNodeEdge(u, i);
-            //(Edge) u.getEdges().get(i);
             for (int j = vSize; j < dim; j++) {
                 // diagonal
-                if ((j - vSize) == i) {
-                    double costs = CostFunction.getEdgeCosts();
-                    edgeMatrix[i][j] = costs;
-                } else {
-                    edgeMatrix[i][j] = Double.POSITIVE_INFINITY;
-                }
+                edgeMatrix[i * dim + j] = (j - vSize) == i ? CostFunction.getEdgeCosts() : Double.POSITIVE_INFINITY;
             }
         }
         for (int i = uSize; i < dim; i++) {
             for (int j = vSize; j < dim; j++) {
-                edgeMatrix[i][j] = 0.0;
+                edgeMatrix[i * dim + j] = 0.0;
+            }
+        }
+        if (dim <= SMALL_EDGE_MATRIX) {
+            for (int i = 0; i < dim; i++) {
+                permutation[i] = i;
+            }
+            return minPermutationCost(dim, 0, 0.0, Double.POSITIVE_INFINITY);
+        }
+        return this.ha.hgAlgorithmOnlyCost(edgeMatrix, dim);
+    }
+    
+    /**
+     * Exhaustive search of the cheapest assignment for tiny edge matrices
+     */
+    private double minPermutationCost(int dim, int row, double partial, double best) {
+        if (row == dim) {
+            return partial < best ? partial : best;
+        }
+        for (int i = row; i < dim; i++) {
+            int tmp = permutation[row];
+            permutation[row] = permutation[i];
+            permutation[i] = tmp;
+            double cost = partial + edgeMatrix[row * dim + permutation[row]];
+            if (cost < best) {
+                best = minPermutationCost(dim, row + 1, cost, best);
             }
+            permutation[i] = permutation[row];
+            permutation[row] = tmp;
         }
-        return edgeMatrix;
+        return best;
     }
 }
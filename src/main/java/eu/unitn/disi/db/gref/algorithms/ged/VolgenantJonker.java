@@ -45,16 +45,67 @@ public class VolgenantJonker {
     int[] rowsol;
     int[] colsol;
 
+    /*
+     * Workspaces reused among the calls, they only grow
+     */
+    private int capacity;
+    private double[] wCost;
+    private double[] wU;
+    private double[] wV;
+    private double[] wD;
+    private int[] wFree;
+    private int[] wCollist;
+    private int[] wMatches;
+    private int[] wPred;
+    
+    private void ensureCapacity(int dim) {
+        if (dim > capacity) {
+            capacity = dim;
+            wCost = new double[dim * dim];
+            wU = new double[dim];
+            wV = new double[dim];
+            wD = new double[dim];
+            wFree = new int[dim];
+            wCollist = new int[dim];
+            wMatches = new int[dim];
+            wPred = new int[dim];
+            rowsol = new int[dim];
+            colsol = new int[dim];
+        }
+    }
+
     public double computeAssignment(double[][] costMatrix) {
         int dim = costMatrix.length;
-        rowsol = new int[dim];
-        colsol = new int[dim];
-        double[] u = new double[dim];
-        double[] v = new double[dim];
-        return this.lap(dim, costMatrix, rowsol, colsol, u, v);
+        ensureCapacity(dim);
+        for (int i = 0; i < dim; i++) {
+            System.arraycopy(costMatrix[i], 0, wCost, i * dim, dim);
+        }
+        return this.lap(dim, wCost, rowsol, colsol, wU, wV);
+    }
+
+    /**
+     * Compute the assignment of a square cost matrix stored in row-major order
+     * reusing the internal workspaces. The solution is available in 
+     * {@link #getAssignment()} (only the first dim elements are meaningful). 
+     * @param costMatrix the cost matrix (only the first dim*dim elements are used)
+     * @param dim the number of rows (and columns)
+     * @return the cost of the optimal assignment
+     */
+    public double computeAssignment(double[] costMatrix, int dim) {
+        ensureCapacity(dim);
+        return this.lap(dim, costMatrix, rowsol, colsol, wU, wV);
     }
 
     public double lap(int dim, double[][] assigncost, int[] rowsol, int[] colsol,
+            double[] u, double[] v) {
+        ensureCapacity(dim);
+        for (int i = 0; i < dim; i++) {
+            System.arraycopy(assigncost[i], 0, wCost, i * dim, dim);
+        }
+        return lap(dim, wCost, rowsol, colsol, u, v);
+    }
+
+    private double lap(int dim, double[] assigncost, int[] rowsol, int[] colsol,
             double[] u, double[] v) // input:
     // dim - problem size
     // assigncost - cost matrix
@@ -76,13 +127,13 @@ public class VolgenantJonker {
         double h, umin;
         double usubmin, v2;
 
-        free = new int[dim]; // list of unassigned rows.
-        collist = new int[dim]; // list of columns to be scanned in various
+        free = wFree; // list of unassigned rows.
+        collist = wCollist; // list of columns to be scanned in various
         // ways.
-        matches = new int[dim]; // counts how many times a row could be
+        matches = wMatches; // counts how many times a row could be
         // assigned.
-        d = new double[dim]; // 'cost-distance' in augmenting path calculation.
-        pred = new int[dim]; // row-predecessor of column in
+        d = wD; // 'cost-distance' in augmenting path calculation.
+        pred = wPred; // row-predecessor of column in
         // augmenting/alternating path.
 
         // init how many times a row will be assigned in the column reduction.
@@ -94,11 +145,11 @@ public class VolgenantJonker {
         for (j = dim - 1; j >= 0; j--) // reverse order gives better results.
         {
             // find minimum cost over rows.
-            min = assigncost[0][j];
+            min = assigncost[j];
             imin = 0;
             for (i = 1; i < dim; i++) {
-                if (assigncost[i][j] < min) {
-                    min = assigncost[i][j];
+                if (assigncost[i * dim + j] < min) {
+                    min = assigncost[i * dim + j];
                     imin = i;
                 }
             }
@@ -125,8 +176,8 @@ public class VolgenantJonker {
                 min = BIG;
                 for (j = 0; j < dim; j++) {
                     if (j != j1) {
-                        if (assigncost[i][j] - v[j] < min) {
-                            min = assigncost[i][j] - v[j];
+                        if (assigncost[i * dim + j] - v[j] < min) {
+                            min = assigncost[i * dim + j] - v[j];
                         }
                     }
                 }
@@ -151,11 +202,11 @@ public class VolgenantJonker {
                 k++;
 
                 // find minimum and second minimum reduced cost over columns.
-                umin = assigncost[i][0] - v[0];
+                umin = assigncost[i * dim] - v[0];
                 j1 = 0;
                 usubmin = BIG;
                 for (j = 1; j < dim; j++) {
-                    h = assigncost[i][j] - v[j];
+                    h = assigncost[i * dim + j] - v[j];
                     if (h < usubmin) {
                         if (h >= umin) {
                             usubmin = h;
@@ -211,7 +262,7 @@ public class VolgenantJonker {
 				// Dijkstra shortest path algorithm.
             // runs until unassigned column added to shortest path tree.
             for (j = 0; j < dim; j++) {
-                d[j] = assigncost[freerow][j] - v[j];
+                d[j] = assigncost[freerow * dim + j] - v[j];
                 pred[j] = freerow;
                 collist[j] = j; // init column list.
             }
@@ -267,11 +318,11 @@ public class VolgenantJonker {
                     j1 = collist[low];
                     low++;
                     i = colsol[j1];
-                    h = assigncost[i][j1] - v[j1] - min;
+                    h = assigncost[i * dim + j1] - v[j1] - min;
 
                     for (k = up; k < dim; k++) {
                         j = collist[k];
-                        v2 = assigncost[i][j] - v[j] - h;
+                        v2 = assigncost[i * dim + j] - v[j] - h;
                         if (v2 < d[j]) {
                             pred[j] = i;
                             if (v2 == min) // new column found at same minimum
@@ -315,17 +366,10 @@ public class VolgenantJonker {
         double lapcost = 0;
         for (i = 0; i < dim; i++) {
             j = rowsol[i];
-            u[i] = assigncost[i][j] - v[j];
-            lapcost = lapcost + assigncost[i][j];
+            u[i] = assigncost[i * dim + j] - v[j];
+            lapcost = lapcost + assigncost[i * dim + j];
         }
 
-        // free reserved memory.
-        pred = null;
-        free = null;
-        collist = null;
-        matches = null;
-        d = null;
-
         return lapcost;
     }
 
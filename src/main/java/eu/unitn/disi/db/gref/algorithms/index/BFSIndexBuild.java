@@ -31,12 +31,11 @@ import de.parmol.graph.GraphFactory;
 import de.parmol.graph.MutableGraph;
 import de.parmol.parsers.GraphParser;
 import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
+import eu.unitn.disi.db.gref.utils.collections.IntHashSet;
+import eu.unitn.disi.db.gref.utils.collections.IntIntHashMap;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 /**
  *
@@ -60,8 +59,8 @@ public class BFSIndexBuild extends AbstractMiner {
         GraphParser parser = m_settings.parser;
         m_settings.directedSearch = parser.directed();
         Graph graph;
-        Set<Integer> candidates; 
-        Map<Integer, Integer> mapping; 
+        IntHashSet candidates, mappedEdges; 
+        IntIntHashMap mapping; 
         
         int nodeA, nodeB; 
         int mappedNodeA, mappedNodeB; 
@@ -91,13 +90,15 @@ public class BFSIndexBuild extends AbstractMiner {
                     }
                 }
                 query.addResult(graph.getID());
-                candidates = new HashSet<>();
+                candidates = new IntHashSet(2);
                 candidates.add(nodeA);
                 candidates.add(nodeB);
                 query.addCandidates(candidates);
-                query.addMappedEdges(new HashSet<>(Collections.singleton(edge)));
+                mappedEdges = new IntHashSet(1);
+                mappedEdges.add(edge);
+                query.addMappedEdges(mappedEdges);
                 query.addMapping(null);
-                mapping = new HashMap<>();
+                mapping = new IntIntHashMap(2);
                 mapping.put(nodeA, mappedNodeA);
                 mapping.put(nodeB, mappedNodeB);
                 query.addMapping(mapping);
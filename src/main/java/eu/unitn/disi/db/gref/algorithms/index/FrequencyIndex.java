@@ -41,6 +41,11 @@ import java.util.Set;
 public class FrequencyIndex extends ReformulationLattice implements Serializable {
     private float minSupport; 
     private Map<Integer,Set<ReformulatedQuery>> invertedIndex;      
+    /*
+     * Non-closed reformulations, they can be found but are not selectable 
+     * (null if the index is not closed)
+     */
+    private Map<Query,ReformulatedQuery> collapsed; 
     private static final Graph EMPTY = MyFactory.getDFSCoder().parse("<0 -1 -1 -1 -1>", MyFactory.getGraphFactory());
     
     private FrequencyIndex(Query query) {
@@ -56,6 +61,10 @@ public class FrequencyIndex extends ReformulationLattice implements Serializable
     public void addReformulation(ReformulatedQuery query) throws NullPointerException {
         super.addReformulation(query);
         Set<ReformulatedQuery> reformulations; 
+        if (collapsed != null && collapsed.containsKey(query)) { //A duplicate stays collapsed
+            removeReformulation(query);
+            return;
+        }
         for (Integer res : query.getResults()) { //Update the inverted index
             reformulations = invertedIndex.get(res);
             if (reformulations == null) {
@@ -70,6 +79,48 @@ public class FrequencyIndex extends ReformulationLattice implements Serializable
         father.addQuery(query);
         addReformulation(query);
     }
+    
+    /**
+     * Collapse a reformulation into the child having the same results: it 
+     * leaves the selectable reformulations and the inverted index but it can 
+     * still be found (e.g. as the input query)
+     * @param query a non-closed reformulation
+     */
+    public void collapse(ReformulatedQuery query) {
+        Set<ReformulatedQuery> reformulations; 
+        if (collapsed == null) {
+            collapsed = new HashMap<>();
+        }
+        hideReformulation(query);
+        collapsed.put(query, query);
+        for (Integer res : query.getResults()) {
+            reformulations = invertedIndex.get(res);
+            if (reformulations != null) {
+                reformulations.remove(query);
+            }
+        }
+    }
+
+    @Override
+    public ReformulatedQuery findReformulation(Query query) throws NullPointerException {
+        ReformulatedQuery reformulation = super.findReformulation(query);
+        if (reformulation == null && collapsed != null) {
+            reformulation = collapsed.get(query);
+        }
+        return reformulation;
+    }
+
+    @Override
+    public boolean containsReformulation(Query query) throws NullPointerException {
+        return super.containsReformulation(query) || (collapsed != null && collapsed.containsKey(query));
+    }
+    
+    /**
+     * @return the number of non-closed reformulations collapsed
+     */
+    public int getCollapsed() {
+        return collapsed == null? 0 : collapsed.size();
+    }
 
     public float getMinSupport() {
         return minSupport;
@@ -42,6 +42,7 @@ import java.util.Iterator;
 public class GIndexBuild extends GindexMiner {
     private FrequencyIndex index; //Create the index. 
     private float[] minFrequency; 
+    private boolean closed; 
     
     public GIndexBuild(Settings settings) {
         super(settings);
@@ -64,6 +65,9 @@ public class GIndexBuild extends GindexMiner {
             this.numberOfPatterns++;
             currentQuery = graphSetToReformulatedQuery(code.toFragment());
             index.addReformulation(root, currentQuery);
+            if (closed) {
+                index.internResults(currentQuery);
+            }
             // current edge
             long time = System.currentTimeMillis();
             // Debug.print(1, "doing seed " +
@@ -128,6 +132,9 @@ public class GIndexBuild extends GindexMiner {
                         || (next.isFrequent(minFrequency))) { //Its a frequent child
                     child = graphSetToReformulatedQuery(next.toFragment());
                     index.addReformulation(currentQuery, child);
+                    if (closed) {
+                        index.internResults(child);
+                    }
                     float[] a = subgraph_Mining(next, child);
                     max = getMax(max, a);
                 } else {
@@ -137,6 +144,11 @@ public class GIndexBuild extends GindexMiner {
         } else {
             Debug.println(1,"Code " + code.toString(m_settings.serializer) + " discharded because too big");
         }
+        //The children are complete, the reformulation is equivalent to the 
+        //one having its results
+        if (closed && !currentQuery.isClosed()) {
+            index.collapse(currentQuery);
+        }
         //Closure
         if ((/*!m_settings.closedFragmentsOnly || */max == empty || unequal(my, max))
                 && m_settings.checkReportingConstraints(code.getSubgraph(),
@@ -149,6 +161,15 @@ public class GIndexBuild extends GindexMiner {
         return my;
     }
 
+    /**
+     * Keep only the closed reformulations selectable, the ones having a child
+     * with the same results are collapsed and their results shared
+     * @param closed true to build a closed index
+     */
+    public void setClosed(boolean closed) {
+        this.closed = closed;
+    }
+
     public FrequencyIndex getIndex() {
         return index;
     }
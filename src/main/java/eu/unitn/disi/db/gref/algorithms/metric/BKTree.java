@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.unitn.disi.db.gref.algorithms.metric;
+
+import de.parmol.graph.Graph;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Burkhard-Keller tree [1] where graphs can be added one at a time. The 
+ * children of a node are keyed by their distance from it, discretized in 
+ * multiples of {@link #QUANTUM} (edit costs are multiples of it, so the keys 
+ * are exact). 
+ * 
+ * Queries can run concurrently as long as no graph is being added. 
+ * 
+ * [1] Some approaches to best-match file searching (1973) by W. A. Burkhard 
+ * and R. M. Keller
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class BKTree extends MetricIndex {
+    private static final long serialVersionUID = 1L;
+    
+    public static final double QUANTUM = 0.25;
+    
+    private static class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final int id; 
+        final TreeMap<Integer, Node> children = new TreeMap<Integer, Node>();
+
+        Node(int id) {
+            this.id = id;
+        }
+    }
+    
+    private Node root; 
+    private int size; 
+
+    /**
+     * Create an empty tree 
+     * @param db the graph database (graphs are added with {@link #add(int)})
+     * @param metric the distance between graphs
+     */
+    public BKTree(Graph[] db, GraphMetric metric) {
+        super(db, metric);
+    }
+    
+    private static int key(double distance) {
+        return (int) Math.round(distance / QUANTUM);
+    }
+    
+    /**
+     * Add a graph to the tree
+     * @param id the position of the graph in the database
+     */
+    public void add(int id) {
+        Node node = root, child;
+        int key;
+        size++;
+        if (root == null) {
+            root = new Node(id);
+            return;
+        }
+        while (true) {
+            key = key(distance(db[id], node.id));
+            child = node.children.get(key);
+            if (child == null) {
+                node.children.put(key, new Node(id));
+                return;
+            }
+            node = child;
+        }
+    }
+    
+    @Override
+    public List<Neighbor> range(Graph query, double radius) {
+        List<Neighbor> results = new ArrayList<Neighbor>();
+        List<Node> toVisit = new ArrayList<Node>();
+        Node node;
+        double d;
+        
+        if (root != null) {
+            toVisit.add(root);
+        }
+        while (!toVisit.isEmpty()) {
+            node = toVisit.remove(toVisit.size() - 1);
+            d = distance(query, node.id);
+            if (d <= radius) {
+                results.add(new Neighbor(node.id, d));
+            }
+            toVisit.addAll(node.children.subMap(
+                    (int) Math.floor((d - radius) / QUANTUM), true, 
+                    (int) Math.ceil((d + radius) / QUANTUM), true).values());
+        }
+        return sorted(results);
+    }
+
+    @Override
+    public List<Neighbor> knn(Graph query, int k) {
+        PriorityQueue<Neighbor> best = newKnnQueue(k);
+        if (root != null && k > 0) {
+            knn(root, query, k, best);
+        }
+        return sorted(best);
+    }
+    
+    private void knn(Node node, Graph query, int k, PriorityQueue<Neighbor> best) {
+        double d = distance(query, node.id);
+        double tau = offer(best, k, new Neighbor(node.id, d));
+        int key = key(d);
+        //Visit the children closest to the query distance first
+        for (Map.Entry<Integer, Node> child : node.children.tailMap(key, true).entrySet()) {
+            if ((child.getKey() - key - 1) * QUANTUM > tau) {
+                break;
+            }
+            knn(child.getValue(), query, k, best);
+            tau = best.size() < k ? Double.POSITIVE_INFINITY : best.peek().getDistance();
+        }
+        for (Map.Entry<Integer, Node> child : node.children.headMap(key, false).descendingMap().entrySet()) {
+            if ((key - child.getKey() - 1) * QUANTUM > tau) {
+                break;
+            }
+            knn(child.getValue(), query, k, best);
+            tau = best.size() < k ? Double.POSITIVE_INFINITY : best.peek().getDistance();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.unitn.disi.db.gref.algorithms.metric;
+
+import de.parmol.graph.Graph;
+import eu.unitn.disi.db.gref.algorithms.ged.EditDistance;
+
+/**
+ * The approximate (bipartite) graph edit distance as a metric. The 
+ * approximation does not always satisfy the triangle inequality, so the 
+ * pruning of the indexes built on it can (rarely) miss a neighbor. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class EditDistanceMetric implements GraphMetric {
+    private final EditDistance.ApproximationType type;
+
+    public EditDistanceMetric(EditDistance.ApproximationType type) {
+        this.type = type;
+    }
+
+    public EditDistanceMetric() {
+        this(EditDistance.ApproximationType.HUNGARIAN);
+    }
+    
+    @Override
+    public double distance(Graph g1, Graph g2) {
+        return EditDistance.getApproximateEditDistance(g1, g2, type);
+    }
+}
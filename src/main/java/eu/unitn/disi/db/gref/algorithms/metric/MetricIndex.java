@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.unitn.disi.db.gref.algorithms.metric;
+
+import de.parmol.graph.Graph;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index over the graphs of a database (identified by their position in the 
+ * database array) answering range and k nearest neighbor queries with a 
+ * {@link GraphMetric}, pruning with the triangle inequality. 
+ * 
+ * Only the structure of the index is serialized: once loaded it must be 
+ * bound again to the same database and metric with 
+ * {@link #bind(de.parmol.graph.Graph[], eu.unitn.disi.db.gref.algorithms.metric.GraphMetric)}.
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public abstract class MetricIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    protected transient Graph[] db; 
+    protected transient GraphMetric metric;
+    private transient AtomicLong distanceComputations = new AtomicLong();
+    
+    protected MetricIndex(Graph[] db, GraphMetric metric) {
+        this.db = db;
+        this.metric = metric;
+    }
+    
+    /**
+     * @param query the query graph
+     * @param radius the maximum distance from the query
+     * @return the graphs within radius from the query, closest first
+     */
+    public abstract List<Neighbor> range(Graph query, double radius);
+    
+    /**
+     * @param query the query graph
+     * @param k the number of neighbors
+     * @return the k closest graphs to the query, closest first
+     */
+    public abstract List<Neighbor> knn(Graph query, int k);
+    
+    /**
+     * @return the number of indexed graphs
+     */
+    public abstract int size();
+    
+    protected double distance(Graph query, int id) {
+        distanceComputations.incrementAndGet();
+        return metric.distance(query, db[id]);
+    }
+    
+    /*
+     * Candidate result of a k-nn query, keeps the k closest seen so far and 
+     * returns the current pruning radius 
+     */
+    protected static double offer(PriorityQueue<Neighbor> best, int k, Neighbor candidate) {
+        if (best.size() < k) {
+            best.add(candidate);
+        } else if (candidate.compareTo(best.peek()) < 0) {
+            best.poll();
+            best.add(candidate);
+        }
+        return best.size() < k ? Double.POSITIVE_INFINITY : best.peek().getDistance();
+    }
+    
+    protected static PriorityQueue<Neighbor> newKnnQueue(int k) {
+        return new PriorityQueue<Neighbor>(Math.max(k, 1), Collections.reverseOrder());
+    }
+    
+    protected static List<Neighbor> sorted(java.util.Collection<Neighbor> neighbors) {
+        List<Neighbor> list = new ArrayList<Neighbor>(neighbors);
+        Collections.sort(list);
+        return list;
+    }
+    
+    /**
+     * @return the number of distances computed by the queries and the 
+     * insertions so far
+     */
+    public long getDistanceComputations() {
+        return distanceComputations.get();
+    }
+    
+    public void bind(Graph[] db, GraphMetric metric) {
+        this.db = db;
+        this.metric = metric;
+    }
+    
+    public void save(File file) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(this);
+        }
+    }
+    
+    /**
+     * Load an index saved with {@link #save(java.io.File)}
+     * @param file the index file
+     * @param db the database the index was built on
+     * @param metric the metric the index was built with
+     * @return the index bound to db and metric
+     * @throws IOException if the file cannot be read or is not an index
+     */
+    public static MetricIndex load(File file, Graph[] db, GraphMetric metric) throws IOException {
+        MetricIndex index; 
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            index = (MetricIndex) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("The file " + file + " is not a valid metric index", ex);
+        }
+        index.bind(db, metric);
+        return index;
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        distanceComputations = new AtomicLong();
+    }
+}
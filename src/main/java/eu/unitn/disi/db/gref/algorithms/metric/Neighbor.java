@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.unitn.disi.db.gref.algorithms.metric;
+
+/**
+ * A graph of the database (identified by its position) and its distance from
+ * a query
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class Neighbor implements Comparable<Neighbor> {
+    private final int id; 
+    private final double distance;
+
+    public Neighbor(int id, double distance) {
+        this.id = id;
+        this.distance = distance;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Closest first, ties broken by id
+     */
+    @Override
+    public int compareTo(Neighbor o) {
+        if (distance != o.distance) {
+            return distance < o.distance ? -1 : 1;
+        }
+        return id < o.id ? -1 : (id == o.id ? 0 : 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d (%.2f)", id, distance);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.unitn.disi.db.gref.algorithms.metric;
+
+import de.parmol.graph.Graph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Vantage point tree [1] built once over the whole database. Every node 
+ * splits the graphs of its subtree at the median distance from a vantage 
+ * graph: the closer half goes inside, the other outside (graphs at the median
+ * distance can be on both sides). The tree is stored in flat arrays.
+ * 
+ * [1] Data structures and algorithms for nearest neighbor search in general 
+ * metric spaces (1993) by P. N. Yianilos
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class VPTree extends MetricIndex {
+    private static final long serialVersionUID = 1L;
+    
+    private int[] vantage;
+    private double[] median; 
+    private int[] inside; 
+    private int[] outside;
+    private int nodes; 
+    private int root; 
+
+    /**
+     * Build the tree over all the graphs of the database
+     * @param db the graph database
+     * @param metric the distance between graphs
+     * @param seed seed for the choice of the vantage points
+     */
+    public VPTree(Graph[] db, GraphMetric metric, long seed) {
+        super(db, metric);
+        int[] ids = new int[db.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        vantage = new int[db.length];
+        median = new double[db.length];
+        inside = new int[db.length];
+        outside = new int[db.length];
+        root = build(ids, 0, ids.length, new double[db.length], new Random(seed));
+    }
+    
+    /*
+     * Build the subtree over ids[from, to), returns the node or -1 if empty
+     */
+    private int build(int[] ids, int from, int to, double[] distances, Random random) {
+        int node, pivot, mid, tmp;
+        if (from >= to) {
+            return -1;
+        }
+        node = nodes++;
+        //Move a random vantage point in the first position
+        pivot = from + random.nextInt(to - from);
+        tmp = ids[from];
+        ids[from] = ids[pivot];
+        ids[pivot] = tmp;
+        vantage[node] = ids[from];
+        if (to - from == 1) {
+            inside[node] = -1;
+            outside[node] = -1;
+            return node;
+        }
+        //Same order of the arguments as the queries, the approximate edit 
+        //distance is not always symmetric
+        for (int i = from + 1; i < to; i++) {
+            distances[ids[i]] = distance(db[ids[i]], ids[from]);
+        }
+        sortByDistance(ids, from + 1, to, distances);
+        mid = (from + 1 + to) >>> 1;
+        median[node] = distances[ids[mid]];
+        inside[node] = build(ids, from + 1, mid, distances, random);
+        outside[node] = build(ids, mid, to, distances, random);
+        return node;
+    }
+    
+    private static void sortByDistance(int[] ids, int from, int to, final double[] distances) {
+        Integer[] boxed = new Integer[to - from];
+        for (int i = from; i < to; i++) {
+            boxed[i - from] = ids[i];
+        }
+        Arrays.sort(boxed, new java.util.Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int c = Double.compare(distances[o1], distances[o2]);
+                return c != 0 ? c : o1.compareTo(o2);
+            }
+        });
+        for (int i = from; i < to; i++) {
+            ids[i] = boxed[i - from];
+        }
+    }
+
+    @Override
+    public List<Neighbor> range(Graph query, double radius) {
+        List<Neighbor> results = new ArrayList<Neighbor>();
+        range(root, query, radius, results);
+        return sorted(results);
+    }
+    
+    private void range(int node, Graph query, double radius, List<Neighbor> results) {
+        double d;
+        if (node == -1) {
+            return;
+        }
+        d = distance(query, vantage[node]);
+        if (d <= radius) {
+            results.add(new Neighbor(vantage[node], d));
+        }
+        if (d - radius <= median[node]) {
+            range(inside[node], query, radius, results);
+        }
+        if (d + radius >= median[node]) {
+            range(outside[node], query, radius, results);
+        }
+    }
+
+    @Override
+    public List<Neighbor> knn(Graph query, int k) {
+        PriorityQueue<Neighbor> best = newKnnQueue(k);
+        if (k > 0) {
+            knn(root, query, k, best);
+        }
+        return sorted(best);
+    }
+    
+    private void knn(int node, Graph query, int k, PriorityQueue<Neighbor> best) {
+        double d, tau;
+        if (node == -1) {
+            return;
+        }
+        d = distance(query, vantage[node]);
+        tau = offer(best, k, new Neighbor(vantage[node], d));
+        //Visit first the side of the query
+        if (d < median[node]) {
+            if (d - tau <= median[node]) {
+                knn(inside[node], query, k, best);
+                tau = best.size() < k ? Double.POSITIVE_INFINITY : best.peek().getDistance();
+            }
+            if (d + tau >= median[node]) {
+                knn(outside[node], query, k, best);
+            }
+        } else {
+            if (d + tau >= median[node]) {
+                knn(outside[node], query, k, best);
+                tau = best.size() < k ? Double.POSITIVE_INFINITY : best.peek().getDistance();
+            }
+            if (d - tau <= median[node]) {
+                knn(inside[node], query, k, best);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return nodes;
+    }
+}
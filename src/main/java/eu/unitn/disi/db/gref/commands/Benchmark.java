@@ -0,0 +1,588 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.commands;
+
+import de.parmol.graph.Graph;
+import de.parmol.graph.GraphFactory;
+import de.parmol.parsers.GraphParser;
+import edu.psu.chemxseer.structure.factory.MyFactory;
+import edu.psu.chemxseer.structure.iso.CanonicalDFS;
+import eu.unitn.disi.db.command.Command;
+import eu.unitn.disi.db.command.CommandInput;
+import eu.unitn.disi.db.command.ParametersNumber;
+import eu.unitn.disi.db.command.exceptions.ExecutionException;
+import eu.unitn.disi.db.gref.algorithms.LatticeAlgorithm;
+import eu.unitn.disi.db.gref.algorithms.LatticeLimitException;
+import eu.unitn.disi.db.gref.algorithms.QueryProcessing;
+import eu.unitn.disi.db.gref.algorithms.RefAlgorithm;
+import eu.unitn.disi.db.gref.algorithms.ReformulationAlgorithm;
+import eu.unitn.disi.db.gref.lattice.LatticeLimits;
+import eu.unitn.disi.db.gref.lattice.Query;
+import eu.unitn.disi.db.gref.monitoring.Metrics;
+import eu.unitn.disi.db.gref.utils.Json;
+import eu.unitn.disi.db.gref.utils.Utils;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Run the reformulation algorithms over a fixed set of queries and write a 
+ * JSON report with latency percentiles, throughput, peak heap, GC time, 
+ * lattice size and number of expansions. The queries whose lattice exceeds a
+ * limit (with the fail policy) are skipped and counted. If a baseline report 
+ * is given, the run fails when latency, throughput or memory regress more 
+ * than the tolerance, or when the reformulations change. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class Benchmark extends Command {
+    private static final double[] PERCENTILES = {50, 90, 95, 99};
+    /*
+     * Metrics compared with the baseline, the sign tells whether the higher 
+     * the better (-1) or the worse (1)
+     */
+    private static final String[] GATED = {"latencyMs.p50", "latencyMs.p95", "throughput", "peakHeapBytes"};
+    private static final int[] GATED_SIGN = {1, 1, -1, 1};
+    /*
+     * Metrics that must not change, i.e., the algorithms are deterministic
+     */
+    private static final String[] EXACT = {"latticeSize", "expansions", "coverage", "diversity", "aborted"};
+    
+    private String dbFileName;
+    private String queryFileName;
+    private String parserClass;
+    private String indexPath;
+    private String algorithms;
+    private String reportFile;
+    private String baselineFile;
+    private String metricsFile;
+    private int numberOfGraphs;
+    private int k;
+    private float lambda;
+    private int runs;
+    private int warmup;
+    private double tolerance;
+    private int maxNodes; 
+    private long maxEmbeddings; 
+    private long maxBytes; 
+    private String limitPolicy; 
+    
+    private LatticeLimits limits; 
+    
+    private double processingTime;
+    private double reformulationTime;
+    
+    @Override
+    protected void execute() throws ExecutionException {
+        GraphParser dbParser;
+        CanonicalDFS queryParser;
+        GraphFactory gFactory;
+        Graph[] gdb;
+        List<Graph> queries = new ArrayList<>();
+        Map<String, Object> report = new LinkedHashMap<>(), results = new LinkedHashMap<>();
+        List<RefAlgorithm> algTypes = new ArrayList<>();
+        String line;
+        int algorithm;
+        
+        for (String a : algorithms.split(",")) {
+            try {
+                algorithm = Integer.parseInt(a.trim());
+            } catch (NumberFormatException ex) {
+                throw new ExecutionException("Algorithm %s is not a valid algorithm", ex, a);
+            }
+            if (algorithm < 1 || algorithm > RefAlgorithm.values().length) {
+                throw new ExecutionException("Algorithm %d does not exists", algorithm);
+            }
+            algTypes.add(RefAlgorithm.values()[algorithm - 1]);
+        }
+        try {
+            limits = new LatticeLimits(maxNodes, maxEmbeddings, maxBytes, LatticeLimits.Policy.valueOf(limitPolicy.toUpperCase()));
+        } catch (IllegalArgumentException ex) {
+            throw new ExecutionException("Limit policy %s is not valid (fail or degrade)", ex, limitPolicy);
+        }
+        try (BufferedReader queryIn = new BufferedReader(new FileReader(queryFileName));
+             BufferedInputStream in = new BufferedInputStream(new FileInputStream(dbFileName))) {
+            queryParser = MyFactory.getDFSCoder();//To load the factories (insane, I know)
+            dbParser = (GraphParser) Class.forName(parserClass).newInstance();
+            gFactory = GraphFactory.getFactory(dbParser.getDesiredGraphFactoryProperties() | GraphFactory.CLASSIFIED_GRAPH);
+            gdb = dbParser.parse(in, gFactory);
+            if (numberOfGraphs > 0 && numberOfGraphs < gdb.length) {
+                gdb = Arrays.copyOf(gdb, numberOfGraphs);
+            }
+            while ((line = queryIn.readLine()) != null) {
+                line = line.trim();
+                if (!"".equals(line) && !line.startsWith("#")) {
+                    queries.add(queryParser.parse(line, gFactory));
+                }
+            }
+            info("Loaded %d graphs and %d queries", gdb.length, queries.size());
+            if (!"".equals(metricsFile)) {
+                Metrics.enable();
+            }
+            
+            report.put("database", dbFileName);
+            report.put("queries", queryFileName);
+            report.put("databaseSize", gdb.length);
+            report.put("numberOfQueries", queries.size());
+            report.put("k", k);
+            report.put("lambda", lambda);
+            report.put("runs", runs);
+            report.put("warmup", warmup);
+            report.put("java", System.getProperty("java.version"));
+            report.put("processors", Runtime.getRuntime().availableProcessors());
+            report.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+            for (RefAlgorithm algType : algTypes) {
+                info("Benchmarking %s", algType);
+                results.put(algType.toString(), run(algType, gdb, queries, dbParser));
+            }
+            report.put("algorithms", results);
+        } catch (InstantiationException | IllegalAccessException | ClassNotFoundException ex) {
+            throw new ExecutionException("Graph parser %s cannot be instantiated", ex, parserClass);
+        } catch (IOException ex) {
+            throw new ExecutionException("Error while reading the files %s, %s", ex, dbFileName, queryFileName);
+        } catch (ParseException ex) {
+            throw new ExecutionException("Cannot parse the database file", ex);
+        }
+        
+        if (!"".equals(baselineFile)) {
+            compare(report);
+        }
+        try {
+            Utils.writeStringToFile(Json.toJson(report), reportFile);
+            info("Report written to %s", reportFile);
+        } catch (IOException ex) {
+            throw new ExecutionException("Cannot write the report %s", ex, reportFile);
+        }
+        if (!"".equals(metricsFile)) {
+            try {
+                Metrics.write(metricsFile);
+                info("Metrics written to %s", metricsFile);
+            } catch (IOException ex) {
+                throw new ExecutionException("Cannot write the metrics %s", ex, metricsFile);
+            }
+        }
+        @SuppressWarnings("unchecked")
+        List<String> regressions = (List<String>) report.get("regressions");
+        if (regressions != null && !regressions.isEmpty()) {
+            throw new ExecutionException("%d regressions against the baseline %s", regressions.size(), baselineFile);
+        }
+    }
+    
+    private Map<String, Object> run(RefAlgorithm algType, Graph[] gdb, List<Graph> queries, GraphParser dbParser) throws ExecutionException {
+        Map<String, Object> stats = new LinkedHashMap<>(), latency = new LinkedHashMap<>();
+        double[] latencies = new double[queries.size() * runs];
+        double processing = 0, latticeSize = 0, expansions = 0, coverage = 0, diversity = 0, total = 0;
+        long gcTime, gcCount;
+        ReformulationAlgorithm algo;
+        int i = 0, aborted = 0;
+        
+        for (int r = 0; r < warmup; r++) {
+            for (Graph query : queries) {
+                try {
+                    reformulate(algType, gdb, query, dbParser);
+                } catch (LatticeLimitException ex) {
+                    //Reported in the measured runs
+                }
+            }
+        }
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        gcTime = -gcTime();
+        gcCount = -gcCount();
+        for (int r = 0; r < runs; r++) {
+            for (int q = 0; q < queries.size(); q++) {
+                try {
+                    algo = reformulate(algType, gdb, queries.get(q), dbParser);
+                } catch (LatticeLimitException ex) {
+                    error("Query %d aborted: %s", q + 1, ex.getTrigger());
+                    aborted++;
+                    continue;
+                }
+                processing += processingTime;
+                latencies[i] = reformulationTime;
+                total += latencies[i];
+                latticeSize += algo.getNumberOfReformulations();
+                expansions += algo.getNumberOfExpansions();
+                if (!Double.isNaN(algo.getCoverage())) { //No answers
+                    coverage += algo.getCoverage();
+                }
+                diversity += algo.getDiversity();
+                i++;
+            }
+        }
+        gcTime += gcTime();
+        gcCount += gcCount();
+        
+        latencies = Arrays.copyOf(latencies, i);
+        Arrays.sort(latencies);
+        for (double p : PERCENTILES) {
+            latency.put("p" + (int) p, percentile(latencies, p));
+        }
+        latency.put("max", latencies.length > 0 ? latencies[latencies.length - 1] : 0);
+        latency.put("mean", i > 0 ? total / i : 0);
+        stats.put("latencyMs", latency);
+        stats.put("queryProcessingMs", i > 0 ? processing / i : 0);
+        stats.put("throughput", total > 0 ? i * 1000 / total : 0);
+        stats.put("peakHeapBytes", peakHeap());
+        stats.put("gcTimeMs", gcTime);
+        stats.put("gcCount", gcCount);
+        stats.put("latticeSize", i > 0 ? latticeSize / i : 0);
+        stats.put("expansions", i > 0 ? expansions / i : 0);
+        stats.put("coverage", i > 0 ? coverage / i : 0);
+        stats.put("diversity", i > 0 ? diversity / i : 0);
+        stats.put("aborted", runs > 0 ? aborted / runs : 0);
+        info("%s: p50 %.1fms, p95 %.1fms, peak heap %dMB, GC %dms", algType, 
+                latency.get("p50"), latency.get("p95"), peakHeap() >> 20, gcTime);
+        return stats;
+    }
+    
+    /*
+     * Answer the query and reformulate it, the times in milliseconds of the 
+     * two steps are stored in processingTime and reformulationTime
+     */
+    private ReformulationAlgorithm reformulate(RefAlgorithm algType, Graph[] gdb, Graph query, GraphParser dbParser) throws ExecutionException {
+        QueryProcessing qProc = new QueryProcessing();
+        ReformulationAlgorithm algo;
+        long start = System.nanoTime();
+        qProc.setGdb(gdb);
+        qProc.setQuery(new Query(query));
+        qProc.compute();
+        processingTime = (System.nanoTime() - start) / 1e6;
+        algo = algType.newAlgorithm(k, lambda, query, dbFileName, dbParser, indexPath);
+        if (algo instanceof LatticeAlgorithm) {
+            ((LatticeAlgorithm)algo).setLattice(qProc.getLattice());
+            ((LatticeAlgorithm)algo).setDb(qProc.getResults());
+            ((LatticeAlgorithm)algo).setLimits(limits);
+        }
+        start = System.nanoTime();
+        algo.compute();
+        reformulationTime = (System.nanoTime() - start) / 1e6;
+        return algo;
+    }
+    
+    /*
+     * Nearest-rank percentile of sorted values
+     */
+    private static double percentile(double[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+    
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+    
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+    
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+    
+    /*
+     * Compare the report with the baseline and add the comparisons and the 
+     * regressions to the report
+     */
+    @SuppressWarnings("unchecked")
+    private void compare(Map<String, Object> report) throws ExecutionException {
+        Map<String, Object> baseline, baseAlgorithms, current, base, comparison; 
+        Map<String, Object> comparisons = new LinkedHashMap<>();
+        List<String> regressions = new ArrayList<>();
+        Double now, then;
+        
+        try {
+            baseline = (Map<String, Object>) Json.parse(Utils.readFileToString(baselineFile));
+        } catch (IOException | ParseException | ClassCastException ex) {
+            throw new ExecutionException("Cannot read the baseline %s", ex, baselineFile);
+        }
+        baseAlgorithms = (Map<String, Object>) baseline.get("algorithms");
+        for (Map.Entry<String, Object> e : ((Map<String, Object>) report.get("algorithms")).entrySet()) {
+            base = baseAlgorithms == null ? null : (Map<String, Object>) baseAlgorithms.get(e.getKey());
+            if (base == null) {
+                warn("Algorithm %s is not in the baseline", e.getKey());
+                continue;
+            }
+            current = (Map<String, Object>) e.getValue();
+            comparison = new LinkedHashMap<>();
+            for (int i = 0; i < GATED.length; i++) {
+                now = metric(current, GATED[i]);
+                then = metric(base, GATED[i]);
+                if (now != null && then != null && then > 0) {
+                    comparison.put(GATED[i], now / then);
+                    if (GATED_SIGN[i] * (now / then - 1) > tolerance) {
+                        regressions.add(String.format("%s %s: %.3f (baseline %.3f)", e.getKey(), GATED[i], now, then));
+                    }
+                }
+            }
+            for (String name : EXACT) {
+                now = metric(current, name);
+                then = metric(base, name);
+                if (now != null && then != null && Math.abs(now - then) > 1e-6 * Math.max(1, Math.abs(then))) {
+                    regressions.add(String.format("%s %s changed: %.3f (baseline %.3f)", e.getKey(), name, now, then));
+                }
+            }
+            comparisons.put(e.getKey(), comparison);
+        }
+        for (String regression : regressions) {
+            error("Regression %s", regression);
+        }
+        report.put("baseline", baselineFile);
+        report.put("tolerance", tolerance);
+        report.put("comparison", comparisons);
+        report.put("regressions", regressions);
+    }
+    
+    /*
+     * Value of a metric, dots select nested objects
+     */
+    @SuppressWarnings("unchecked")
+    private static Double metric(Map<String, Object> stats, String name) {
+        Object value = stats;
+        for (String key : name.split("\\.")) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            value = ((Map<String, Object>) value).get(key);
+        }
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    @Override
+    protected String commandDescription() {
+        return "Benchmark the reformulation algorithms and compare with a baseline";
+    }
+
+    @CommandInput(
+            consoleFormat = "-db",
+            defaultValue = "",
+            mandatory = true,
+            description = "file containing the graph database",
+            parameters = ParametersNumber.TWO)
+    public void setDbFileName(String dbFileName) {
+        this.dbFileName = dbFileName;
+    }
+
+    @CommandInput(
+            consoleFormat = "-q",
+            defaultValue = "",
+            mandatory = true,
+            description = "file containing the queries",
+            parameters = ParametersNumber.TWO)
+    public void setQueryFileName(String queryFileName) {
+        this.queryFileName = queryFileName;
+    }
+
+    @CommandInput(
+            consoleFormat = "-a",
+            defaultValue = "1,2,3",
+            mandatory = false,
+            description = "comma separated algorithms to benchmark (1 = exact, 2 = pruning, 3 = k-freq, 4 = index, 5 = LIndex, 7 = stochastic greedy, 8 = sieve streaming)",
+            parameters = ParametersNumber.TWO)
+    public void setAlgorithms(String algorithms) {
+        this.algorithms = algorithms;
+    }
+
+    @CommandInput(
+            consoleFormat = "-l",
+            defaultValue = "0.5",
+            mandatory = false,
+            description = "diversification factor lambda",
+            parameters = ParametersNumber.TWO)
+    public void setLambda(float lambda) {
+        this.lambda = lambda;
+    }
+
+    @CommandInput(
+            consoleFormat = "-k",
+            defaultValue = "10",
+            mandatory = false,
+            description = "number of reformulations",
+            parameters = ParametersNumber.TWO)
+    public void setK(int k) {
+        this.k = k;
+    }
+
+    @CommandInput(
+            consoleFormat = "-runs",
+            defaultValue = "3",
+            mandatory = false,
+            description = "measured runs of each query",
+            parameters = ParametersNumber.TWO)
+    public void setRuns(int runs) {
+        this.runs = runs;
+    }
+
+    @CommandInput(
+            consoleFormat = "-warmup",
+            defaultValue = "1",
+            mandatory = false,
+            description = "unmeasured runs of each query before the measured ones",
+            parameters = ParametersNumber.TWO)
+    public void setWarmup(int warmup) {
+        this.warmup = warmup;
+    }
+
+    @CommandInput(
+            consoleFormat = "-o",
+            defaultValue = "benchmark.json",
+            mandatory = false,
+            description = "output file for the JSON report",
+            parameters = ParametersNumber.TWO)
+    public void setReportFile(String reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    @CommandInput(
+            consoleFormat = "-baseline",
+            defaultValue = "",
+            mandatory = false,
+            description = "JSON report to compare with",
+            parameters = ParametersNumber.TWO)
+    public void setBaselineFile(String baselineFile) {
+        this.baselineFile = baselineFile;
+    }
+
+    @CommandInput(
+            consoleFormat = "-metrics",
+            defaultValue = "",
+            mandatory = false,
+            description = "output file for the metrics (.json or Prometheus text format)",
+            parameters = ParametersNumber.TWO)
+    public void setMetricsFile(String metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    @CommandInput(
+            consoleFormat = "-tolerance",
+            defaultValue = "0.1",
+            mandatory = false,
+            description = "maximum relative regression of latency, throughput and peak heap",
+            parameters = ParametersNumber.TWO)
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    @CommandInput(
+            consoleFormat = "-parser",
+            defaultValue = "de.parmol.parsers.LineGraphParser",
+            mandatory = false,
+            description = "parser used for the input graph",
+            parameters = ParametersNumber.TWO)
+    public void setParserClass(String parserClass) {
+        this.parserClass = parserClass;
+    }
+
+    @CommandInput(
+            consoleFormat = "-dbsize",
+            defaultValue = "0",
+            mandatory = false,
+            description = "take only a subset of the graph database",
+            parameters = ParametersNumber.TWO)
+    public void setNumberOfGraphs(int numberOfGraphs) {
+        this.numberOfGraphs = numberOfGraphs;
+    }
+
+    @CommandInput(
+            consoleFormat = "-index",
+            defaultValue = "",
+            mandatory = false,
+            description = "sepecify the index path, if needed",
+            parameters = ParametersNumber.TWO)
+    public void setIndexPath(String indexPath) {
+        this.indexPath = indexPath;
+    }
+
+    @CommandInput(
+            consoleFormat = "-maxnodes",
+            defaultValue = "0",
+            mandatory = false,
+            description = "maximum number of reformulations in the lattice of a query (0 = unlimited)",
+            parameters = ParametersNumber.TWO)
+    public void setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    @CommandInput(
+            consoleFormat = "-maxembeddings",
+            defaultValue = "0",
+            mandatory = false,
+            description = "maximum number of embeddings retained by the lattice of a query (0 = unlimited)",
+            parameters = ParametersNumber.TWO)
+    public void setMaxEmbeddings(long maxEmbeddings) {
+        this.maxEmbeddings = maxEmbeddings;
+    }
+
+    @CommandInput(
+            consoleFormat = "-maxbytes",
+            defaultValue = "0",
+            mandatory = false,
+            description = "maximum estimated bytes retained by the lattice of a query (0 = unlimited)",
+            parameters = ParametersNumber.TWO)
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @CommandInput(
+            consoleFormat = "-limitpolicy",
+            defaultValue = "fail",
+            mandatory = false,
+            description = "what to do when a lattice limit is exceeded (fail = skip the query, degrade = use the partial lattice)",
+            parameters = ParametersNumber.TWO)
+    public void setLimitPolicy(String limitPolicy) {
+        this.limitPolicy = limitPolicy;
+    }
+}
@@ -54,6 +54,7 @@ public class BuildIndex extends Command {
     private String db; 
     private String parserClass; 
     private int verbosity;
+    private boolean closed; 
     
     @Override
     protected void execute() throws ExecutionException {
@@ -76,11 +77,13 @@ public class BuildIndex extends Command {
         FrequencyIndex index;
         try (ObjectOutputStream writer = new ObjectOutputStream(new FileOutputStream(outputFile))) {
             GIndexBuild indexBuilder = new GIndexBuild(new Settings(args));
+            indexBuilder.setClosed(closed);
             indexBuilder.setUp();
             info("Start building index");
             indexBuilder.startMining();
             
             index = indexBuilder.getIndex();
+            info("Indexed reformulations: %d, non-closed collapsed: %d", index.size(), index.getCollapsed());
             info("Starting serialization");
             writer.writeObject(index);
         } catch (InstantiationException | IllegalAccessException | ClassNotFoundException ex) {
@@ -157,4 +160,14 @@ public class BuildIndex extends Command {
     public void setVerbosity(int verbosity) {
         this.verbosity = verbosity;
     }
+    
+    @CommandInput(
+        consoleFormat = "-closed",
+        defaultValue = "false",
+        mandatory = false,
+        description = "collapse the reformulations having a child with the same results",
+        parameters = ParametersNumber.ONE) 
+    public void setClosed(boolean closed) {
+        this.closed = closed;
+    }
 }
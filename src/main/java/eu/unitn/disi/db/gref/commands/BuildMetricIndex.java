@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.commands;
+
+import de.parmol.graph.Graph;
+import de.parmol.graph.GraphFactory;
+import de.parmol.parsers.GraphParser;
+import edu.psu.chemxseer.structure.factory.MyFactory;
+import eu.unitn.disi.db.command.Command;
+import eu.unitn.disi.db.command.CommandInput;
+import eu.unitn.disi.db.command.ParametersNumber;
+import eu.unitn.disi.db.command.exceptions.ExecutionException;
+import eu.unitn.disi.db.command.util.StopWatch;
+import eu.unitn.disi.db.gref.algorithms.ged.EditDistance;
+import eu.unitn.disi.db.gref.algorithms.metric.EditDistanceMetric;
+import eu.unitn.disi.db.gref.algorithms.metric.VPTree;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * This command builds a vantage point tree on the approximate edit distance 
+ * of a graph database and stores it in a file, so that it can be loaded 
+ * with {@link eu.unitn.disi.db.gref.algorithms.metric.MetricIndex#load}
+ * together with the same database (<code>Clustering -index</code> and 
+ * <code>SummarizeDataset -index</code>). 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class BuildMetricIndex extends Command {
+    private String db; 
+    private String outputFile; 
+    private String parserClass; 
+    private long seed;
+    private String approximation;
+    
+    @Override
+    protected void execute() throws ExecutionException {
+        GraphParser parser;
+        Graph[] graphs;
+        VPTree tree;
+        EditDistance.ApproximationType type;
+        StopWatch watch = new StopWatch();
+        
+        try {
+            type = EditDistance.ApproximationType.valueOf(approximation.toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException ex) {
+            throw new ExecutionException("Unknown edit distance approximation %s", ex, approximation);
+        }
+        MyFactory.getDFSCoder();//To load the factories
+        
+        watch.start();
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(db))) {
+            parser = (GraphParser) Class.forName(parserClass).newInstance();
+            graphs = parser.parse(in, GraphFactory.getFactory(GraphFactory.UNDIRECTED_GRAPH));
+            info("Loaded graph database %s in %dms", db, watch.getElapsedTimeMillis());
+            
+            watch.reset();
+            info("Start building the metric index");
+            tree = new VPTree(graphs, new EditDistanceMetric(type), seed);
+            info("Metric index on %d graphs built with %d distance computations in %dms", 
+                    tree.size(), tree.getDistanceComputations(), watch.getElapsedTimeMillis());
+            tree.save(new File(outputFile));
+            info("Metric index stored in %s", outputFile);
+        } catch (IOException ex) {
+            throw new ExecutionException("Error while building the metric index of %s", ex, db);
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException ex) {
+            fatal("Graph parser %s cannot be instantiated", parserClass);
+        } catch (ParseException ex) {
+            throw new ExecutionException("Cannot parse the database file", ex);
+        }
+    }
+
+    @Override
+    protected String commandDescription() {
+        return "Build an edit distance metric index and stores it in a file";
+    }
+
+    @CommandInput(
+        consoleFormat = "-db",
+        defaultValue = "",
+        mandatory = true,
+        description = "file containing the graph database",
+        parameters = ParametersNumber.TWO)
+    public void setDbFileName(String dbFileName) {
+        this.db = dbFileName;
+    }
+
+    @CommandInput(
+        consoleFormat = "-o",
+        defaultValue = "metric.idx",
+        mandatory = false,
+        description = "index file to be created",
+        parameters = ParametersNumber.TWO) 
+    public void setOutput(String output) {
+        this.outputFile = output;
+    }
+    
+    @CommandInput(
+        consoleFormat = "-parser",
+        defaultValue = "de.parmol.parsers.LineGraphParser",
+        mandatory = false,
+        description = "parser used for the input graph",
+        parameters = ParametersNumber.TWO) 
+    public void setParserClass(String parserClass) {
+        this.parserClass = parserClass;
+    }
+    
+    @CommandInput(
+        consoleFormat = "-seed",
+        defaultValue = "0",
+        mandatory = false,
+        description = "seed used to choose the vantage points",
+        parameters = ParametersNumber.TWO) 
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @CommandInput(
+        consoleFormat = "-approximation",
+        defaultValue = "hungarian",
+        mandatory = false,
+        description = "edit distance approximation (hungarian for Clustering, volgenant-jonker for SummarizeDataset)",
+        parameters = ParametersNumber.TWO) 
+    public void setApproximation(String approximation) {
+        this.approximation = approximation;
+    }
+}
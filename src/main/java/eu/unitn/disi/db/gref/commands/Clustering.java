@@ -24,6 +24,7 @@
 
 package eu.unitn.disi.db.gref.commands;
 
+import de.parmol.graph.Graph;
 import de.parmol.graph.GraphFactory;
 import de.parmol.parsers.GraphParser;
 import edu.psu.chemxseer.structure.factory.MyFactory;
@@ -33,6 +34,11 @@ import eu.unitn.disi.db.command.CommandInput;
 import eu.unitn.disi.db.command.ParametersNumber;
 import eu.unitn.disi.db.command.exceptions.ExecutionException;
 import eu.unitn.disi.db.gref.algorithms.GraphClustering;
+import eu.unitn.disi.db.gref.algorithms.ged.DistanceMatrix;
+import eu.unitn.disi.db.gref.algorithms.metric.EditDistanceMetric;
+import eu.unitn.disi.db.gref.algorithms.metric.MetricIndex;
+import java.io.File;
+import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,11 +48,19 @@ import java.util.logging.Logger;
  */
 public class Clustering extends Command {
     private String dbFileName;    
+    private int numberOfThreads; 
+    private String storage;
+    private String mapFile; 
+    private boolean prototypeOnly;
+    private double duplicateRadius;
+    private String indexFile;
     
     @Override
     protected void execute() throws ExecutionException {
         GraphClustering algo;
         GraphParser dbParser;
+        Graph[] graphs;
+        MetricIndex index;
 
         try {
             MyFactory.getDFSCoder();//Used to load the static factories
@@ -56,8 +70,31 @@ public class Clustering extends Command {
             GraphFactory gFactory = GraphFactory.getFactory(dbParser.getDesiredGraphFactoryProperties() | GraphFactory.CLASSIFIED_GRAPH);
             
             algo = new GraphClustering();
-            algo.setDb(dbD.loadAllGraphs());
+            graphs = dbD.loadAllGraphs();
+            algo.setDb(graphs);
             algo.setK(10);
+            algo.setNumberOfThreads(numberOfThreads);
+            algo.setPrototypeOnly(prototypeOnly);
+            algo.setDuplicateRadius(duplicateRadius);
+            try {
+                algo.setStorage(DistanceMatrix.Storage.valueOf(storage.toUpperCase().replace('-', '_')));
+            } catch (IllegalArgumentException ex) {
+                throw new ExecutionException("Unknown distance matrix storage %s", ex, storage);
+            }
+            if (!"".equals(mapFile)) {
+                algo.setMapFile(new File(mapFile));
+            }
+            if (!"".equals(indexFile)) {
+                try {
+                    index = MetricIndex.load(new File(indexFile), graphs, new EditDistanceMetric());
+                } catch (IOException ex) {
+                    throw new ExecutionException("Cannot load the metric index %s", ex, indexFile);
+                }
+                if (index.size() != graphs.length) {
+                    throw new ExecutionException("The metric index %s has %d graphs, the database %d", indexFile, index.size(), graphs.length);
+                }
+                algo.setDuplicateIndex(index);
+            }
             
             algo.compute();
         } catch (InstantiationException | IllegalAccessException | ClassNotFoundException ex) {
@@ -80,5 +117,63 @@ public class Clustering extends Command {
         this.dbFileName = dbFileName;
     }
 
-    
+    @CommandInput(
+        consoleFormat = "-t",
+        defaultValue = "-1",
+        mandatory = false,
+        description = "number of threads computing the distances (-1 = all the cores)",
+        parameters = ParametersNumber.TWO)
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    @CommandInput(
+        consoleFormat = "-storage",
+        defaultValue = "heap",
+        mandatory = false,
+        description = "where to store the distance matrix (heap, off-heap, mapped)",
+        parameters = ParametersNumber.TWO)
+    public void setStorage(String storage) {
+        this.storage = storage;
+    }
+
+    @CommandInput(
+        consoleFormat = "-mapfile",
+        defaultValue = "",
+        mandatory = false,
+        description = "file backing the distance matrix with mapped storage",
+        parameters = ParametersNumber.TWO)
+    public void setMapFile(String mapFile) {
+        this.mapFile = mapFile;
+    }
+
+    @CommandInput(
+        consoleFormat = "-prototypes",
+        defaultValue = "false",
+        mandatory = false,
+        description = "compute only the distances to the prototypes (O(n p) instead of O(n^2))",
+        parameters = ParametersNumber.ONE)
+    public void setPrototypeOnly(boolean prototypeOnly) {
+        this.prototypeOnly = prototypeOnly;
+    }
+
+    @CommandInput(
+        consoleFormat = "-duplicates",
+        defaultValue = "-1",
+        mandatory = false,
+        description = "edit distance under which graphs are collapsed before clustering (-1 = disabled)",
+        parameters = ParametersNumber.TWO)
+    public void setDuplicateRadius(double duplicateRadius) {
+        this.duplicateRadius = duplicateRadius;
+    }
+
+    @CommandInput(
+        consoleFormat = "-index",
+        defaultValue = "",
+        mandatory = false,
+        description = "metric index of the database built by BuildMetricIndex, used by -duplicates instead of a BK-tree",
+        parameters = ParametersNumber.TWO)
+    public void setIndexFile(String indexFile) {
+        this.indexFile = indexFile;
+    }
 }
@@ -28,23 +28,25 @@ import de.parmol.graph.GraphFactory;
 import de.parmol.parsers.GraphParser;
 import edu.psu.chemxseer.structure.factory.MyFactory;
 import edu.psu.chemxseer.structure.iso.CanonicalDFS;
-import edu.psu.chemxseer.structure.postings.Impl.GraphDatabase_OnDisk;
 import eu.unitn.disi.db.command.Command;
 import eu.unitn.disi.db.command.CommandInput;
 import eu.unitn.disi.db.command.ParametersNumber;
 import eu.unitn.disi.db.command.exceptions.ExecutionException;
 import eu.unitn.disi.db.command.util.StopWatch;
 import eu.unitn.disi.db.gref.algorithms.GQRExact;
-import eu.unitn.disi.db.gref.algorithms.GQRIndex;
-import eu.unitn.disi.db.gref.algorithms.GQRNaive;
 import eu.unitn.disi.db.gref.algorithms.GQRPruning;
+import eu.unitn.disi.db.gref.algorithms.GQRStochastic;
+import eu.unitn.disi.db.gref.algorithms.GQRStreaming;
 import eu.unitn.disi.db.gref.algorithms.LatticeAlgorithm;
-import eu.unitn.disi.db.gref.algorithms.MinimalSupergraphs;
+import eu.unitn.disi.db.gref.algorithms.LatticeLimitException;
 import eu.unitn.disi.db.gref.algorithms.QueryProcessing;
+import eu.unitn.disi.db.gref.algorithms.RefAlgorithm;
 import eu.unitn.disi.db.gref.algorithms.ReformulationAlgorithm;
+import eu.unitn.disi.db.gref.lattice.LatticeLimits;
 import eu.unitn.disi.db.gref.lattice.Query;
 import eu.unitn.disi.db.gref.lattice.ReformulatedQuery;
 import eu.unitn.disi.db.gref.lattice.ReformulationLattice;
+import eu.unitn.disi.db.gref.monitoring.Metrics;
 import eu.unitn.disi.db.gref.utils.Utils;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
@@ -76,28 +78,17 @@ public class Reformulate extends Command {
     private int numberOfGraphs;
     private String parserClass;
     private String resultFile;  
+    private String metricsFile;
+    private int maxNodes; 
+    private long maxEmbeddings; 
+    private long maxBytes; 
+    private String limitPolicy; 
+    private String scoring; 
+    private int threads; 
+    private float epsilon; 
+    private long seed; 
+    private boolean closed; 
 
-    private enum RefAlgorithm {
-        GREEDY_BF("Greedy_BF"),
-        FAST_MMPG("Fast_MMPG"),
-        K_FREQ("k-freq"), 
-        INDEXED_MMPG("Indexed_MMPG"), 
-        MIN_SUP("Indexed_MinSup"), 
-        COMPARISON("Comparison");
-        
-        String name; 
-        
-        RefAlgorithm(String name) {
-            this.name = name;
-        }
-
-        @Override
-        public String toString() {
-            return name;
-        }
-    }
-    
-    
     @Override
     protected void execute() throws ExecutionException {
         GraphParser dbParser;
@@ -113,13 +104,31 @@ public class Reformulate extends Command {
         int lineNo = 0; 
         int dbSize, coverage;
         RefAlgorithm algType; 
+        LatticeLimits limits; 
+        GQRPruning.Scoring scoringType; 
         
+        try {
+            limits = new LatticeLimits(maxNodes, maxEmbeddings, maxBytes, LatticeLimits.Policy.valueOf(limitPolicy.toUpperCase()));
+        } catch (IllegalArgumentException ex) {
+            throw new ExecutionException("Limit policy %s is not valid (fail or degrade)", ex, limitPolicy);
+        }
+        try {
+            scoringType = GQRPruning.Scoring.valueOf(scoring.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ExecutionException("Scoring %s is not valid (list, bitmap or classes)", ex, scoring);
+        }
         try (BufferedReader queryIn = new BufferedReader(new FileReader(queryFileName));
              BufferedInputStream in = new BufferedInputStream(new FileInputStream(dbFileName));
              BufferedWriter output = new BufferedWriter(new FileWriter(outputFile, true))) {
             queryParser = MyFactory.getDFSCoder();//To load the factories (insane, I know)
             dbParser = (GraphParser) Class.forName(parserClass).newInstance();
             algType = RefAlgorithm.values()[algorithm - 1];
+            if (closed && algType == RefAlgorithm.MIN_SUP) {
+                warn("Algorithm %s does not use a lattice, -closed is ignored", algType);
+            }
+            if (!"".equals(metricsFile)) {
+                Metrics.enable();
+            }
             
             
             //GraphDatabase_OnDisk dbD = new GraphDatabase_OnDisk(dbFileName, dbParser);
@@ -166,36 +175,26 @@ public class Reformulate extends Command {
 
 
                     //Step 1: Find the answers to the query and the mapping. 
-                    switch (algType) {
-                        case GREEDY_BF: //Exact
-                            algo = new GQRExact();
-                            ((GQRExact)algo).setLambda(lambda);
-                            break;
-                        case FAST_MMPG: //Pruning
-                            algo = new GQRPruning(); 
-                            ((GQRExact)algo).setLambda(lambda);
-                            break;
-                        case INDEXED_MMPG: 
-                            algo = new GQRIndex();
-                            ((GQRExact)algo).setLambda(lambda);
-                            break;
-                        case K_FREQ: 
-                            algo = new GQRNaive(); 
-                            ((GQRExact)algo).setLambda(0);
-                            break;
-                        case MIN_SUP: 
-                            algo = new MinimalSupergraphs(new GraphDatabase_OnDisk(dbFileName, dbParser));
-                            ((MinimalSupergraphs)algo).setQuery(query);
-                            ((MinimalSupergraphs)algo).setIndexPath(indexPath);
-                            break;
-                        case COMPARISON: 
-                            throw new ExecutionException("This method been used to test pruning code correctness");
-                    }
-                    algo.setK(k);
+                    algo = algType.newAlgorithm(k, lambda, query, dbFileName, dbParser, indexPath);
 
                     if (algo instanceof LatticeAlgorithm) {
                         ((LatticeAlgorithm)algo).setLattice(qProc.getLattice());
                         ((LatticeAlgorithm)algo).setDb(qProc.getResults());
+                        ((LatticeAlgorithm)algo).setLimits(limits);
+                    }
+                    if (algo instanceof GQRPruning) {
+                        ((GQRPruning)algo).setScoring(scoringType);
+                    } else if (algo instanceof GQRExact) {
+                        ((GQRExact)algo).setThreads(threads);
+                    }
+                    if (algo instanceof GQRExact) {
+                        ((GQRExact)algo).setClosed(closed);
+                    }
+                    if (algo instanceof GQRStochastic) {
+                        ((GQRStochastic)algo).setEpsilon(epsilon);
+                        ((GQRStochastic)algo).setSeed(seed);
+                    } else if (algo instanceof GQRStreaming) {
+                        ((GQRStreaming)algo).setEpsilon(epsilon);
                     }
                             
 //                        case COMPARISON: //DEBUG: Comparison
@@ -220,7 +219,26 @@ public class Reformulate extends Command {
 //                            throw new ExecutionException("Algorithm %d is not a valid algorithm", algorithm);
 //                    }
                     
-                    algo.compute();
+                    try {
+                        algo.compute();
+                    } catch (LatticeLimitException ex) {
+                        error("Query %d aborted: %s", lineNo, ex.getTrigger());
+                        output.append(
+                            algType + ","
+                            + algorithm + ","
+                            + dbSize + ","
+                            + gdb.length + ","
+                            + qProc.getResults().length + ","
+                            + query.getNodeCount() + ","
+                            + query.getEdgeCount() + ","
+                            + queryTime + ","
+                            + k + ","
+                            + lambda + ",,,,,,,,,"
+                            + qProc.getLattice().getEstimatedBytes() + ","
+                            + ex.getTrigger() + "\n"
+                        );
+                        continue;
+                    }
                     results = algo.getS();
                     info("Reformulations: %s", results.toString());
                     coverage = ReformulationAlgorithm.coverage(results);
@@ -246,7 +264,9 @@ public class Reformulate extends Command {
                         + algo.getNumberOfExpansions() + ","
                         + algo.getNumberOfReformulations() + ","
                         + (coverage + lambda * algo.getDiversity()) + ","
-                        + (refMatches.length() > 0? refMatches.substring(0, refMatches.length() - 1) : "") + "\n"
+                        + (refMatches.length() > 0? refMatches.substring(0, refMatches.length() - 1) : "") + ","
+                        + (algo instanceof LatticeAlgorithm? ((LatticeAlgorithm)algo).getEstimatedBytes() : 0) + ","
+                        + (algo instanceof LatticeAlgorithm && ((LatticeAlgorithm)algo).getLimitTrigger() != null? ((LatticeAlgorithm)algo).getLimitTrigger() : "") + "\n"
                     );
                    
                     if (!"".equals(resultFile)) {
@@ -262,6 +282,10 @@ public class Reformulate extends Command {
                     }
                 }
             }
+            if (!"".equals(metricsFile)) {
+                Metrics.write(metricsFile);
+                info("Metrics written to %s", metricsFile);
+            }
         } catch (InstantiationException | IllegalAccessException | ClassNotFoundException ex) {
             Logger.getLogger(Reformulate.class.getName()).log(Level.SEVERE, null, ex);
         } catch (FileNotFoundException ex) {
@@ -324,7 +348,7 @@ public class Reformulate extends Command {
             consoleFormat = "-a",
             defaultValue = "1",
             mandatory = false,
-            description = "algorithm to use (1 = exact, 2 = pruning, 3 = index, 4 = k-freq, 5 = LIndex)",
+            description = "algorithm to use (1 = exact, 2 = pruning, 3 = k-freq, 4 = index, 5 = LIndex, 7 = stochastic greedy, 8 = sieve streaming)",
             parameters = ParametersNumber.TWO)
     public void setAlgorithm(int algorithm) {
         this.algorithm = algorithm;
@@ -350,6 +374,106 @@ public class Reformulate extends Command {
         this.resultFile = results;
     }
 
+    @CommandInput(
+            consoleFormat = "-maxnodes",
+            defaultValue = "0",
+            mandatory = false,
+            description = "maximum number of reformulations in the lattice of a query (0 = unlimited)",
+            parameters = ParametersNumber.TWO)
+    public void setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    @CommandInput(
+            consoleFormat = "-maxembeddings",
+            defaultValue = "0",
+            mandatory = false,
+            description = "maximum number of embeddings retained by the lattice of a query (0 = unlimited)",
+            parameters = ParametersNumber.TWO)
+    public void setMaxEmbeddings(long maxEmbeddings) {
+        this.maxEmbeddings = maxEmbeddings;
+    }
+
+    @CommandInput(
+            consoleFormat = "-maxbytes",
+            defaultValue = "0",
+            mandatory = false,
+            description = "maximum estimated bytes retained by the lattice of a query (0 = unlimited)",
+            parameters = ParametersNumber.TWO)
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @CommandInput(
+            consoleFormat = "-limitpolicy",
+            defaultValue = "fail",
+            mandatory = false,
+            description = "what to do when a lattice limit is exceeded (fail = skip the query, degrade = use the partial lattice)",
+            parameters = ParametersNumber.TWO)
+    public void setLimitPolicy(String limitPolicy) {
+        this.limitPolicy = limitPolicy;
+    }
+
+    @CommandInput(
+            consoleFormat = "-scoring",
+            defaultValue = "list",
+            mandatory = false,
+            description = "how the pruning algorithms compute the scores (list = walk the results, bitmap = intersect result bitmaps, classes = walk the weighted classes of equivalent results)",
+            parameters = ParametersNumber.TWO)
+    public void setScoring(String scoring) {
+        this.scoring = scoring;
+    }
+
+    @CommandInput(
+            consoleFormat = "-threads",
+            defaultValue = "1",
+            mandatory = false,
+            description = "number of threads computing the marginal gains in the greedy phase of the exact algorithm",
+            parameters = ParametersNumber.TWO)
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    @CommandInput(
+            consoleFormat = "-epsilon",
+            defaultValue = "0.1",
+            mandatory = false,
+            description = "approximation of the stochastic greedy (each step evaluates (n/k)log(1/epsilon) reformulations) and of the sieve streaming",
+            parameters = ParametersNumber.TWO)
+    public void setEpsilon(float epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    @CommandInput(
+            consoleFormat = "-seed",
+            defaultValue = "0",
+            mandatory = false,
+            description = "seed of the sampling of the stochastic greedy",
+            parameters = ParametersNumber.TWO)
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @CommandInput(
+            consoleFormat = "-closed",
+            defaultValue = "false",
+            mandatory = false,
+            description = "select only closed reformulations, the ones having a child with the same results are collapsed",
+            parameters = ParametersNumber.ONE)
+    public void setClosed(boolean closed) {
+        this.closed = closed;
+    }
+
+    @CommandInput(
+            consoleFormat = "-metrics",
+            defaultValue = "",
+            mandatory = false,
+            description = "output file for the metrics (.json or Prometheus text format)",
+            parameters = ParametersNumber.TWO)
+    public void setMetricsFile(String metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
     
     @CommandInput(
             consoleFormat = "-parser",
@@ -32,21 +32,21 @@ import eu.unitn.disi.db.command.CommandInput;
 import eu.unitn.disi.db.command.ParametersNumber;
 import eu.unitn.disi.db.command.exceptions.ExecutionException;
 import eu.unitn.disi.db.command.util.StopWatch;
+import eu.unitn.disi.db.gref.algorithms.GraphSummarization;
 import eu.unitn.disi.db.gref.algorithms.ged.EditDistance;
+import eu.unitn.disi.db.gref.algorithms.metric.EditDistanceMetric;
+import eu.unitn.disi.db.gref.algorithms.metric.MetricIndex;
 import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Random;
 
 /**
  * Use edit distance to find significative graphs.
@@ -60,61 +60,24 @@ public class SummarizeDataset extends Command {
     private String outputFile;
     private double editThreshold;
     private int numberOfThreads;
+    private long seed;
+    private boolean metricIndex;
+    private String indexFile;
 
     private GraphFactory factory;
-    private final static int PRINT_STEP = 20;
-
-    private class SelectionTask implements Callable<List<Graph>> {
-
-        private final List<Graph> toCheck;
-        private final List<Graph> significantGraphs;
-        private final int thread;
-        private final int level;
-
-        public SelectionTask(int thread, int level, List<Graph> toCheck, List<Graph> significantGraphs) {
-            this.level = level;
-            this.thread = thread;
-            this.toCheck = toCheck;
-            this.significantGraphs = significantGraphs;
-        }
-
-        @Override
-        public List<Graph> call() throws Exception {
-            boolean significant;
-            int count = 0;
-            double distance;
-
-            for (Graph graph : toCheck) {
-                count++;
-                significant = true;
-                for (Graph sigGraph : significantGraphs) {
-                    distance = EditDistance.getApproximateEditDistance(graph, sigGraph, EditDistance.ApproximationType.VOLGENANT_JONKER);
-                    if (distance / (double) (graph.getEdgeCount() + sigGraph.getEdgeCount()) < editThreshold) {
-                        //System.out.println(distance);
-                        significant = false;
-                        break;
-                    }
-                }
-                if (significant) {
-                    significantGraphs.add(graph);
-                    if (significantGraphs.size() % PRINT_STEP == 0) {
-                        debug("[t=%d,l=%d] Found %d significant graphs over %d", thread, level, significantGraphs.size(), count);
-                    }
-                }
-            }
-            return significantGraphs;
-        }
-
-    }
 
     @Override
     protected void execute() throws ExecutionException {
         GraphParser parser;
+        Graph[] graphs;
         List<Graph> db;
+        List<Integer> order;
+        int[] indexIds;
+        MetricIndex index;
         StopWatch watch = new StopWatch();
-        List<Graph> significantDataset = new ArrayList<>();
+        List<Graph> significantDataset;
+        GraphSummarization summarization;
         int mask;
-        ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads);
         int count;
 
         MyFactory.getDFSCoder();//To load the factories (insane, I know)
@@ -125,8 +88,19 @@ public class SummarizeDataset extends Command {
             mask = GraphFactory.UNDIRECTED_GRAPH;
             factory = GraphFactory.getFactory(mask);
 
-            db = Arrays.asList(parser.parse(in, factory));
-            Collections.shuffle(db);
+            graphs = parser.parse(in, factory);
+            //Shuffle the positions, so that they map to the metric index
+            order = new ArrayList<>(graphs.length);
+            for (int i = 0; i < graphs.length; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, new Random(seed));
+            db = new ArrayList<>(graphs.length);
+            indexIds = new int[graphs.length];
+            for (int i = 0; i < graphs.length; i++) {
+                indexIds[i] = order.get(i);
+                db.add(graphs[indexIds[i]]);
+            }
 // From experiments this seems not a good idea (too many clusters). 
 //            Collections.sort(db, 
 //                new Comparator<Graph>() {
@@ -144,35 +118,24 @@ public class SummarizeDataset extends Command {
 //            );
             info("Loaded graph database %s in %dms", dbFile, watch.getElapsedTimeMillis());
 
-            List<Future<List<Graph>>> futures = new ArrayList<>(), tmpFutures;
-            int bucketSize = db.size() / numberOfThreads;
-            int level;
-
-            for (int i = 0; i < numberOfThreads; i++) {
-                futures.add(
-                        pool.submit(
-                                new SelectionTask(i + 1, 0,
-                                        db.subList(i * bucketSize, i == (numberOfThreads - 1) ? db.size() : (i + 1) * bucketSize),
-                                        new ArrayList<Graph>())));
-            }
-            level = 1;
-            while (futures.size() > 1) {
-                tmpFutures = new ArrayList<>();
-                for (int i = 0; i < futures.size() - 1; i += 2) {
-                    tmpFutures.add(
-                            pool.submit(
-                                    new SelectionTask(i + 1, level, futures.get(i).get(), futures.get(i + 1).get())
-                            )
-                    );
-
+            summarization = new GraphSummarization();
+            summarization.setGdb(db.toArray(new Graph[db.size()]));
+            summarization.setEditThreshold(editThreshold);
+            summarization.setNumberOfThreads(numberOfThreads);
+            summarization.setMetricIndex(metricIndex);
+            if (!"".equals(indexFile)) {
+                try {
+                    index = MetricIndex.load(new File(indexFile), graphs, new EditDistanceMetric(EditDistance.ApproximationType.VOLGENANT_JONKER));
+                } catch (IOException ex) {
+                    throw new ExecutionException("Cannot load the metric index %s", ex, indexFile);
                 }
-                if (futures.size() % 2 == 1) {
-                    tmpFutures.add(futures.get(futures.size() - 1));
+                if (index.size() != graphs.length) {
+                    throw new ExecutionException("The metric index %s has %d graphs, the database %d", indexFile, index.size(), graphs.length);
                 }
-                futures = tmpFutures;
-                level++;
+                summarization.setDatabaseIndex(index, indexIds);
             }
-            significantDataset = futures.get(0).get();
+            summarization.compute();
+            significantDataset = summarization.getRepresentatives();
 
             info("Size of the dataset: %d ", significantDataset.size());
             info("Significance level: %f", editThreshold);
@@ -182,15 +145,12 @@ public class SummarizeDataset extends Command {
             for (Graph graph : significantDataset) {
                 out.append(parser.serialize(graph).replaceFirst("t # [0-9]+", "t # " + count++));
             }
-            pool.shutdown();
         } catch (IOException ex) {
             throw new ExecutionException("Error while reading the file %s", ex, dbFile);
         } catch (ClassNotFoundException | InstantiationException | IllegalAccessException ex) {
             fatal("Graph parser %s cannot be instantiated", parserClass);
         } catch (ParseException ex) {
             throw new ExecutionException("Cannot parse the database file", ex);
-        } catch (InterruptedException | java.util.concurrent.ExecutionException ex) {
-            throw new ExecutionException("Error with multithread execution", ex);
         }
 
     }
@@ -249,4 +209,34 @@ public class SummarizeDataset extends Command {
     public void setEditThreshold(double editThreshold) {
         this.editThreshold = editThreshold;
     }
+
+    @CommandInput(
+            consoleFormat = "-seed",
+            defaultValue = "0",
+            mandatory = false,
+            description = "seed used to shuffle the database",
+            parameters = ParametersNumber.TWO)
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @CommandInput(
+            consoleFormat = "-metric",
+            defaultValue = "false",
+            mandatory = false,
+            description = "use a BK-tree to find the representatives close to a graph",
+            parameters = ParametersNumber.ONE)
+    public void setMetricIndex(boolean metricIndex) {
+        this.metricIndex = metricIndex;
+    }
+
+    @CommandInput(
+            consoleFormat = "-index",
+            defaultValue = "",
+            mandatory = false,
+            description = "metric index of the database built by BuildMetricIndex -approximation volgenant-jonker, used instead of the BK-tree",
+            parameters = ParametersNumber.TWO)
+    public void setIndexFile(String indexFile) {
+        this.indexFile = indexFile;
+    }
 }
@@ -24,6 +24,8 @@
 
 package eu.unitn.disi.db.gref.lattice;
 
+import eu.unitn.disi.db.gref.monitoring.Counter;
+import eu.unitn.disi.db.gref.monitoring.Metrics;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Comparator;
@@ -53,6 +55,8 @@ public class BucketTreeSet<E>
      * The backing map.
      */
     private transient NavigableMap<E,Set<E>> m;
+    
+    private static final Counter OPERATIONS = Metrics.counter("gqref_heap_operations_total", "Insertions and removals in bucket tree sets");
 
     private int size = 0;
     
@@ -140,6 +144,7 @@ public class BucketTreeSet<E>
 
     @Override
     public boolean remove(Object o) {
+        OPERATIONS.inc();
         Set<E> values = (Set<E>)m.remove(o);
         if (values != null) {
             if (!values.remove(o) || !values.isEmpty()) {
@@ -153,6 +158,7 @@ public class BucketTreeSet<E>
 
     @Override
     public boolean add(E e) {
+        OPERATIONS.inc();
         size++;
         Set<E> values = m.get(e);
         if (values == null) {
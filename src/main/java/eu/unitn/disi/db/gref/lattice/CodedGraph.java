@@ -29,6 +29,8 @@ import de.parmol.parsers.GraphParser;
 import edu.psu.chemxseer.structure.factory.MyFactory;
 import edu.psu.chemxseer.structure.iso.CanonicalDFS;
 import eu.unitn.disi.db.command.util.LoggableObject;
+import eu.unitn.disi.db.gref.monitoring.Metrics;
+import eu.unitn.disi.db.gref.monitoring.Timer;
 import eu.unitn.disi.db.gref.utils.GraphUtilities;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
@@ -61,10 +63,12 @@ public class CodedGraph extends LoggableObject implements Graph, Serializable {
     private final int[] inverseMapping;
     private int hashCode; 
     private transient static final CanonicalDFS CODER = MyFactory.getDFSCoder();
+    private transient static final Timer CANONICALIZATION = Metrics.timer("gqref_canonicalization_seconds", "Computation of canonical DFS codes");
     private final boolean tree; 
    
     
     public CodedGraph(Graph graph) {
+        long start = CANONICALIZATION.start();
         this.graph = graph;
         code = CODER.serializeToArray(this.graph);
         nodeMapping = CODER.getNodeMapping();
@@ -79,6 +83,7 @@ public class CodedGraph extends LoggableObject implements Graph, Serializable {
         tree = GraphUtilities.isTree(graph);
         hashCode = 7;
         hashCode = 11 * hashCode + Arrays.deepHashCode(this.code);
+        CANONICALIZATION.stop(start);
     }
 
     public Graph getGraph() {
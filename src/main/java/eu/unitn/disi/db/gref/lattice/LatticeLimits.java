@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.lattice;
+
+/**
+ * Hard limits on the size of a {@link ReformulationLattice} built for a 
+ * single request: number of reformulations, retained embeddings and 
+ * estimated bytes. A limit equal to 0 is not checked. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class LatticeLimits {
+    /**
+     * What to do when a limit is exceeded
+     */
+    public enum Policy {
+        /**
+         * Abort the request
+         */
+        FAIL,
+        /**
+         * Stop growing the lattice and compute the reformulations on the 
+         * reformulations generated so far (approximate results)
+         */
+        DEGRADE
+    }
+    
+    public static final LatticeLimits UNLIMITED = new LatticeLimits(0, 0, 0, Policy.FAIL);
+    
+    private final int maxNodes; 
+    private final long maxEmbeddings; 
+    private final long maxBytes; 
+    private final Policy policy; 
+
+    public LatticeLimits(int maxNodes, long maxEmbeddings, long maxBytes, Policy policy) {
+        this.maxNodes = maxNodes;
+        this.maxEmbeddings = maxEmbeddings;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+    }
+    
+    /**
+     * Check the lattice against the limits
+     * @param lattice the lattice to check
+     * @return a description of the exceeded limit or null if the lattice is 
+     * within the limits
+     */
+    public String check(ReformulationLattice lattice) {
+        if (maxNodes > 0 && lattice.size() > maxNodes) {
+            return String.format("lattice nodes %d > %d", lattice.size(), maxNodes);
+        }
+        if (maxEmbeddings > 0 && lattice.getEmbeddings() > maxEmbeddings) {
+            return String.format("embeddings %d > %d", lattice.getEmbeddings(), maxEmbeddings);
+        }
+        if (maxBytes > 0 && lattice.getEstimatedBytes() > maxBytes) {
+            return String.format("estimated bytes %d > %d", lattice.getEstimatedBytes(), maxBytes);
+        }
+        return null;
+    }
+    
+    public boolean isUnlimited() {
+        return maxNodes <= 0 && maxEmbeddings <= 0 && maxBytes <= 0;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public long getMaxEmbeddings() {
+        return maxEmbeddings;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return "LatticeLimits{" + "maxNodes=" + maxNodes + ", maxEmbeddings=" + maxEmbeddings + ", maxBytes=" + maxBytes + ", policy=" + policy + '}';
+    }
+}
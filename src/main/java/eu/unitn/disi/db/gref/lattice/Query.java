@@ -25,10 +25,10 @@
 package eu.unitn.disi.db.gref.lattice;
 
 import de.parmol.graph.Graph;
+import eu.unitn.disi.db.gref.utils.collections.Bitmaps;
+import eu.unitn.disi.db.gref.utils.collections.IntHashSet;
 import java.io.Serializable;
 import java.io.Writer;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Represents a query as a {@link Graph}. The query is immutable and is represented
@@ -37,11 +37,18 @@ import java.util.Set;
  * @author Davide Mottin <mottin@disi.unitn.eu>
  */
 public class Query extends CodedGraph implements Serializable {
-    protected Set<Integer> results;    
+    protected IntHashSet results;    
+    /*
+     * Id of the result set shared with other queries (see shareResults), -1 
+     * if the results are not shared. Shared results are copied before being 
+     * changed
+     */
+    protected int resultSet = -1; 
+    private transient long[] resultBitmap;
     
     public Query(Graph graph) {
         super(graph);
-        results = new HashSet<>();
+        results = new IntHashSet();
     }
     
     //TODO: implement this. 
@@ -49,20 +56,77 @@ public class Query extends CodedGraph implements Serializable {
         
     }
 
-    public Set<Integer> getResults() {
+    public IntHashSet getResults() {
         return results;
     }
     
+    /**
+     * @return the results as a bitmap, computed on the first call after the 
+     * results change
+     */
+    public long[] getResultBitmap() {
+        if (resultBitmap == null) {
+            resultBitmap = Bitmaps.of(results);
+        }
+        return resultBitmap;
+    }
+    
+    /**
+     * Replace the results with an equal set shared with other queries
+     * @param results the shared results
+     * @param id the id of the shared results
+     */
+    public void shareResults(IntHashSet results, int id) {
+        this.results = results;
+        resultSet = id;
+    }
+    
+    /**
+     * @return the id of the result set shared with other queries, -1 if 
+     * the results are not shared
+     */
+    public int getResultSet() {
+        return resultSet;
+    }
+    
     public boolean addResult(int gId)
             throws NullPointerException
     {
-        return results.add(gId);
+        if (results.contains(gId)) {
+            return false;
+        }
+        ownResults();
+        results.add(gId);
+        resultBitmap = null;
+        return true;
     }
 
     public boolean removeResult(int gId)
             throws NullPointerException
     {
-        return results.remove(gId);
+        if (!results.contains(gId)) {
+            return false;
+        }
+        ownResults();
+        results.remove(gId);
+        resultBitmap = null;
+        return true;
+    }
+    
+    private void ownResults() {
+        if (resultSet >= 0) {
+            results = results.clone();
+            resultSet = -1;
+        }
+    }
+    
+    /**
+     * Drop all the results of the query
+     */
+    public void clearResults() {
+        results = new IntHashSet();
+        resultSet = -1;
+        resultBitmap = null;
     }
     
     public boolean containsResult(int gId)
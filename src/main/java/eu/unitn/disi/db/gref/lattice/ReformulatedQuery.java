@@ -25,13 +25,14 @@
 package eu.unitn.disi.db.gref.lattice;
 
 import de.parmol.graph.Graph;
+import eu.unitn.disi.db.gref.utils.collections.IntArrayList;
+import eu.unitn.disi.db.gref.utils.collections.IntHashSet;
+import eu.unitn.disi.db.gref.utils.collections.IntIntHashMap;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -45,22 +46,38 @@ import java.util.Set;
 public class ReformulatedQuery extends Query implements Comparable<ReformulatedQuery>, Serializable {
     ReformulatedQuery father;  
     Set<ReformulatedQuery> reformulations;
-    private Map<Integer,List<Integer>> resultsToIndexes;
+    /*
+     * The embeddings of a result are chained: the first and the last 
+     * embedding of each result and the next embedding of the same result (-1 
+     * ends the chain)
+     */
+    private IntIntHashMap firstEmbedding;
+    private IntIntHashMap lastEmbedding;
+    private IntArrayList nextEmbedding;
     private transient int lastIndex;
     private transient double score; 
     
-    //Maybe move to maps instead of arrays. 
-    private List<Set<Integer>> candidateNodes;
-    private List<Set<Integer>> mappedEdges;
-    private List<Map<Integer,Integer>> mappings;
+    private List<IntHashSet> candidateNodes;
+    private List<IntHashSet> mappedEdges;
+    private List<IntIntHashMap> mappings;
     
     int lastAddedNode = -1;
+    int nodeId = -1;
+    /*
+     * A reformulation of another father extends this one with the same 
+     * results (the links follow only the father that generated a child)
+     */
+    private boolean equivalentSupergraph;
+    transient ReformulationLattice lattice;
+    private transient long embeddingBytes;
     
     public ReformulatedQuery(Graph graph) {
         super(graph);
         reformulations = new HashSet<>();
         father = null;
-        resultsToIndexes = new HashMap<>();
+        firstEmbedding = new IntIntHashMap();
+        lastEmbedding = new IntIntHashMap();
+        nextEmbedding = new IntArrayList();
         mappings = new ArrayList<>();
         candidateNodes = new ArrayList<>();
         mappedEdges = new ArrayList<>();
@@ -92,14 +109,10 @@ public class ReformulatedQuery extends Query implements Comparable<ReformulatedQ
         return reformulations.contains(query);
     }
 
-    public boolean containsMapping(int gId, Map<Integer,Integer> mappings) {
-        Map<Integer, Integer>[] maps = getMappings(gId);
-        if (maps != null) {
-            Set<Integer> keySet = mappings.keySet(); 
-            for (Map<Integer, Integer> map : maps) {
-                if (map.keySet().equals(keySet)) {
-                    return true;
-                }
+    public boolean containsMapping(int gId, IntIntHashMap mapping) {
+        for (int index = firstEmbedding.get(gId, -1); index >= 0; index = nextEmbedding.get(index)) {
+            if (mappings.get(index).keysEqual(mapping)) {
+                return true;
             }
         }
         return false;
@@ -110,6 +123,38 @@ public class ReformulatedQuery extends Query implements Comparable<ReformulatedQ
         return reformulations.isEmpty();
     }
 
+    /**
+     * A reformulation is closed if its results differ from the results of
+     * every child, otherwise it is equivalent to the child having the same
+     * results (a reformulation not extended yet is closed). The children 
+     * generated by another father count as well, see 
+     * {@link #setEquivalentSupergraph()}
+     * @return true if no child has the same results
+     */
+    public boolean isClosed() {
+        if (equivalentSupergraph) {
+            return false;
+        }
+        for (ReformulatedQuery q : reformulations) {
+            if (resultSet >= 0 && q.resultSet >= 0 && q.lattice == lattice) {
+                if (q.resultSet == resultSet) {
+                    return false;
+                }
+            } else if (q.resultsNumber() == resultsNumber() && q.getResults().equals(getResults())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record that a child of another father, which is not linked to this 
+     * reformulation, has the same results
+     */
+    public void setEquivalentSupergraph() {
+        equivalentSupergraph = true;
+    }
+
     public Set<ReformulatedQuery> getReformulations() {
         return reformulations;
     }
@@ -124,13 +169,46 @@ public class ReformulatedQuery extends Query implements Comparable<ReformulatedQ
 
     @Override
     public boolean addResult(int gId) throws NullPointerException {
-        List<Integer> duplicates = resultsToIndexes.get(gId);
-        if (duplicates == null) {
-            duplicates = new ArrayList<>();
+        int index = lastIndex++, last = lastEmbedding.get(gId, -1);
+        long bytes = ReformulationLattice.ENTRY_BYTES;
+        if (last < 0) {
+            firstEmbedding.put(gId, index);
+            bytes += 2 * ReformulationLattice.ENTRY_BYTES;
+        } else {
+            nextEmbedding.set(last, index);
+        }
+        lastEmbedding.put(gId, index);
+        nextEmbedding.add(-1);
+        account(0, bytes);
+        if (super.addResult(gId)) {
+            if (lattice != null) {
+                lattice.account(0, ReformulationLattice.RESULT_BYTES);
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    /*
+     * Account the embedding structures, they are released by clear()
+     */
+    private void account(long embeddings, long bytes) {
+        embeddingBytes += bytes; 
+        if (lattice != null) {
+            lattice.account(embeddings, bytes);
         }
-        duplicates.add(lastIndex++);
-        resultsToIndexes.put(gId, duplicates);
-        return super.addResult(gId); 
+    }
+
+    /**
+     * Drop the results of a reformulation that will not be extended nor 
+     * selected anymore
+     */
+    @Override
+    public void clearResults() {
+        if (lattice != null && resultSet < 0) {
+            lattice.account(0, -ReformulationLattice.RESULT_BYTES * resultsNumber());
+        }
+        super.clearResults();
     }
 
     public boolean addResults(Collection<Integer> results) {
@@ -141,24 +219,25 @@ public class ReformulatedQuery extends Query implements Comparable<ReformulatedQ
         return success; 
     }
     
-    public boolean addMapping(Map<Integer, Integer> mapping) 
+    public boolean addMapping(IntIntHashMap mapping) 
             throws IndexOutOfBoundsException
     {
         if (mappings.size() + 1 != lastIndex) {
             throw new IndexOutOfBoundsException("The mapping you are adding does not correspond to any result");
         }
+        account(1, ReformulationLattice.CONTAINER_BYTES + (mapping != null? mapping.size() : 0) * ReformulationLattice.ENTRY_BYTES);
         return mappings.add(mapping);
     }
 
-    public Map<Integer, Integer>[] getMappings(int gId) 
+    public IntIntHashMap[] getMappings(int gId) 
             throws IndexOutOfBoundsException 
     {
-        List<Integer> indexes = resultsToIndexes.get(gId);
-        Map<Integer, Integer>[] maps = null;
-        if (indexes != null) {
-            maps = new Map[indexes.size()];
+        int n = numberOfDuplicates(gId);
+        IntIntHashMap[] maps = null;
+        if (n > 0) {
+            maps = new IntIntHashMap[n];
             int i = 0;
-            for (Integer index : indexes) {
+            for (int index = firstEmbedding.get(gId); index >= 0; index = nextEmbedding.get(index)) {
                 maps[i++] = mappings.get(index);
             }
         }
@@ -171,58 +250,85 @@ public class ReformulatedQuery extends Query implements Comparable<ReformulatedQ
 //        return candidateNodes.get(resultsToIndexes.get(gId)).add(candidate);
 //    }
     
-    public boolean addCandidates(Set<Integer> candidates) 
+    public boolean addCandidates(IntHashSet candidates) 
             throws IndexOutOfBoundsException
     {
         if (candidateNodes.size() + 1 != lastIndex) {
             throw new IndexOutOfBoundsException("The candidate you are adding does not correspond to any result");
         }
+        account(0, ReformulationLattice.CONTAINER_BYTES + candidates.size() * ReformulationLattice.ENTRY_BYTES);
         return candidateNodes.add(candidates);
     }
 
-    public Set<Integer>[] getCandidates(int gId) 
+    public IntHashSet[] getCandidates(int gId) 
             throws IndexOutOfBoundsException
     {   
-        List<Integer> indexes = resultsToIndexes.get(gId);
-        Set<Integer>[] cands = null;
-        if (indexes != null) {
-            cands = new Set[indexes.size()];
+        int n = numberOfDuplicates(gId);
+        IntHashSet[] cands = null;
+        if (n > 0) {
+            cands = new IntHashSet[n];
             int i = 0;
-            for (Integer index : indexes) {
+            for (int index = firstEmbedding.get(gId); index >= 0; index = nextEmbedding.get(index)) {
                 cands[i++] = candidateNodes.get(index);
             }
         }
         return cands;
     }
 
-    public boolean addMappedEdges(Set<Integer> mapped) 
+    public boolean addMappedEdges(IntHashSet mapped) 
             throws IndexOutOfBoundsException
     {   
         if (mappedEdges.size() + 1 != lastIndex) {
             throw new IndexOutOfBoundsException("The mapped edges you are adding does not correspond to any result");
         }
-
+        account(0, ReformulationLattice.CONTAINER_BYTES + mapped.size() * ReformulationLattice.ENTRY_BYTES);
         return mappedEdges.add(mapped);
     }
 
-    public Set<Integer>[] getMappedEdges(int gId) 
+    public IntHashSet[] getMappedEdges(int gId) 
             throws IndexOutOfBoundsException
     {        
-        List<Integer> indexes = resultsToIndexes.get(gId);
-        Set<Integer>[] maps = null;
-        if (indexes != null) {
-            maps = new Set[indexes.size()];
+        int n = numberOfDuplicates(gId);
+        IntHashSet[] maps = null;
+        if (n > 0) {
+            maps = new IntHashSet[n];
             int i = 0;
-            for (Integer index : indexes) {
+            for (int index = firstEmbedding.get(gId); index >= 0; index = nextEmbedding.get(index)) {
                 maps[i++] = mappedEdges.get(index);
             }
         }
         return maps;
     } 
     
-    public int numberOfDuplicates(int gId) throws NullPointerException
+    public int numberOfDuplicates(int gId)
     {
-        return resultsToIndexes.get(gId).size();
+        int n = 0;
+        for (int index = firstEmbedding.get(gId, -1); index >= 0; index = nextEmbedding.get(index)) {
+            n++;
+        }
+        return n;
+    }
+    
+    /**
+     * @return the number of embeddings stored (until {@link #clear()})
+     */
+    public int numberOfEmbeddings() {
+        return mappings.size();
+    }
+    
+    /**
+     * @return the estimated bytes of the stored embeddings
+     */
+    public long getEmbeddingBytes() {
+        return embeddingBytes;
+    }
+
+    /**
+     * @return the dense id of the reformulation in its lattice (the root is 0), 
+     * -1 if the reformulation has not been added to a lattice
+     */
+    public int getNodeId() {
+        return nodeId;
     }
 
     public double getScore() {
@@ -247,8 +353,19 @@ public class ReformulatedQuery extends Query implements Comparable<ReformulatedQ
         return father;
     }
     
+    /**
+     * Drop the link to the father, which is then checked no more (the father
+     * is checked only while the father itself is being extended)
+     */
+    public void clearFather() {
+        father = null;
+    }
+    
     public void clear() {
-        resultsToIndexes = new HashMap<>();
+        account(-mappings.size(), -embeddingBytes);
+        firstEmbedding = new IntIntHashMap();
+        lastEmbedding = new IntIntHashMap();
+        nextEmbedding = new IntArrayList();
         mappings = new ArrayList<>();
         candidateNodes = new ArrayList<>();
         mappedEdges = new ArrayList<>();
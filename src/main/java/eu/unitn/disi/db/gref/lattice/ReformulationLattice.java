@@ -24,11 +24,14 @@
 
 package eu.unitn.disi.db.gref.lattice;
 
+import eu.unitn.disi.db.gref.utils.collections.IntHashSet;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -40,11 +43,35 @@ import java.util.Set;
  * @author Davide Mottin <mottin@disi.unitn.eu>
  */
 public class ReformulationLattice implements Iterable<ReformulatedQuery>, Serializable {
+    /*
+     * Rough sizes (64 bit JVM, compressed references) used to estimate the 
+     * memory retained by the lattice: a reformulation without results, each 
+     * node and edge of its graph and code, a result, an entry of a primitive 
+     * map, set or list (half full tables) and an empty collection. 
+     */
+    static final long NODE_BYTES = 512;
+    static final long GRAPH_ELEMENT_BYTES = 64;
+    static final long RESULT_BYTES = 8;
+    static final long ENTRY_BYTES = 16;
+    static final long CONTAINER_BYTES = 64;
+    
     protected ReformulatedQuery root;
     protected Map<Query, ReformulatedQuery> index; 
+    private int nodeIds;
+    /*
+     * Distinct result sets of the reformulations and their ids, many 
+     * reformulations have the same results of their father or of a sibling
+     */
+    private Map<IntHashSet, Integer> resultSetIds; 
+    private List<IntHashSet> resultSets; 
+    private transient long embeddings; 
+    private transient long estimatedBytes; 
     
     public ReformulationLattice(Query query) {
         root = new ReformulatedQuery(query.getGraph());
+        root.lattice = this;
+        root.nodeId = nodeIds++;
+        estimatedBytes = nodeBytes(root);
         index = new HashMap<>();
     }
     
@@ -58,6 +85,85 @@ public class ReformulationLattice implements Iterable<ReformulatedQuery>, Serial
             throws NullPointerException
     {
         index.put(query, query);
+        query.lattice = this;
+        query.nodeId = nodeIds++;
+        estimatedBytes += nodeBytes(query) + query.getEmbeddingBytes();
+        embeddings += query.numberOfEmbeddings();
+    }
+    
+    /**
+     * Remove a reformulation from the index, it cannot be found anymore 
+     * (the links between the reformulations are untouched)
+     * @param query the reformulation to remove
+     */
+    public void removeReformulation(ReformulatedQuery query) 
+            throws NullPointerException
+    {
+        if (index.remove(query) != null) {
+            estimatedBytes -= nodeBytes(query);
+        }
+    }
+    
+    /**
+     * Remove a reformulation from the index but keep accounting its bytes:
+     * it cannot be found anymore, yet its father and its children still 
+     * link it (e.g. a collapsed reformulation)
+     * @param query the reformulation to remove
+     */
+    public void hideReformulation(ReformulatedQuery query) 
+            throws NullPointerException
+    {
+        index.remove(query);
+    }
+    
+    /**
+     * Share the results of a reformulation with the reformulations having 
+     * the same results, the results are copied if they change afterwards
+     * @param query a reformulation whose results are complete
+     */
+    public void internResults(ReformulatedQuery query) {
+        Integer id; 
+        if (resultSets == null) {
+            resultSetIds = new HashMap<>();
+            resultSets = new ArrayList<>();
+        }
+        id = resultSetIds.get(query.getResults());
+        if (id == null) {
+            id = resultSets.size();
+            resultSetIds.put(query.getResults(), id);
+            resultSets.add(query.getResults());
+        } else if (resultSets.get(id) != query.getResults()) {
+            estimatedBytes -= RESULT_BYTES * query.resultsNumber();
+        }
+        query.shareResults(resultSets.get(id), id);
+    }
+    
+    /**
+     * @return the number of distinct result sets interned, their ids are in 
+     * [0, getResultSets())
+     */
+    public int getResultSets() {
+        return resultSets == null? 0 : resultSets.size();
+    }
+    
+    /**
+     * @param id the id of an interned result set
+     * @return the results shared by the reformulations with this id
+     */
+    public IntHashSet getResultSet(int id) {
+        return resultSets.get(id);
+    }
+    
+    private static long nodeBytes(ReformulatedQuery query) {
+        return NODE_BYTES + GRAPH_ELEMENT_BYTES * (query.getNodeCount() + query.getEdgeCount());
+    }
+    
+    /*
+     * Called by the reformulations when their results and embeddings change
+     */
+    void account(long embeddings, long bytes) {
+        this.embeddings += embeddings; 
+        this.estimatedBytes += bytes; 
     }
 
     public boolean containsReformulation(Query query)
@@ -116,6 +222,31 @@ public class ReformulationLattice implements Iterable<ReformulatedQuery>, Serial
         return index.size();
     }
     
+    /**
+     * @return the number of node ids assigned so far, node ids of the root and
+     * the reformulations are in [0, getNodeIds())
+     */
+    public int getNodeIds() {
+        return nodeIds;
+    }
+    
+    /**
+     * @return the number of embeddings (mappings of the reformulations in 
+     * the graphs) currently retained by the lattice
+     */
+    public long getEmbeddings() {
+        return embeddings;
+    }
+
+    /**
+     * @return a rough estimate of the bytes retained by the reformulations, 
+     * their results and their embeddings (only reformulations created or 
+     * inserted since the lattice has been loaded are accounted)
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+    
     @Override
     public Iterator<ReformulatedQuery> iterator() {
         return new RefIterator();
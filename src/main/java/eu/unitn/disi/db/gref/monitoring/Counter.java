@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonic counter, increments are ignored when metrics are disabled
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class Counter extends Metric {
+    private final AtomicLong count = new AtomicLong();
+
+    Counter(String name, String help) {
+        super(name, help);
+    }
+    
+    public void inc() {
+        if (Metrics.enabled) {
+            count.incrementAndGet();
+        }
+    }
+    
+    public void add(long delta) {
+        if (Metrics.enabled) {
+            count.addAndGet(delta);
+        }
+    }
+    
+    public long get() {
+        return count.get();
+    }
+
+    @Override
+    public void reset() {
+        count.set(0);
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("type", "counter");
+        values.put("count", count.get());
+        return values;
+    }
+
+    @Override
+    public void appendPrometheus(StringBuilder sb) {
+        appendHeader(sb, "counter");
+        sb.append(getName()).append(' ').append(count.get()).append('\n');
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.monitoring;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of integer observations in fixed buckets, observations are 
+ * ignored when metrics are disabled
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class Histogram extends Metric {
+    private final long[] bounds;
+    /*
+     * counts[i] observations in (bounds[i-1], bounds[i]], the last one is +Inf
+     */
+    private final AtomicLongArray counts;
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong count = new AtomicLong();
+    
+    Histogram(String name, String help, long... bounds) {
+        super(name, help);
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+        counts = new AtomicLongArray(bounds.length + 1);
+    }
+    
+    public void observe(long value) {
+        if (Metrics.enabled) {
+            int bucket = Arrays.binarySearch(bounds, value);
+            counts.incrementAndGet(bucket >= 0 ? bucket : -bucket - 1);
+            sum.addAndGet(value);
+            count.incrementAndGet();
+        }
+    }
+    
+    public long getCount() {
+        return count.get();
+    }
+    
+    public long getSum() {
+        return sum.get();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        sum.set(0);
+        count.set(0);
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>(), buckets = new LinkedHashMap<>();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            cumulative += counts.get(i);
+            buckets.put(i < bounds.length ? String.valueOf(bounds[i]) : "+Inf", cumulative);
+        }
+        values.put("type", "histogram");
+        values.put("count", count.get());
+        values.put("sum", sum.get());
+        values.put("buckets", buckets);
+        return values;
+    }
+
+    @Override
+    public void appendPrometheus(StringBuilder sb) {
+        long cumulative = 0;
+        appendHeader(sb, "histogram");
+        for (int i = 0; i < counts.length(); i++) {
+            cumulative += counts.get(i);
+            sb.append(getName()).append("_bucket{le=\"")
+              .append(i < bounds.length ? String.valueOf(bounds[i]) : "+Inf")
+              .append("\"} ").append(cumulative).append('\n');
+        }
+        sb.append(getName()).append("_sum ").append(sum.get()).append('\n');
+        sb.append(getName()).append("_count ").append(count.get()).append('\n');
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.monitoring;
+
+import eu.unitn.disi.db.gref.utils.Json;
+import eu.unitn.disi.db.gref.utils.Utils;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Registry of the metrics that algorithms report into. Metrics are created 
+ * once, usually as static fields of the instrumented class, and record 
+ * nothing until the registry is enabled, so that when disabled each update 
+ * costs a read of a static flag. 
+ * 
+ * The registry can be exported as JSON or in the Prometheus text format. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public final class Metrics {
+    static volatile boolean enabled = false;
+    private static final Map<String, Metric> REGISTRY = new TreeMap<>();
+    
+    private Metrics() {
+    }
+    
+    public static void enable() {
+        enabled = true;
+    }
+    
+    public static void disable() {
+        enabled = false;
+    }
+    
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Return the counter with this name, creating it if needed
+     * @param name the name of the counter, by convention ending with _total
+     * @param help a one-line description
+     * @return the counter
+     */
+    public static Counter counter(String name, String help) {
+        return register(new Counter(name, help));
+    }
+    
+    /**
+     * Return the timer with this name, creating it if needed
+     * @param name the name of the timer, by convention ending with _seconds
+     * @param help a one-line description
+     * @return the timer
+     */
+    public static Timer timer(String name, String help) {
+        return register(new Timer(name, help));
+    }
+    
+    /**
+     * Return the histogram with this name, creating it if needed
+     * @param name the name of the histogram
+     * @param help a one-line description
+     * @param bounds the upper bounds of the buckets
+     * @return the histogram
+     */
+    public static Histogram histogram(String name, String help, long... bounds) {
+        return register(new Histogram(name, help, bounds));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static synchronized <M extends Metric> M register(M metric) {
+        Metric existing = REGISTRY.get(metric.getName());
+        if (existing == null) {
+            REGISTRY.put(metric.getName(), metric);
+            return metric;
+        }
+        if (existing.getClass() != metric.getClass()) {
+            throw new IllegalArgumentException(String.format("Metric %s is already registered as a %s", 
+                    metric.getName(), existing.getClass().getSimpleName()));
+        }
+        return (M) existing;
+    }
+    
+    /**
+     * Clear the values of all the metrics
+     */
+    public static synchronized void reset() {
+        for (Metric metric : REGISTRY.values()) {
+            metric.reset();
+        }
+    }
+    
+    /**
+     * @return name to values of every metric
+     */
+    public static synchronized Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Metric metric : REGISTRY.values()) {
+            values.put(metric.getName(), metric.snapshot());
+        }
+        return values;
+    }
+    
+    public static String toJson() {
+        return Json.toJson(snapshot());
+    }
+    
+    public static synchronized String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        for (Metric metric : REGISTRY.values()) {
+            metric.appendPrometheus(sb);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Write the metrics to a file, as JSON if the file name ends with .json 
+     * and in the Prometheus text format otherwise
+     * @param file the output file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String file) throws IOException {
+        Utils.writeStringToFile(file.endsWith(".json") ? toJson() : toPrometheus(), file);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number, total and maximum duration of timed sections. Usage: 
+ * <pre>
+ * long start = TIMER.start();
+ * ...
+ * TIMER.stop(start);
+ * </pre>
+ * When metrics are disabled {@link #start()} does not read the clock and 
+ * {@link #stop(long)} does nothing. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class Timer extends Metric {
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    Timer(String name, String help) {
+        super(name, help);
+    }
+    
+    public long start() {
+        return Metrics.enabled ? System.nanoTime() : 0;
+    }
+    
+    public void stop(long start) {
+        if (Metrics.enabled && start != 0) {
+            record(System.nanoTime() - start);
+        }
+    }
+    
+    public void record(long nanos) {
+        long max;
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        do {
+            max = maxNanos.get();
+        } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+    }
+    
+    public long getCount() {
+        return count.get();
+    }
+    
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    @Override
+    public void reset() {
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("type", "timer");
+        values.put("count", count.get());
+        values.put("totalMs", totalNanos.get() / 1e6);
+        values.put("maxMs", maxNanos.get() / 1e6);
+        return values;
+    }
+
+    @Override
+    public void appendPrometheus(StringBuilder sb) {
+        appendHeader(sb, "summary");
+        sb.append(getName()).append("_count ").append(count.get()).append('\n');
+        sb.append(getName()).append("_sum ").append(totalNanos.get() / 1e9).append('\n');
+        sb.append("# TYPE ").append(getName()).append("_max gauge\n");
+        sb.append(getName()).append("_max ").append(maxNanos.get() / 1e9).append('\n');
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.monitoring;
+
+/**
+ * Events traced by the algorithms, the sizes are listed in the order they are 
+ * passed to {@link Span#end(long, long, long)}
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public enum TraceEvent {
+    /**
+     * Isomorphism of the query in the database: graphs, results, embeddings
+     */
+    QUERY_PROCESSING, 
+    /**
+     * Extension of a reformulation: results, embeddings, lattice size
+     */
+    LATTICE_EXPANSION, 
+    /**
+     * Update of the scores: reformulations scored, lattice size, selected
+     * reformulations
+     */
+    SCORE_UPDATE,
+    /**
+     * Deserialization of the index: reformulations, bytes
+     */
+    INDEX_LOADING,
+    /**
+     * Graph edit distance: source nodes, target nodes, beam width (0 for 
+     * the bipartite approximation, the search with a beam does not include
+     * the approximation bounding it, which is a separate event)
+     */
+    EDIT_DISTANCE
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.monitoring;
+
+/**
+ * Entry point of the tracing of the algorithms. Events are recorded by the 
+ * Java Flight Recorder when the JFR tracer is on the classpath (it is built 
+ * from <code>src/main/jfr</code> by the <code>jfr</code> profile on JDK 11 or 
+ * later), otherwise they are discarded. The tracer can be switched off with 
+ * <code>-Dgqref.tracing=false</code>. 
+ * 
+ * Usage: 
+ * <pre>
+ * Span span = Tracing.begin(TraceEvent.QUERY_PROCESSING);
+ * ...
+ * span.end(graphs, results, embeddings);
+ * </pre>
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public final class Tracing {
+    private static final String JFR_TRACER = "eu.unitn.disi.db.gref.monitoring.jfr.JfrTracer";
+    private static final Tracer TRACER = load();
+    
+    private Tracing() {
+    }
+    
+    public static Span begin(TraceEvent event) {
+        return TRACER.begin(event);
+    }
+    
+    /**
+     * @return true if the events are sent to the flight recorder
+     */
+    public static boolean isAvailable() {
+        return TRACER != Tracer.NOOP;
+    }
+    
+    private static Tracer load() {
+        if (!Boolean.parseBoolean(System.getProperty("gqref.tracing", "true"))) {
+            return Tracer.NOOP;
+        }
+        try {
+            return (Tracer) Class.forName(JFR_TRACER).newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | LinkageError ex) {
+            return Tracer.NOOP;
+        }
+    }
+}
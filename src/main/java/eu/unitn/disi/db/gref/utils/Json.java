@@ -0,0 +1,292 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.utils;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON support for the reports: objects are {@link Map}s (insertion 
+ * ordered when parsed), arrays are {@link List}s, numbers are {@link Number}s 
+ * (parsed as {@link Double}).
+ *
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class Json {
+    private final String text;
+    private int pos;
+    
+    private Json(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * Serialize maps, collections, numbers, booleans, strings and null, 
+     * indented by two spaces
+     * @param value the value to serialize
+     * @return the JSON text
+     */
+    public static String toJson(Object value) {
+        StringBuilder sb = new StringBuilder();
+        write(value, sb, 0);
+        return sb.append('\n').toString();
+    }
+    
+    private static void write(Object value, StringBuilder sb, int indent) {
+        Iterator<?> it;
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Map) {
+            it = ((Map<?,?>) value).entrySet().iterator();
+            sb.append('{');
+            while (it.hasNext()) {
+                Map.Entry<?,?> e = (Map.Entry<?,?>) it.next();
+                newLine(sb, indent + 1);
+                quote(String.valueOf(e.getKey()), sb);
+                sb.append(": ");
+                write(e.getValue(), sb, indent + 1);
+                if (it.hasNext()) {
+                    sb.append(',');
+                }
+            }
+            if (!((Map<?,?>) value).isEmpty()) {
+                newLine(sb, indent);
+            }
+            sb.append('}');
+        } else if (value instanceof Iterable) {
+            it = ((Iterable<?>) value).iterator();
+            sb.append('[');
+            while (it.hasNext()) {
+                write(it.next(), sb, indent);
+                if (it.hasNext()) {
+                    sb.append(", ");
+                }
+            }
+            sb.append(']');
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                sb.append("null");
+            } else if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+                sb.append((long) d);
+            } else {
+                sb.append(d);
+            }
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else {
+            quote(value.toString(), sb);
+        }
+    }
+    
+    private static void newLine(StringBuilder sb, int indent) {
+        sb.append('\n');
+        for (int i = 0; i < indent; i++) {
+            sb.append("  ");
+        }
+    }
+    
+    private static void quote(String s, StringBuilder sb) {
+        char c;
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+    
+    /**
+     * Parse a JSON text
+     * @param text the text to parse
+     * @return the parsed value
+     * @throws ParseException if the text is not valid JSON
+     */
+    public static Object parse(String text) throws ParseException {
+        Json parser = new Json(text);
+        Object value = parser.value();
+        parser.skipSpaces();
+        if (parser.pos != text.length()) {
+            throw parser.error("end of input");
+        }
+        return value;
+    }
+    
+    private Object value() throws ParseException {
+        skipSpaces();
+        if (pos >= text.length()) {
+            throw error("a value");
+        }
+        switch (text.charAt(pos)) {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default: return number();
+        }
+    }
+    
+    private Map<String, Object> object() throws ParseException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        String key;
+        pos++;
+        skipSpaces();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        do {
+            skipSpaces();
+            if (peek() != '"') {
+                throw error("a key");
+            }
+            key = string();
+            skipSpaces();
+            expect(':');
+            map.put(key, value());
+            skipSpaces();
+        } while (consume(','));
+        expect('}');
+        return map;
+    }
+    
+    private List<Object> array() throws ParseException {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipSpaces();
+        if (peek() == ']') {
+            pos++;
+            return list;
+        }
+        do {
+            list.add(value());
+            skipSpaces();
+        } while (consume(','));
+        expect(']');
+        return list;
+    }
+    
+    private String string() throws ParseException {
+        StringBuilder sb = new StringBuilder();
+        char c;
+        pos++;
+        while (pos < text.length() && (c = text.charAt(pos)) != '"') {
+            pos++;
+            if (c == '\\') {
+                if (pos >= text.length()) {
+                    break;
+                }
+                c = text.charAt(pos++);
+                switch (c) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("an unicode escape");
+                        }
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(c);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        expect('"');
+        return sb.toString();
+    }
+    
+    private Double number() throws ParseException {
+        int start = pos;
+        char c;
+        while (pos < text.length() && ((c = text.charAt(pos)) == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || Character.isDigit(c))) {
+            pos++;
+        }
+        try {
+            return Double.valueOf(text.substring(start, pos));
+        } catch (NumberFormatException ex) {
+            pos = start;
+            throw error("a number");
+        }
+    }
+    
+    private Object literal(String literal, Object value) throws ParseException {
+        if (!text.startsWith(literal, pos)) {
+            throw error(literal);
+        }
+        pos += literal.length();
+        return value;
+    }
+    
+    private void skipSpaces() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+    
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : 0;
+    }
+    
+    private boolean consume(char c) {
+        if (peek() == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+    
+    private void expect(char c) throws ParseException {
+        if (!consume(c)) {
+            throw error("'" + c + "'");
+        }
+    }
+    
+    private ParseException error(String expected) {
+        return new ParseException(String.format("Expected %s at position %d", expected, pos), pos);
+    }
+}
@@ -1,5 +1,7 @@
 package eu.unitn.disi.db.gref.utils;
 
+import eu.unitn.disi.db.gref.utils.collections.IntHashSet;
+import eu.unitn.disi.db.gref.utils.collections.IntIterator;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
@@ -79,9 +81,33 @@ public class Utils {
         return intersection;
     }
     
+    public static int setIntersection(IntHashSet set1, IntHashSet set2) {
+        return set1.intersectionSize(set2);
+    }
+    
+    public static IntHashSet intersect(IntHashSet set1, IntHashSet set2) {
+        IntHashSet a;
+        IntHashSet b;
+        int e;
+        if (set1.size() <= set2.size()) {
+            a = set1;
+            b = set2;
+        } else {
+            a = set2;
+            b = set1;
+        }
+        IntHashSet intersection = new IntHashSet(a.size());
+        for (IntIterator it = a.intIterator(); it.hasNext();) {
+            e = it.nextInt();
+            if (b.contains(e)) {
+                intersection.add(e);
+            }
+        }
+        return intersection;
+    }
     
-    public static Set<Integer> intArrayToSet(int[] array) {
-        Set<Integer> set = new HashSet<>(); 
+    public static IntHashSet intArrayToSet(int[] array) {
+        IntHashSet set = new IntHashSet(array.length); 
         for (int el : array) {
             set.add(el);
         }
@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.utils.collections;
+
+/**
+ * Static methods on bitmaps of non negative integers stored as arrays of 
+ * longs (bit i is bit i % 64 of word i / 64). Bitmaps of different lengths 
+ * can be combined, missing words are zeros. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public final class Bitmaps {
+    
+    private Bitmaps() {
+    }
+    
+    /**
+     * @param universe the number of bits
+     * @return an empty bitmap for integers in [0, universe)
+     */
+    public static long[] create(int universe) {
+        return new long[(universe + 63) >>> 6];
+    }
+    
+    /**
+     * @param set a set of non negative integers
+     * @return the bitmap of the set, as long as needed to store its maximum
+     */
+    public static long[] of(IntHashSet set) {
+        int max = -1, e;
+        IntIterator it;
+        for (it = set.intIterator(); it.hasNext();) {
+            e = it.nextInt();
+            if (e > max) {
+                max = e;
+            }
+        }
+        long[] bits = create(max + 1);
+        for (it = set.intIterator(); it.hasNext();) {
+            set(bits, it.nextInt());
+        }
+        return bits;
+    }
+    
+    public static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+    
+    public static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
+    }
+    
+    public static boolean get(long[] bits, int i) {
+        return (i >>> 6) < bits.length && (bits[i >>> 6] & (1L << i)) != 0;
+    }
+    
+    public static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+    
+    /**
+     * @return the size of the intersection of the two bitmaps, without 
+     * materializing it
+     */
+    public static int andCardinality(long[] a, long[] b) {
+        int count = 0, n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            count += Long.bitCount(a[i] & b[i]);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.utils.collections;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of primitive integers with open addressing and linear probing. It is 
+ * also a {@link java.util.Set} of Integers for the code that does not need 
+ * speed, the primitive methods ({@link #add(int)}, {@link #contains(int)}, 
+ * {@link #intIterator()}, ...) do not box. 
+ * 
+ * The set must not be modified while iterating. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class IntHashSet extends AbstractSet<Integer> implements Cloneable, Serializable {
+    private static final int MIN_CAPACITY = 8;
+    /*
+     * 0 marks a free slot, the key 0 is kept aside in containsZero
+     */
+    private int[] keys; 
+    private boolean containsZero; 
+    private int size; 
+    private int mask; 
+
+    public IntHashSet() {
+        this(MIN_CAPACITY / 2);
+    }
+    
+    /**
+     * @param expectedSize number of elements that can be added without 
+     * rehashing
+     */
+    public IntHashSet(int expectedSize) {
+        keys = new int[capacity(expectedSize)];
+        mask = keys.length - 1;
+    }
+    
+    /*
+     * Power of two with load factor 0.5
+     */
+    static int capacity(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+    
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    public boolean add(int key) {
+        if (key == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int k, i = mix(key) & mask;
+        while ((k = keys[i]) != 0) {
+            if (k == key) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+    
+    public boolean contains(int key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        int k, i = mix(key) & mask;
+        while ((k = keys[i]) != 0) {
+            if (k == key) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+    
+    public boolean remove(int key) {
+        if (key == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int k, i = mix(key) & mask;
+        while ((k = keys[i]) != key) {
+            if (k == 0) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = 0;
+        size--;
+        //Shift back the following keys of the cluster that cannot be 
+        //reached anymore
+        int home, j = i; 
+        while ((k = keys[j = (j + 1) & mask]) != 0) {
+            home = mix(k) & mask;
+            if (j > i ? (home <= i || home > j) : (home <= i && home > j)) {
+                keys[i] = k;
+                keys[j] = 0;
+                i = j;
+            }
+        }
+        return true;
+    }
+    
+    private void rehash(int capacity) {
+        int[] old = keys;
+        int i;
+        keys = new int[capacity];
+        mask = capacity - 1;
+        for (int k : old) {
+            if (k != 0) {
+                i = mix(k) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+            }
+        }
+    }
+    
+    public void addAll(IntHashSet set) {
+        IntIterator it = set.intIterator();
+        while (it.hasNext()) {
+            add(it.nextInt());
+        }
+    }
+    
+    /**
+     * @param set another set
+     * @return the size of the intersection of the two sets
+     */
+    public int intersectionSize(IntHashSet set) {
+        IntHashSet small = this, large = set;
+        int count = 0;
+        if (small.size > large.size) {
+            small = set;
+            large = this;
+        }
+        IntIterator it = small.intIterator();
+        while (it.hasNext()) {
+            if (large.contains(it.nextInt())) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    public IntIterator intIterator() {
+        return new KeyIterator();
+    }
+    
+    public int[] toIntArray() {
+        int[] array = new int[size];
+        int i = 0;
+        IntIterator it = intIterator();
+        while (it.hasNext()) {
+            array[i++] = it.nextInt();
+        }
+        return array;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0);
+        containsZero = false;
+        size = 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+    @Override
+    public boolean add(Integer e) {
+        return add(e.intValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && remove(((Integer) o).intValue());
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new KeyIterator();
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int k : keys) {
+            h += k;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof IntHashSet) {
+            IntHashSet set = (IntHashSet) o;
+            return set.size == size && intersectionSize(set) == size;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public IntHashSet clone() {
+        try {
+            IntHashSet clone = (IntHashSet) super.clone();
+            clone.keys = keys.clone();
+            return clone;
+        } catch (CloneNotSupportedException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+    
+    private class KeyIterator implements IntIterator, Iterator<Integer> {
+        private boolean zero = containsZero;
+        private int slot = nextSlot(0);
+        
+        private int nextSlot(int from) {
+            while (from < keys.length && keys[from] == 0) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return zero || slot < keys.length;
+        }
+
+        @Override
+        public int nextInt() {
+            if (zero) {
+                zero = false;
+                return 0;
+            }
+            if (slot >= keys.length) {
+                throw new NoSuchElementException();
+            }
+            int key = keys[slot];
+            slot = nextSlot(slot + 1);
+            return key;
+        }
+
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Remove the element from the set");
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.utils.collections;
+
+import java.io.Serializable;
+import java.util.NoSuchElementException;
+
+/**
+ * Map from primitive integers to primitive integers with open addressing and
+ * linear probing. Values of existing keys can be changed while iterating 
+ * over the keys, new keys cannot be added. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class IntIntHashMap implements Cloneable, Serializable {
+    /*
+     * 0 marks a free slot, the key 0 is kept aside in containsZero
+     */
+    private int[] keys; 
+    private int[] values; 
+    private boolean containsZero; 
+    private int zeroValue; 
+    private int size; 
+    private int mask; 
+
+    public IntIntHashMap() {
+        this(4);
+    }
+    
+    /**
+     * @param expectedSize number of keys that can be added without rehashing
+     */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = IntHashSet.capacity(expectedSize);
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+    
+    private int slot(int key) {
+        int k, i = IntHashSet.mix(key) & mask;
+        while ((k = keys[i]) != 0) {
+            if (k == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -i - 1;
+    }
+    
+    /**
+     * @param key the key
+     * @param defaultValue value returned if the key is not in the map
+     * @return the value of the key or defaultValue
+     */
+    public int get(int key, int defaultValue) {
+        if (key == 0) {
+            return containsZero ? zeroValue : defaultValue;
+        }
+        int i = slot(key);
+        return i >= 0 ? values[i] : defaultValue;
+    }
+    
+    /**
+     * @return the value of the key, 0 if the key is not in the map
+     */
+    public int get(int key) {
+        return get(key, 0);
+    }
+    
+    public boolean containsKey(int key) {
+        return key == 0 ? containsZero : slot(key) >= 0;
+    }
+    
+    public void put(int key, int value) {
+        if (key == 0) {
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int i = slot(key);
+        if (i >= 0) {
+            values[i] = value;
+        } else {
+            i = -i - 1;
+            keys[i] = key;
+            values[i] = value;
+            if (++size * 2 > keys.length) {
+                rehash(keys.length << 1);
+            }
+        }
+    }
+    
+    /**
+     * Add delta to the value of key (0 if absent)
+     * @return the new value
+     */
+    public int addTo(int key, int delta) {
+        int value = get(key, 0) + delta;
+        put(key, value);
+        return value;
+    }
+    
+    public boolean remove(int key) {
+        if (key == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int i = slot(key);
+        if (i < 0) {
+            return false;
+        }
+        keys[i] = 0;
+        size--;
+        int k, home, j = i; 
+        while ((k = keys[j = (j + 1) & mask]) != 0) {
+            home = IntHashSet.mix(k) & mask;
+            if (j > i ? (home <= i || home > j) : (home <= i && home > j)) {
+                keys[i] = k;
+                values[i] = values[j];
+                keys[j] = 0;
+                i = j;
+            }
+        }
+        return true;
+    }
+    
+    private void rehash(int capacity) {
+        int[] oldKeys = keys, oldValues = values;
+        int i;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                i = IntHashSet.mix(oldKeys[j]) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+    
+    /**
+     * @param map another map
+     * @return true if the two maps have the same keys
+     */
+    public boolean keysEqual(IntIntHashMap map) {
+        if (map.size != size) {
+            return false;
+        }
+        IntIterator it = keyIterator();
+        while (it.hasNext()) {
+            if (!map.containsKey(it.nextInt())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public IntIterator keyIterator() {
+        return new IntIterator() {
+            private boolean zero = containsZero;
+            private int slot = nextSlot(0);
+            
+            private int nextSlot(int from) {
+                while (from < keys.length && keys[from] == 0) {
+                    from++;
+                }
+                return from;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return zero || slot < keys.length;
+            }
+
+            @Override
+            public int nextInt() {
+                if (zero) {
+                    zero = false;
+                    return 0;
+                }
+                if (slot >= keys.length) {
+                    throw new NoSuchElementException();
+                }
+                int key = keys[slot];
+                slot = nextSlot(slot + 1);
+                return key;
+            }
+        };
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public IntIntHashMap clone() {
+        try {
+            IntIntHashMap clone = (IntIntHashMap) super.clone();
+            clone.keys = keys.clone();
+            clone.values = values.clone();
+            return clone;
+        } catch (CloneNotSupportedException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        IntIterator it = keyIterator();
+        int key;
+        while (it.hasNext()) {
+            key = it.nextInt();
+            sb.append(key).append('=').append(get(key));
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Davide Mottin <mottin@disi.unitn.eu>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.unitn.disi.db.gref.monitoring.jfr;
+
+import eu.unitn.disi.db.gref.monitoring.Span;
+import eu.unitn.disi.db.gref.monitoring.TraceEvent;
+import eu.unitn.disi.db.gref.monitoring.Tracer;
+
+/**
+ * Tracer that emits Java Flight Recorder events, loaded by 
+ * {@link eu.unitn.disi.db.gref.monitoring.Tracing} when available. Events 
+ * are created only if they are enabled in the current recording. 
+ * 
+ * @author Davide Mottin <mottin@disi.unitn.eu>
+ */
+public class JfrTracer extends Tracer {
+
+    @Override
+    public Span begin(TraceEvent event) {
+        GQRefEvent jfrEvent;
+        switch (event) {
+            case QUERY_PROCESSING: 
+                jfrEvent = new QueryProcessingEvent();
+                break;
+            case LATTICE_EXPANSION: 
+                jfrEvent = new LatticeExpansionEvent();
+                break;
+            case SCORE_UPDATE:
+                jfrEvent = new ScoreUpdateEvent();
+                break;
+            case INDEX_LOADING:
+                jfrEvent = new IndexLoadingEvent();
+                break;
+            case EDIT_DISTANCE:
+                jfrEvent = new EditDistanceEvent();
+                break;
+            default:
+                return Span.NOOP;
+        }
+        if (!jfrEvent.isEnabled()) {
+            return Span.NOOP;
+        }
+        jfrEvent.begin();
+        return jfrEvent;
+    }
+}